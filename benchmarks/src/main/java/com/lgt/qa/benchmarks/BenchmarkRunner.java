@@ -0,0 +1,28 @@
+package com.lgt.qa.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准入口，在JMH命令行参数的基础上总是加上gc分析器，
+ * 报告每次操作分配的字节数（gc.alloc.rate.norm）、分配速率和GC次数，性能改动以此为基线对比。
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar                      运行全部基准
+ * java -jar benchmarks/target/benchmarks.jar Kryo -f 1 -wi 3 -i 5  只运行名称匹配的基准
+ * java -jar benchmarks/target/benchmarks.jar -rf json -rff base.json 保存结果用于对比
+ * </pre>
+ *
+ */
+public class BenchmarkRunner {
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		Options opts = new OptionsBuilder()
+				.parent(cmd)
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(opts).run();
+	}
+}
@@ -0,0 +1,62 @@
+package com.lgt.qa.benchmarks;
+
+import com.lgt.qa.cmdparsers.CommandParser;
+import com.lgt.qa.cmdparsers.StepContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CommandParser#parserArg(String)}的开销，分别为不含占位符、含1个占位符和含多个占位符的字符串
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandParserBenchmark {
+	@Param({"0", "1", "many"})
+	public String placeholders;
+
+	private CommandParser parser;
+	private String arg;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		StepContext context = new StepContext();
+		parser = new CommandParser(context);
+		StepContext.setVar("host", "api.example.com");
+		StepContext.setVar("version", "v2");
+		StepContext.setVar("userId", "10086");
+		StepContext.setVar("token", "b6f1c2d8e9a04c7f");
+		StepContext.setVar("page", "3");
+		switch(placeholders) {
+			case "0":
+				arg = "https://api.example.com/v2/users/10086/orders?page=3&size=20";
+				break;
+			case "1":
+				arg = "https://api.example.com/v2/users/${userId}/orders?page=3&size=20";
+				break;
+			default:
+				arg = "https://${host}/${version}/users/${userId}/orders?page=${page}&size=20&token=${token}";
+		}
+	}
+
+	@Benchmark
+	public Object parserArg() {
+		return parser.parserArg(arg);
+	}
+}
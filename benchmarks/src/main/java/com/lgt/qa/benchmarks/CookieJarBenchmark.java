@@ -0,0 +1,80 @@
+package com.lgt.qa.benchmarks;
+
+import com.lgt.qa.okhttp.CookieStore;
+import com.lgt.qa.okhttp.TempCookieJar;
+import okhttp3.Cookie;
+import okhttp3.HttpUrl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * cookie容器{@link TempCookieJar}的查找开销。容器中有若干个无关的域名，每个域名下有指定个数的cookie，
+ * 请求的主机与其中一个域名相同。
+ * {@link CookieStore}的基准中请求的主机是其中一个域名的子域名，需要同时匹配父域名上的cookie
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CookieJarBenchmark {
+	private static final int DOMAINS = 50;
+
+	@Param({"5", "50"})
+	public int cookiesPerDomain;
+
+	private TempCookieJar jar;
+	private CookieStore store;
+	private HttpUrl url;
+	private HttpUrl subdomainUrl;
+
+	@Setup
+	public void setup() {
+		jar = new TempCookieJar();
+		store = new CookieStore();
+		for(int d = 0; d < DOMAINS; d++) {
+			String domain = "site" + d + ".example.com";
+			for(int c = 0; c < cookiesPerDomain; c++) {
+				Cookie cookie = new Cookie.Builder().name("c" + c).value("v" + c).domain(domain).path(c % 2 == 0 ? "/" : "/api").build();
+				jar.addCookie(domain, cookie);
+				store.add(cookie);
+			}
+		}
+		url = HttpUrl.parse("https://site7.example.com/api/orders");
+		subdomainUrl = HttpUrl.parse("https://www.site7.example.com/api/orders");
+	}
+
+	@Benchmark
+	public List<Cookie> loadForRequest() {
+		return jar.loadForRequest(url);
+	}
+
+	@Benchmark
+	public Cookie getCookie() {
+		return jar.getCookie("site7.example.com", "c" + (cookiesPerDomain - 1));
+	}
+
+	@Benchmark
+	public List<Cookie> getAllCookie() {
+		return jar.getAllCookie("site7.example.com");
+	}
+
+	@Benchmark
+	public List<Cookie> storeLoadForSubdomain() {
+		return store.loadForRequest(subdomainUrl);
+	}
+}
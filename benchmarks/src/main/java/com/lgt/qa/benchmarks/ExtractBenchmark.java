@@ -0,0 +1,58 @@
+package com.lgt.qa.benchmarks;
+
+import com.lgt.qa.functions.ExtractUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * json和正则提取器在小应答和大应答上的开销，提取的值都位于文档末尾附近
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExtractBenchmark {
+	@Param({Payloads.SMALL, Payloads.LARGE})
+	public String size;
+
+	private String body;
+
+	@Setup
+	public void setup() {
+		body = Payloads.json(size);
+	}
+
+	@Benchmark
+	public String jsonExtract() {
+		return ExtractUtils.jsonExtract(body, "attrs.token");
+	}
+
+	@Benchmark
+	public String[] jsonExtractAll() {
+		return ExtractUtils.jsonExtractAll(body, "id", "items[1].sku", "attrs.token");
+	}
+
+	@Benchmark
+	public String regexExtract() {
+		return ExtractUtils.regexExtract(body, "\"token\":\"(\\w+)\"");
+	}
+
+	@Benchmark
+	public String[] regexExtractEach() {
+		return ExtractUtils.regexExtractEach(body, "\"id\":(\\d+)", "\"status\":\"(\\w+)\"", "\"token\":\"(\\w+)\"");
+	}
+}
@@ -0,0 +1,84 @@
+package com.lgt.qa.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.lgt.qa.functions.JSONUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JSONUtil}序列化和反序列化的开销
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonBenchmark {
+	@Param({Payloads.SMALL, Payloads.LARGE})
+	public String size;
+
+	private Payloads.Order order;
+	private String json;
+	private byte[] jsonBytes;
+	private ByteBuffer buffer;
+
+	@Setup
+	public void setup() {
+		order = Payloads.order(size);
+		json = Payloads.json(size);
+		jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+		buffer = ByteBuffer.allocateDirect(jsonBytes.length * 2);
+	}
+
+	@Benchmark
+	public String serialize() {
+		return JSONUtil.serialize(order);
+	}
+
+	@Benchmark
+	public byte[] serializeToBytes() {
+		return JSONUtil.serializeToBytes(order);
+	}
+
+	/**
+	 * 写入并读回堆外buffer，不产生中间的字符串和数组
+	 */
+	@Benchmark
+	public Payloads.Order byteBufferRoundTrip() throws IOException {
+		buffer.clear();
+		JSONUtil.serialize(order, buffer);
+		buffer.flip();
+		return JSONUtil.unSerialize(buffer, Payloads.Order.class);
+	}
+
+	@Benchmark
+	public Payloads.Order unSerialize() {
+		return JSONUtil.unSerialize(json, Payloads.Order.class);
+	}
+
+	@Benchmark
+	public Payloads.Order unSerializeBytes() {
+		return JSONUtil.unSerialize(jsonBytes, Payloads.Order.class);
+	}
+
+	@Benchmark
+	public JsonNode unSerializeTree() {
+		return JSONUtil.unSerialize(json);
+	}
+}
@@ -0,0 +1,80 @@
+package com.lgt.qa.benchmarks;
+
+import com.lgt.qa.functions.ObjectUtils;
+import com.lgt.qa.functions.SerializableUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 两条Kryo路径的对比：{@link ObjectUtils}使用实例池并写入类名，{@link SerializableUtil}使用线程内实例并按指定类型读写。
+ * 以4个线程运行，同时体现实例池的争用开销
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Thread)
+public class KryoBenchmark {
+	@Param({Payloads.SMALL, Payloads.LARGE})
+	public String size;
+
+	private Payloads.Order order;
+	private byte[] objectUtilsBytes;
+	private byte[] serializableBytes;
+	private ByteBuffer direct;
+
+	@Setup
+	public void setup() {
+		order = Payloads.order(size);
+		objectUtilsBytes = ObjectUtils.ObjectToByte(order);
+		serializableBytes = SerializableUtil.serialize(order);
+		direct = ByteBuffer.allocateDirect(serializableBytes.length * 2);
+	}
+
+	@Benchmark
+	public byte[] objectUtilsSerialize() {
+		return ObjectUtils.ObjectToByte(order);
+	}
+
+	@Benchmark
+	public Object objectUtilsUnSerialize() {
+		return ObjectUtils.ByteToObject(objectUtilsBytes);
+	}
+
+	@Benchmark
+	public byte[] serializableUtilSerialize() {
+		return SerializableUtil.serialize(order);
+	}
+
+	@Benchmark
+	public Payloads.Order serializableUtilUnSerialize() {
+		return SerializableUtil.unSerialize(serializableBytes, Payloads.Order.class);
+	}
+
+	/**
+	 * 写入并读回堆外buffer，不产生中间的字节数组
+	 */
+	@Benchmark
+	public Payloads.Order serializableUtilDirectBuffer() {
+		direct.clear();
+		SerializableUtil.serialize(order, direct);
+		direct.flip();
+		return SerializableUtil.unSerialize(direct, Payloads.Order.class);
+	}
+}
@@ -0,0 +1,79 @@
+package com.lgt.qa.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准共用的测试数据，small约300字节，large约64KB，目标值位于文档末尾附近，提取需要越过前面的全部内容
+ *
+ */
+final class Payloads {
+	static final String SMALL = "small";
+	static final String LARGE = "large";
+
+	private Payloads() {
+	}
+
+	/**
+	 * @param size small或large
+	 * @return 订单对象
+	 */
+	static Order order(String size) {
+		int items = LARGE.equals(size) ? 600 : 2;
+		Order order = new Order();
+		order.id = 1024;
+		order.name = "order-1024";
+		order.status = "PAID";
+		order.items = new ArrayList<>();
+		for(int i = 0; i < items; i++) {
+			Item item = new Item();
+			item.sku = "sku-" + i;
+			item.price = 100 + i;
+			item.quantity = i % 5 + 1;
+			order.items.add(item);
+		}
+		order.attrs = new LinkedHashMap<>();
+		order.attrs.put("channel", "app");
+		order.attrs.put("token", "b6f1c2d8e9a04c7f");
+		return order;
+	}
+
+	/**
+	 * 订单的json形式，字段顺序固定，token在items之后
+	 * @param size small或large
+	 * @return json字符串
+	 */
+	static String json(String size) {
+		Order order = order(size);
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"id\":").append(order.id)
+				.append(",\"name\":\"").append(order.name)
+				.append("\",\"status\":\"").append(order.status)
+				.append("\",\"items\":[");
+		for(int i = 0; i < order.items.size(); i++) {
+			Item item = order.items.get(i);
+			sb.append(i > 0 ? "," : "")
+					.append("{\"sku\":\"").append(item.sku)
+					.append("\",\"price\":").append(item.price)
+					.append(",\"quantity\":").append(item.quantity).append('}');
+		}
+		sb.append("],\"attrs\":{\"channel\":\"app\",\"token\":\"b6f1c2d8e9a04c7f\"}}");
+		return sb.toString();
+	}
+
+	public static class Order {
+		public long id;
+		public String name;
+		public String status;
+		public List<Item> items;
+		public Map<String, String> attrs;
+	}
+
+	public static class Item {
+		public String sku;
+		public long price;
+		public int quantity;
+	}
+}
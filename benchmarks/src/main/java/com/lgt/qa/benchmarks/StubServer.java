@@ -0,0 +1,257 @@
+package com.lgt.qa.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的桩HTTP服务，基于JDK自带的HttpServer，用于在没有外部服务的情况下测量客户端开销。
+ * 所有路径返回同样的JSON应答，可以配置延迟、body大小、状态码和Set-Cookie行为；
+ * 延迟由定时线程在到期后发送应答，不占用处理线程，因此高延迟下也能支撑高并发。
+ * JDK的HttpServer默认开启Nagle，应答头和body分开写出时每个请求会多等待一次延迟确认，
+ * 测量时应以-Dsun.net.httpserver.nodelay=true启动进程（{@link com.lgt.qa.load.ThroughputBenchmark#main(String[])}会自动设置），
+ * 该属性在第一个HttpServer创建时读取一次，对整个进程生效，因此不在这里修改。
+ * <pre>
+ * try (StubServer stub = new StubServer().latency(5, TimeUnit.MILLISECONDS).bodySize(2048).start()) {
+ *     EasyRequest req = new EasyRequest(stub.url("/items"));
+ *     ...
+ * }
+ * </pre>
+ *
+ */
+public class StubServer implements AutoCloseable {
+	private static final Logger logger = LoggerFactory.getLogger(StubServer.class);
+
+	private int port = 0;
+	private int threads = Runtime.getRuntime().availableProcessors() * 2;
+	private long latencyNanos = 0;
+	private long jitterNanos = 0;
+	private int bodySize = 256;
+	private int status = 200;
+	private int errorStatus = 500;
+	private double errorRate = 0;
+	private int cookies = 0;
+	private String cookieAttributes = "Path=/";
+
+	private HttpServer server;
+	private ExecutorService workers;
+	private ScheduledExecutorService delayer;
+	private byte[] body;
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong bytesReceived = new AtomicLong();
+
+	/**
+	 * @param port 监听端口，0表示随机端口
+	 * @return 当前对象
+	 */
+	public StubServer port(int port) {
+		this.port = port;
+		return this;
+	}
+
+	/**
+	 * @param threads 处理线程数
+	 * @return 当前对象
+	 */
+	public StubServer threads(int threads) {
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * 设置固定延迟
+	 * @param time 延迟
+	 * @param unit 时间单位
+	 * @return 当前对象
+	 */
+	public StubServer latency(long time, TimeUnit unit) {
+		this.latencyNanos = unit.toNanos(time);
+		return this;
+	}
+
+	/**
+	 * 设置随机延迟抖动，实际延迟在[latency, latency+jitter)之间均匀分布
+	 * @param time 抖动范围
+	 * @param unit 时间单位
+	 * @return 当前对象
+	 */
+	public StubServer jitter(long time, TimeUnit unit) {
+		this.jitterNanos = unit.toNanos(time);
+		return this;
+	}
+
+	/**
+	 * @param bytes 应答body的字节数，body是填充到该长度的合法JSON
+	 * @return 当前对象
+	 */
+	public StubServer bodySize(int bytes) {
+		this.bodySize = bytes;
+		return this;
+	}
+
+	/**
+	 * @param status 正常应答的状态码
+	 * @return 当前对象
+	 */
+	public StubServer status(int status) {
+		this.status = status;
+		return this;
+	}
+
+	/**
+	 * 设置按比例返回的错误状态码
+	 * @param rate 错误比例，0到1之间
+	 * @param status 错误状态码
+	 * @return 当前对象
+	 */
+	public StubServer errors(double rate, int status) {
+		this.errorRate = rate;
+		this.errorStatus = status;
+		return this;
+	}
+
+	/**
+	 * 设置每个应答带的Set-Cookie头个数，cookie名为c0、c1...，值为递增的请求序号
+	 * @param count cookie个数，0表示不设置cookie
+	 * @param attributes cookie属性，如"Path=/; Max-Age=60"
+	 * @return 当前对象
+	 */
+	public StubServer setCookies(int count, String attributes) {
+		this.cookies = count;
+		this.cookieAttributes = attributes;
+		return this;
+	}
+
+	/**
+	 * 启动服务
+	 * @return 当前对象
+	 * @throws IOException 端口无法绑定
+	 */
+	public StubServer start() throws IOException {
+		body = buildBody(bodySize);
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+		workers = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "stub-worker");
+			t.setDaemon(true);
+			return t;
+		});
+		delayer = Executors.newScheduledThreadPool(1, r -> {
+			Thread t = new Thread(r, "stub-delay");
+			t.setDaemon(true);
+			return t;
+		});
+		server.setExecutor(workers);
+		server.createContext("/", this::handle);
+		server.start();
+		logger.info("桩服务已启动：{}", url("/"));
+		return this;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		long seq = requests.incrementAndGet();
+		try (InputStream in = exchange.getRequestBody()) { // 读完请求body，保证连接可以复用
+			byte[] buf = new byte[8192];
+			long total = 0;
+			int n;
+			while((n = in.read(buf)) != -1) {
+				total += n;
+			}
+			bytesReceived.addAndGet(total);
+		}
+		long delay = latencyNanos + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0);
+		if(delay > 0) {
+			delayer.schedule(() -> respond(exchange, seq), delay, TimeUnit.NANOSECONDS);
+		}else {
+			respond(exchange, seq);
+		}
+	}
+
+	private void respond(HttpExchange exchange, long seq) {
+		try {
+			int code = errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate ? errorStatus : status;
+			exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+			for(int i = 0; i < cookies; i++) {
+				exchange.getResponseHeaders().add("Set-Cookie", "c" + i + "=" + seq + "; " + cookieAttributes);
+			}
+			exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+			if(body.length > 0) {
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+		} catch (IOException e) {
+			logger.debug("桩服务应答发送失败", e);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * 生成指定长度的JSON：{"id":1,"name":"stub","items":[...],"pad":"xxx"}
+	 */
+	static byte[] buildBody(int size) {
+		StringBuilder sb = new StringBuilder("{\"id\":1,\"name\":\"stub\",\"token\":\"abc123\",\"items\":[");
+		for(int i = 0; i < 3; i++) {
+			sb.append(i > 0 ? "," : "").append("{\"id\":").append(i).append(",\"value\":\"v").append(i).append("\"}");
+		}
+		sb.append("],\"pad\":\"");
+		int remaining = size - sb.length() - 2;
+		if(remaining < 0) {
+			return size < 2 ? new byte[0] : "{}".getBytes(StandardCharsets.UTF_8);
+		}
+		for(int i = 0; i < remaining; i++) {
+			sb.append('x');
+		}
+		sb.append("\"}");
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param path 请求路径
+	 * @return 完整url
+	 */
+	public String url(String path) {
+		return "http://127.0.0.1:" + getPort() + (path.startsWith("/") ? path : "/" + path);
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * @return 已处理的请求数
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * @return 已接收的请求body字节数
+	 */
+	public long getBytesReceived() {
+		return bytesReceived.get();
+	}
+
+	@Override
+	public void close() {
+		if(server != null) {
+			server.stop(0);
+			delayer.shutdownNow();
+			workers.shutdownNow();
+			server = null;
+		}
+	}
+}
@@ -0,0 +1,301 @@
+package com.lgt.qa.load;
+
+import com.lgt.qa.benchmarks.StubServer;
+import com.lgt.qa.cmdparsers.StepContext;
+import com.lgt.qa.okhttp.EasyRequest;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 客户端吞吐量基准。
+ * 以封闭模型（每个线程完成一次再发起下一次）按逐级增加的并发数驱动场景，每一级先预热再测量，
+ * 报告每秒请求数、施压线程的内存分配速率和每请求分配字节数，以及延迟分位数。
+ * 配合{@link StubServer}使用时服务端开销固定，结果的变化即反映EasyRequest、命令解释器和cookie容器等客户端的开销。
+ * 属于benchmarks工程，不打包进interfaceUtils；放在com.lgt.qa.load包中是为了直接驱动VirtualUser的绑定和解绑。
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.lgt.qa.load.ThroughputBenchmark concurrency=1,4,16,64 warmup=3 duration=10 body=2048 latency=0 cookies=2
+ * </pre>
+ *
+ */
+public class ThroughputBenchmark {
+	private static final Logger logger = LoggerFactory.getLogger(ThroughputBenchmark.class);
+	private static final long MAX_LATENCY = TimeUnit.MINUTES.toNanos(1);
+	private static final int WARMUP = 0, MEASURE = 1, STOPPED = 2;
+
+	private int[] concurrency = {1, 2, 4, 8, 16, 32};
+	private long warmupNanos = TimeUnit.SECONDS.toNanos(3);
+	private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+	private final Scenario scenario;
+	private volatile int phase;
+
+	/**
+	 * @param scenario 每次迭代执行的场景
+	 */
+	public ThroughputBenchmark(Scenario scenario) {
+		this.scenario = scenario;
+	}
+
+	/**
+	 * @param levels 依次测量的并发数
+	 * @return 当前对象
+	 */
+	public ThroughputBenchmark concurrency(int... levels) {
+		this.concurrency = levels.clone();
+		return this;
+	}
+
+	/**
+	 * @param time 每一级的预热时间
+	 * @param unit 时间单位
+	 * @return 当前对象
+	 */
+	public ThroughputBenchmark warmup(long time, TimeUnit unit) {
+		this.warmupNanos = unit.toNanos(time);
+		return this;
+	}
+
+	/**
+	 * @param time 每一级的测量时间
+	 * @param unit 时间单位
+	 * @return 当前对象
+	 */
+	public ThroughputBenchmark duration(long time, TimeUnit unit) {
+		this.durationNanos = unit.toNanos(time);
+		return this;
+	}
+
+	/**
+	 * 依次执行所有并发级别
+	 * @return 每一级的结果
+	 * @throws InterruptedException 等待时被中断
+	 */
+	public List<Result> run() throws InterruptedException {
+		List<Result> results = new ArrayList<>();
+		for(int level : concurrency) {
+			results.add(runLevel(level));
+		}
+		return results;
+	}
+
+	private Result runLevel(int threads) throws InterruptedException {
+		phase = WARMUP;
+		AtomicLong errors = new AtomicLong();
+		Histogram[] histograms = new Histogram[threads];
+		long[] counts = new long[threads];
+		Thread[] workers = new Thread[threads];
+		for(int i = 0; i < threads; i++) {
+			final int idx = i;
+			histograms[i] = new Histogram(MAX_LATENCY, 3);
+			VirtualUser user = new VirtualUser(i + 1);
+			workers[i] = new Thread(() -> {
+				int current;
+				while((current = phase) != STOPPED) {
+					long start = System.nanoTime();
+					StepContext.Scope scope = user.attach();
+					try {
+						scenario.run(user);
+					} catch (Throwable e) {
+						if(current == MEASURE) {
+							errors.incrementAndGet();
+						}
+						logger.debug("虚拟用户"+user.getId()+"迭代失败", e);
+					} finally {
+						user.detach(scope);
+					}
+					if(current == MEASURE) {
+						histograms[idx].recordValue(Math.min(System.nanoTime() - start, MAX_LATENCY));
+						counts[idx]++;
+					}
+				}
+			}, "bench-worker-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+		TimeUnit.NANOSECONDS.sleep(warmupNanos);
+		long[] ids = new long[threads];
+		for(int i = 0; i < threads; i++) {
+			ids[i] = workers[i].getId();
+		}
+		long alloc0 = allocatedBytes(ids);
+		long t0 = System.nanoTime();
+		phase = MEASURE;
+		TimeUnit.NANOSECONDS.sleep(durationNanos);
+		phase = STOPPED;
+		long elapsed = System.nanoTime() - t0;
+		long alloc1 = allocatedBytes(ids);
+		for(Thread worker : workers) {
+			worker.join();
+		}
+		Histogram total = new Histogram(MAX_LATENCY, 3);
+		long requests = 0;
+		for(int i = 0; i < threads; i++) {
+			total.add(histograms[i]);
+			requests += counts[i];
+		}
+		return new Result(threads, requests, errors.get(), elapsed, alloc0 < 0 || alloc1 < 0 ? -1 : alloc1 - alloc0, total);
+	}
+
+	/**
+	 * 施压线程累计分配的字节数，JVM不支持时返回-1
+	 */
+	private static long allocatedBytes(long[] ids) {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+		if(!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long sum = 0;
+		for(long bytes : sunBean.getThreadAllocatedBytes(ids)) {
+			sum += Math.max(bytes, 0);
+		}
+		return sum;
+	}
+
+	/**
+	 * 默认场景：通过命令解释器拼装url，发送GET请求，在应答上提取一个json值并读取一个cookie
+	 * @param baseUrl 服务地址，如http://127.0.0.1:8080
+	 * @return 场景
+	 */
+	public static Scenario defaultScenario(String baseUrl) {
+		return user -> {
+			StepContext.setVar("base", baseUrl);
+			StepContext.setVar("id", Long.toString(user.getIterations()));
+			EasyRequest request = new EasyRequest(String.valueOf(user.getParser().parserArg("${base}/items/${id}")));
+			request.setMethod("get");
+			user.getStepContext().setEasyRequest(request);
+			request.executeRequest();
+			Object value = user.getParser().parserArg("${response.body.json(items[1].value)}");
+			if(value == null) {
+				throw new IllegalStateException("extract failed");
+			}
+			request.getCookie("c0");
+		};
+	}
+
+	/**
+	 * 启动桩服务并以默认场景执行基准，参数格式为key=value：
+	 * concurrency（逗号分隔）、warmup和duration（秒）、latency（毫秒）、body（字节）、cookies（个数）
+	 * @param args 参数
+	 * @throws Exception 执行失败
+	 */
+	public static void main(String[] args) throws Exception {
+		if(System.getProperty("sun.net.httpserver.nodelay") == null) { // 基准独占进程，关闭桩服务的Nagle，避免每个请求多等待一次延迟确认
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		Map<String, String> opts = new HashMap<>();
+		for(String arg : args) {
+			int eq = arg.indexOf('=');
+			if(eq > 0) {
+				opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+			}
+		}
+		String[] levels = opts.getOrDefault("concurrency", "1,2,4,8,16,32").split(",");
+		int[] concurrency = new int[levels.length];
+		for(int i = 0; i < levels.length; i++) {
+			concurrency[i] = Integer.parseInt(levels[i].trim());
+		}
+		try (StubServer stub = new StubServer()
+				.latency(Long.parseLong(opts.getOrDefault("latency", "0")), TimeUnit.MILLISECONDS)
+				.bodySize(Integer.parseInt(opts.getOrDefault("body", "1024")))
+				.setCookies(Integer.parseInt(opts.getOrDefault("cookies", "1")), "Path=/")
+				.start()) {
+			ThroughputBenchmark bench = new ThroughputBenchmark(defaultScenario(stub.url("").replaceAll("/$", "")))
+					.concurrency(concurrency)
+					.warmup(Long.parseLong(opts.getOrDefault("warmup", "3")), TimeUnit.SECONDS)
+					.duration(Long.parseLong(opts.getOrDefault("duration", "10")), TimeUnit.SECONDS);
+			System.out.println(Result.HEADER);
+			for(int level : concurrency) {
+				System.out.println(bench.runLevel(level)); // 每一级完成后立即输出
+			}
+		}
+	}
+
+	/**
+	 * 一个并发级别的测量结果
+	 */
+	public static final class Result {
+		static final String HEADER = String.format("%8s %10s %8s %12s %12s %10s %10s %10s %10s %10s",
+				"threads", "requests", "errors", "req/s", "alloc MB/s", "B/req", "p50 ms", "p90 ms", "p99 ms", "p999 ms");
+
+		private final int threads;
+		private final long requests;
+		private final long errors;
+		private final long elapsedNanos;
+		private final long allocatedBytes;
+		private final Histogram latency;
+
+		Result(int threads, long requests, long errors, long elapsedNanos, long allocatedBytes, Histogram latency) {
+			this.threads = threads;
+			this.requests = requests;
+			this.errors = errors;
+			this.elapsedNanos = elapsedNanos;
+			this.allocatedBytes = allocatedBytes;
+			this.latency = latency;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public long getRequests() {
+			return requests;
+		}
+
+		public long getErrors() {
+			return errors;
+		}
+
+		/**
+		 * @return 每秒完成的请求数
+		 */
+		public double getThroughput() {
+			return requests * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * @return 施压线程每秒分配的字节数，JVM不支持统计时为-1
+		 */
+		public double getAllocationRate() {
+			return allocatedBytes < 0 ? -1 : allocatedBytes * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * @return 每个请求在施压线程上分配的字节数，JVM不支持统计时为-1
+		 */
+		public long getBytesPerRequest() {
+			return allocatedBytes < 0 || requests == 0 ? -1 : allocatedBytes / requests;
+		}
+
+		/**
+		 * @param percentile 分位，如99.9
+		 * @return 延迟分位数，毫秒
+		 */
+		public double latencyPercentileMillis(double percentile) {
+			return latency.getValueAtPercentile(percentile) / 1e6;
+		}
+
+		public Histogram getLatency() {
+			return latency;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%8d %10d %8d %12.1f %12.1f %10d %10.3f %10.3f %10.3f %10.3f",
+					threads, requests, errors, getThroughput(), getAllocationRate() / (1024 * 1024), getBytesPerRequest(),
+					latencyPercentileMillis(50), latencyPercentileMillis(90), latencyPercentileMillis(99), latencyPercentileMillis(99.9));
+		}
+	}
+}
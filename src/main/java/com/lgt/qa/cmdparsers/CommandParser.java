@@ -1,17 +1,12 @@
 package com.lgt.qa.cmdparsers;
 
+import com.lgt.qa.functions.JsonDocument;
 import okhttp3.Request;
 import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * 内置命令解释器类，通过识别关键字符串${}来判断是否在字符串中使用了内置命令。
@@ -45,6 +40,8 @@ import java.util.regex.Pattern;
  * 	<li>json(json-expression)</li>
  * 	<li>int(整数)</li>
  *  <li>double(浮点数)</li>
+ *  <li>regex(正则表达式)</li>
+ *  <li>通过{@link FunctionProvider}注册的自定义函数</li>
  * </ul>
  * 除去上述关键命令，其他字符串将被识别为全局参数
  *
@@ -52,15 +49,9 @@ import java.util.regex.Pattern;
 public class CommandParser {
 	private static final Logger logger = LoggerFactory.getLogger(CommandParser.class);
 	/**
-	 * FUNCTIONS用于做函数和实际方法的映射
+	 * FUNCTIONS用于做函数和实际方法的映射，可以通过{@link FunctionProvider}扩展
 	 */
-	private static final Map<String,String[]> FUNCTIONS = new HashMap<>();
-	static {
-		FUNCTIONS.put("json", new String[]{"com.ssic.qa.functions.ExtractUtils","jsonExtract"});
-		FUNCTIONS.put("int", new String[]{"com.ssic.qa.functions.TypeConverter","convert2int"});
-		FUNCTIONS.put("double", new String[]{"com.ssic.qa.functions.TypeConverter","convert2double"});
-		FUNCTIONS.put("regex", new String[]{"com.ssic.qa.functions.ExtractUtils","regexExtract"});
-	}
+	private static final FunctionRegistry FUNCTIONS = FunctionRegistry.getInstance();
 	
 	private StepContext context;
 	
@@ -73,27 +64,25 @@ public class CommandParser {
 	}
 	
 	/**
-	 * 参数解释方法，提取${}中的命令，并做分析
+	 * 参数解释方法，提取${}中的命令，并做分析。
+	 * 字符串会先被编译为{@link CommandTemplate}并缓存，相同的字符串再次解析时只执行其中的命令。
 	 * @param arg 需要分析的字符串
 	 * @return 执行了${}中的命令后，替换成的新字符串。
 	 */
 	public Object parserArg(String arg){
-		String str = arg;
-		Pattern p = Pattern.compile("\\$\\{.*?\\}"); // 定义要提取的结构
-		Matcher m = p.matcher(str);
-		//int gi = 0;
-		while(m.find()) { // 使用循环解决字符串中多处引用命令
-			String toReplace = m.group();
-			//gi = str.indexOf(toReplace)+toReplace.length()-1;
-			logger.info("找到字符串中引用的命令"+toReplace);
-			Object value = parserCmd(toReplace.substring(2, toReplace.length()-1)); // 将命令字符串从${}中提取出来交给命令解释器处理
-			logger.info("已将引用命令解析为"+value);
-			if(toReplace.equals(arg)) {
-				return value;
-			}
-			str = str.replace(toReplace, value.toString());
-		}
-		return str;
+		return CommandTemplate.compile(arg).render(this);
+	}
+	
+	/**
+	 * 执行模板中单个${}引用的命令
+	 * @param cmd ${}中的命令字符串
+	 * @return 命令的执行结果
+	 */
+	Object evaluate(String cmd) {
+		logger.info("找到字符串中引用的命令${{}}", cmd);
+		Object value = parserCmd(cmd);
+		logger.info("已将引用命令解析为{}", value);
+		return value;
 	}
 	
 	/**
@@ -156,6 +145,12 @@ public class CommandParser {
 				cmd = response.headers().toString();
 				break;
 			case "response.body":
+				if(!functionCmd.equals("")) { // body上的函数调用使用共享的json文档，同一个应答只解析一次
+					JsonDocument doc = context.getEasyRequest().getResponseDocument();
+					if(doc != null) {
+						return functionInvoke(doc, functionCmd);
+					}
+				}
 				cmd = context.getEasyRequest().getRespnseBody();
 				break;
 			case "response.code":
@@ -187,63 +182,64 @@ public class CommandParser {
 	
 	/**
 	 * 执行指定函数的方法
-	 * @param content 执行函数的上下文，将会作为函数的第一个参数传递给调用的函数
-	 * @param function 需要执行的函数，包含参数，函数的调用名和实际所在的类和方法保存在FUNCTIONS中
+	 * @param content 执行函数的上下文，将会作为函数的第一个参数传递给调用的函数，
+	 * 是{@link JsonDocument}而函数没有接收文档的重载时，改为传递文档的字符串形式
+	 * @param function 需要执行的函数，包含参数，函数的调用名和实际执行的方法保存在{@link FunctionRegistry}中
 	 * @return 函数执行后的结果
 	 */
-	private Object functionInvoke(String content, String function) {
-		String functionName = function.substring(0, function.indexOf("(")); // 截取出字符串中的函数名字
-		String args = "";
-		Object retVal = null;
-		if(function.lastIndexOf(")") - function.indexOf("(") > 1) {
-			args = function.substring(function.indexOf("(")+1, function.lastIndexOf(")"));
-		}
-		Object[] argsArr = args.split(","); // 截取出函数的参数
-		if(content!=null && !content.equals("")) { // 如果有content的值，则将content作为第一个参数
-			Object[] tmp = new Object[argsArr.length+1];
-			tmp[0] = content;
-			for(int i = 0; i < argsArr.length; i++) {
-				tmp[i+1] = argsArr[i];
-			}
-			argsArr = tmp;
+	private Object functionInvoke(Object content, String function) {
+		int open = function.indexOf("(");
+		int close = function.lastIndexOf(")");
+		String functionName = function.substring(0, open); // 截取出字符串中的函数名字
+		String[] args = close - open > 1 ? function.substring(open+1, close).split(",") : new String[0]; // 截取出函数的参数
+		Object[] argsArr = args;
+		if(content!=null && !"".equals(content)) { // 如果有content的值，则将content作为第一个参数
+			argsArr = new Object[args.length+1];
+			argsArr[0] = content;
+			System.arraycopy(args, 0, argsArr, 1, args.length);
 		}
-		if(FUNCTIONS.containsKey(functionName)) { // 检查是否存在该函数
-			try {
-				Class<?> clazz = Class.forName(FUNCTIONS.get(functionName)[0]); // 反射该类对象
-				if(!args.equals("")) { // 是否存在参数
-					Class<?>[] paramsType = new Class<?>[argsArr.length];
-					for(int i = 0; i < paramsType.length; i++) {
-						paramsType[i] = String.class;
-					}
-					Method method = clazz.getDeclaredMethod(FUNCTIONS.get(functionName)[1],paramsType); // 通过方法名和传递的参数类型反射该方法
-					retVal = method.invoke(null, argsArr); // 执行该方法
-				}else {
-					Method method = clazz.getDeclaredMethod(FUNCTIONS.get(functionName)[1]); // 如果没有参数，则直接查询该方法
-					retVal = method.invoke(null);
-				}
-			} catch (ClassNotFoundException | NoSuchMethodException | 
-					SecurityException | IllegalAccessException | 
-					IllegalArgumentException | InvocationTargetException e) {
-				logger.error("内置方法执行异常",e);
-			}
-		}else {
+		if(!FUNCTIONS.contains(functionName)) { // 检查是否存在该函数
 			logger.error(functionName+"不是可用的一个方法");
 			throw new RuntimeException(functionName+" is not a function");
 		}
-		logger.info("函数"+function+"的执行结果为"+retVal);
+		if(content instanceof JsonDocument && !FUNCTIONS.accepts(functionName, argsArr)) {
+			argsArr[0] = ((JsonDocument) content).text();
+		}
+		if(!FUNCTIONS.accepts(functionName, argsArr)) { // 参数个数不匹配或参数不能转换为声明类型属于调用错误，不能当作函数返回null
+			logger.error("函数"+functionName+"不能接收这"+argsArr.length+"个参数："+function);
+			throw new IllegalArgumentException(functionName+" does not accept "+argsArr.length+" arguments of these types: "+function);
+		}
+		Object retVal = null;
+		try {
+			retVal = FUNCTIONS.invoke(functionName, argsArr);
+		} catch (Error e) { // OutOfMemoryError等不属于函数的执行结果，直接抛出
+			throw e;
+		} catch (Throwable e) { // 函数本身抛出的异常只记录日志，与原来反射调用时的InvocationTargetException处理一致
+			logger.error("内置方法执行异常",e);
+		}
+		logger.info("函数{}的执行结果为{}", function, retVal);
 		return retVal;
 	}
 	
+	/**
+	 * 依次用参数替换字符串中的?占位符，一次扫描完成，参数中的?不会被再次替换
+	 * @param str 含有?占位符的字符串
+	 * @param args 参数，多余的参数被忽略，参数不足时剩余的?保持不变
+	 * @return 替换后的字符串
+	 */
 	public String replaceMagic(String str,List<String> args) {
-		for(int i = 0; i < args.size(); i++) {
-			int index = str.indexOf("?");
-			if(index != -1) {
-				String head = str.substring(0, index);
-				String tail = index!=str.length()-1?str.substring(index+1):"";
-				str = head + args.get(i) + tail;
-			}
+		int index = str.indexOf('?');
+		if(index == -1 || args.isEmpty()) {
+			return str;
+		}
+		StringBuilder sb = new StringBuilder(str.length() + args.size() * 16);
+		int from = 0;
+		for(int i = 0; i < args.size() && index != -1; i++) {
+			sb.append(str, from, index).append(args.get(i));
+			from = index + 1;
+			index = str.indexOf('?', from);
 		}
-		return str;
+		return sb.append(str, from, str.length()).toString();
 	}
 	
 }
@@ -0,0 +1,156 @@
+package com.lgt.qa.cmdparsers;
+
+import com.lgt.qa.functions.BoundedCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预编译的命令模板。
+ * 将包含${}引用的字符串一次性拆分为字面量片段和命令片段，编译结果按原始字符串缓存，
+ * 每次渲染只重新执行其中的命令片段，并在单次遍历中拼接到线程内复用的StringBuilder。
+ *
+ */
+public final class CommandTemplate {
+	/**
+	 * 模板缓存的最大条目数，可通过系统属性commandparser.template.cache调整
+	 */
+	private static final int MAX_CACHE_SIZE = Integer.getInteger("commandparser.template.cache", 4096);
+	/**
+	 * 超过该长度的字符串不进入缓存，避免缓存的key长期持有大body，可通过系统属性commandparser.template.maxLength调整
+	 */
+	private static final int MAX_CACHED_LENGTH = Integer.getInteger("commandparser.template.maxLength", 8 * 1024);
+	/**
+	 * 复用的StringBuilder超过该容量后不再保留，避免个别超大body长期占用内存
+	 */
+	private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+	private static final BoundedCache<String, CommandTemplate> CACHE = new BoundedCache<>(MAX_CACHE_SIZE);
+	private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+	private final String source;
+	private final String[] literals; // 字面量片段，长度总是commands.length+1
+	private final String[] commands; // ${}中的命令字符串
+	private final boolean singleCommand; // 整个字符串是否只有一个${}引用
+
+	private CommandTemplate(String source, String[] literals, String[] commands) {
+		this.source = source;
+		this.literals = literals;
+		this.commands = commands;
+		this.singleCommand = commands.length == 1 && literals[0].isEmpty() && literals[1].isEmpty();
+	}
+
+	/**
+	 * 获取指定字符串的编译模板，相同的字符串只会被解析一次。
+	 * 不含${的字符串直接包装为没有命令的模板，超过长度上限的字符串每次重新解析，二者都不进入缓存
+	 * @param str 需要编译的字符串
+	 * @return 编译后的模板
+	 */
+	public static CommandTemplate compile(String str) {
+		if(str.indexOf("${") == -1) {
+			return new CommandTemplate(str, new String[]{str}, new String[0]);
+		}
+		if(str.length() > MAX_CACHED_LENGTH) {
+			return parse(str);
+		}
+		return CACHE.get(str, CommandTemplate::parse);
+	}
+
+	/**
+	 * 清空模板缓存
+	 */
+	public static void clearCache() {
+		CACHE.clear();
+	}
+
+	/**
+	 * 解析字符串，规则与正则\$\{.*?\}一致：${之后到第一个}为止，中间不能跨行
+	 */
+	static CommandTemplate parse(String str) {
+		List<String> literals = new ArrayList<>();
+		List<String> commands = new ArrayList<>();
+		int literalStart = 0;
+		int from = 0;
+		int len = str.length();
+		while(from < len) {
+			int start = str.indexOf("${", from);
+			if(start == -1) {
+				break;
+			}
+			int end = -1;
+			for(int i = start + 2; i < len; i++) {
+				char c = str.charAt(i);
+				if(c == '}') {
+					end = i;
+					break;
+				}
+				if(isLineTerminator(c)) {
+					break;
+				}
+			}
+			if(end == -1) { // 该位置无法构成完整的${}，从下一个字符继续查找
+				from = start + 1;
+				continue;
+			}
+			literals.add(str.substring(literalStart, start));
+			commands.add(str.substring(start + 2, end));
+			literalStart = end + 1;
+			from = end + 1;
+		}
+		literals.add(str.substring(literalStart));
+		return new CommandTemplate(str, literals.toArray(new String[0]), commands.toArray(new String[0]));
+	}
+
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	/**
+	 * 使用指定的命令解释器渲染模板
+	 * @param parser 命令解释器
+	 * @return 如果整个字符串只是一个${}引用，返回命令的原始执行结果，否则返回替换后的新字符串
+	 */
+	public Object render(CommandParser parser) {
+		if(commands.length == 0) {
+			return source;
+		}
+		if(singleCommand) {
+			return parser.evaluate(commands[0]);
+		}
+		StringBuilder sb = BUILDER.get();
+		if(sb.length() != 0) { // 命令执行过程中发生了嵌套渲染，此时不能复用
+			sb = new StringBuilder(source.length() + 32);
+		}
+		try {
+			for(int i = 0; i < commands.length; i++) {
+				sb.append(literals[i]);
+				sb.append(parser.evaluate(commands[i]));
+			}
+			sb.append(literals[commands.length]);
+			return sb.toString();
+		} finally {
+			sb.setLength(0);
+			if(sb.capacity() > MAX_RETAINED_CAPACITY) {
+				BUILDER.set(new StringBuilder(256));
+			}
+		}
+	}
+
+	/**
+	 * @return 模板中是否包含${}引用
+	 */
+	public boolean hasCommands() {
+		return commands.length != 0;
+	}
+
+	/**
+	 * @return 编译前的原始字符串
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	@Override
+	public String toString() {
+		return source;
+	}
+}
@@ -0,0 +1,15 @@
+package com.lgt.qa.cmdparsers;
+
+/**
+ * 自定义函数的扩展点。
+ * 实现该接口，并在META-INF/services/com.lgt.qa.cmdparsers.FunctionProvider中声明实现类，
+ * {@link FunctionRegistry}初始化时会通过ServiceLoader加载并调用{@link #register(FunctionRegistry)}。
+ *
+ */
+public interface FunctionProvider {
+	/**
+	 * 向注册表注册函数
+	 * @param registry 函数注册表
+	 */
+	void register(FunctionRegistry registry);
+}
@@ -0,0 +1,327 @@
+package com.lgt.qa.cmdparsers;
+
+import com.lgt.qa.functions.ExtractUtils;
+import com.lgt.qa.functions.JsonDocument;
+import com.lgt.qa.functions.TypeConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 命令解释器可调用的函数注册表。
+ * 每个函数在注册时解析为绑定好的MethodHandle，调用时只做参数类型转换，不再做任何反射查找。
+ * 同名函数可以按参数个数重载，参数和返回值可以是任意类型，字符串参数会按目标参数类型自动转换。
+ * 除内置函数外，还会通过ServiceLoader加载所有{@link FunctionProvider}注册的自定义函数。
+ *
+ */
+public final class FunctionRegistry {
+	private static final Logger logger = LoggerFactory.getLogger(FunctionRegistry.class);
+	private static final FunctionRegistry INSTANCE = new FunctionRegistry();
+	private static final MethodHandle INVOKER_HANDLE;
+	private static final Map<Class<?>, Function<String, Object>> CONVERTERS = new HashMap<>();
+
+	static {
+		try {
+			INVOKER_HANDLE = MethodHandles.lookup().findVirtual(Invoker.class, "invoke",
+					MethodType.methodType(Object.class, Object[].class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+		CONVERTERS.put(int.class, s -> Integer.valueOf(s.trim()));
+		CONVERTERS.put(Integer.class, s -> Integer.valueOf(s.trim()));
+		CONVERTERS.put(long.class, s -> Long.valueOf(s.trim()));
+		CONVERTERS.put(Long.class, s -> Long.valueOf(s.trim()));
+		CONVERTERS.put(double.class, s -> Double.valueOf(s.trim()));
+		CONVERTERS.put(Double.class, s -> Double.valueOf(s.trim()));
+		CONVERTERS.put(float.class, s -> Float.valueOf(s.trim()));
+		CONVERTERS.put(Float.class, s -> Float.valueOf(s.trim()));
+		CONVERTERS.put(short.class, s -> Short.valueOf(s.trim()));
+		CONVERTERS.put(Short.class, s -> Short.valueOf(s.trim()));
+		CONVERTERS.put(byte.class, s -> Byte.valueOf(s.trim()));
+		CONVERTERS.put(Byte.class, s -> Byte.valueOf(s.trim()));
+		CONVERTERS.put(boolean.class, FunctionRegistry::toBoolean);
+		CONVERTERS.put(Boolean.class, FunctionRegistry::toBoolean);
+		CONVERTERS.put(char.class, FunctionRegistry::toChar);
+		CONVERTERS.put(Character.class, FunctionRegistry::toChar);
+
+		INSTANCE.registerBuiltins();
+		INSTANCE.loadProviders();
+	}
+
+	/**
+	 * 只接受true/false（忽略大小写），其他字符串视为不能转换，避免任意字符串都匹配boolean参数
+	 */
+	private static Object toBoolean(String s) {
+		String value = s.trim();
+		if("true".equalsIgnoreCase(value)) {
+			return Boolean.TRUE;
+		}
+		if("false".equalsIgnoreCase(value)) {
+			return Boolean.FALSE;
+		}
+		throw new IllegalArgumentException(s+" is not a boolean");
+	}
+
+	private static Object toChar(String s) {
+		if(s.isEmpty()) {
+			throw new IllegalArgumentException("empty string is not a char");
+		}
+		return s.charAt(0);
+	}
+
+	/**
+	 * 以lambda形式注册的函数，可以接收任意个数的参数
+	 */
+	public interface Invoker {
+		Object invoke(Object... args) throws Exception;
+	}
+
+	private final ConcurrentHashMap<String, Entry[]> functions = new ConcurrentHashMap<>();
+
+	private FunctionRegistry() {
+	}
+
+	/**
+	 * @return 全局函数注册表
+	 */
+	public static FunctionRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	private void registerBuiltins() {
+		register("json", ExtractUtils.class, "jsonExtract", String.class, String.class);
+		register("json", ExtractUtils.class, "jsonExtract", JsonDocument.class, String.class);
+		register("int", TypeConverter.class, "convert2int", String.class);
+		register("double", TypeConverter.class, "convert2double", String.class);
+		register("regex", ExtractUtils.class, "regexExtract", String.class, String.class);
+		register("regex", ExtractUtils.class, "regexExtract", String.class, String.class, int.class);
+		register("regexGroup", ExtractUtils.class, "regexExtractGroup", String.class, String.class, String.class);
+		register("regexAll", ExtractUtils.class, "regexExtractAll", String.class, String.class);
+	}
+
+	private void loadProviders() {
+		try {
+			for(FunctionProvider provider : ServiceLoader.load(FunctionProvider.class)) {
+				try {
+					provider.register(this);
+					logger.info("已加载自定义函数提供者"+provider.getClass().getName());
+				} catch (RuntimeException e) {
+					logger.error("自定义函数提供者"+provider.getClass().getName()+"注册失败", e);
+				}
+			}
+		} catch (ServiceConfigurationError e) {
+			logger.error("加载自定义函数提供者失败", e);
+		}
+	}
+
+	/**
+	 * 注册一个静态方法作为函数
+	 * @param name 函数名
+	 * @param owner 方法所在的类
+	 * @param methodName 方法名
+	 * @param paramTypes 方法的参数类型
+	 */
+	public void register(String name, Class<?> owner, String methodName, Class<?>... paramTypes) {
+		Method method;
+		try {
+			method = owner.getMethod(methodName, paramTypes);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(owner.getName()+"."+methodName+" is not a public method", e);
+		}
+		if(!Modifier.isStatic(method.getModifiers())) {
+			throw new IllegalArgumentException(owner.getName()+"."+methodName+" is not a static method");
+		}
+		try {
+			register(name, MethodHandles.publicLookup().unreflect(method));
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException(owner.getName()+"."+methodName+" is not accessible", e);
+		}
+	}
+
+	/**
+	 * 注册一个已经绑定好接收者的MethodHandle作为函数，参数个数由MethodHandle的类型决定
+	 * @param name 函数名
+	 * @param handle 方法句柄
+	 */
+	public void register(String name, MethodHandle handle) {
+		if(handle.isVarargsCollector()) {
+			handle = handle.asFixedArity();
+		}
+		addEntry(name, new Entry(handle, false));
+	}
+
+	/**
+	 * 注册一个lambda函数，调用时参数不做类型转换，按原样传递
+	 * @param name 函数名
+	 * @param invoker 函数实现
+	 */
+	public void register(String name, Invoker invoker) {
+		addEntry(name, new Entry(INVOKER_HANDLE.bindTo(invoker), true));
+	}
+
+	/**
+	 * 移除指定名称的所有函数
+	 * @param name 函数名
+	 */
+	public void unregister(String name) {
+		functions.remove(name);
+	}
+
+	/**
+	 * 判断是否存在指定名称的函数
+	 * @param name 函数名
+	 * @return true-存在，false-不存在
+	 */
+	public boolean contains(String name) {
+		return functions.containsKey(name);
+	}
+
+	private void addEntry(String name, Entry entry) {
+		functions.compute(name, (key, entries) -> {
+			if(entries == null) {
+				return new Entry[]{entry};
+			}
+			Entry[] merged = new Entry[entries.length + 1];
+			int n = 0;
+			for(Entry e : entries) {
+				if(e.varargs != entry.varargs || !Arrays.equals(e.paramTypes, entry.paramTypes)) { // 参数类型完全相同的旧函数被覆盖
+					merged[n++] = e;
+				}
+			}
+			merged[n++] = entry;
+			Entry[] result = new Entry[n];
+			System.arraycopy(merged, 0, result, 0, n);
+			return result;
+		});
+	}
+
+	/**
+	 * 判断是否存在可以接收指定参数的函数，字符串参数必须能转换为声明的参数类型
+	 * @param name 函数名
+	 * @param args 函数参数
+	 * @return true-存在，false-不存在
+	 */
+	public boolean accepts(String name, Object... args) {
+		Entry[] entries = functions.get(name);
+		if(entries != null) {
+			for(Entry entry : entries) {
+				if(entry.varargs || entry.convert(args) != null) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 执行指定函数
+	 * @param name 函数名
+	 * @param args 函数参数，字符串参数会按函数声明的参数类型转换
+	 * @return 函数执行结果
+	 * @throws IllegalArgumentException 函数不存在，或没有参数个数相同且参数都能转换的重载
+	 * @throws Throwable 函数执行时抛出的异常
+	 */
+	public Object invoke(String name, Object... args) throws Throwable {
+		Entry[] entries = functions.get(name);
+		if(entries == null) {
+			throw new IllegalArgumentException(name+" is not a function");
+		}
+		Entry fallback = null;
+		for(Entry entry : entries) {
+			if(entry.varargs) {
+				fallback = entry;
+			}else {
+				Object[] actual = entry.convert(args);
+				if(actual != null) {
+					return entry.invoke(actual);
+				}
+			}
+		}
+		if(fallback != null) {
+			return fallback.invoke(args);
+		}
+		throw new IllegalArgumentException(name+" does not accept "+args.length+" arguments of these types");
+	}
+
+	/**
+	 * 已解析好的函数
+	 */
+	private static final class Entry {
+		private final MethodHandle spreader;
+		private final Class<?>[] paramTypes;
+		private final Class<?>[] boxedTypes;
+		private final Function<String, Object>[] converters;
+		private final boolean varargs;
+
+		@SuppressWarnings("unchecked")
+		Entry(MethodHandle handle, boolean varargs) {
+			MethodType type = handle.type();
+			this.varargs = varargs;
+			this.paramTypes = type.parameterArray();
+			this.boxedTypes = type.wrap().parameterArray();
+			this.converters = new Function[paramTypes.length];
+			for(int i = 0; i < paramTypes.length; i++) {
+				converters[i] = CONVERTERS.get(paramTypes[i]);
+			}
+			if(varargs) {
+				this.spreader = handle;
+			}else {
+				this.spreader = handle.asType(type.generic()).asSpreader(Object[].class, paramTypes.length);
+			}
+		}
+
+		/**
+		 * 判断参数个数和类型是否与该函数匹配，并把字符串参数转换为声明的类型。
+		 * 字符串参数只有能转换为目标类型时才视为匹配，因此"abc"不会匹配int参数，转换失败的重载会让给下一个重载
+		 * @return 转换后的参数，不修改调用者传入的数组；不匹配时返回null
+		 */
+		Object[] convert(Object[] args) {
+			if(args.length != paramTypes.length) {
+				return null;
+			}
+			Object[] actual = args.getClass() == Object[].class ? args : Arrays.copyOf(args, args.length, Object[].class);
+			for(int i = 0; i < args.length; i++) {
+				Object arg = args[i];
+				if(arg == null) {
+					if(paramTypes[i].isPrimitive()) {
+						return null;
+					}
+				}else if(arg instanceof String && converters[i] != null) { // 字符串参数按声明类型转换，String/Object参数原样传递
+					Object value;
+					try {
+						value = converters[i].apply((String) arg);
+					} catch (IllegalArgumentException e) { // 包括NumberFormatException
+						return null;
+					}
+					if(actual == args) { // 不修改调用者传入的数组
+						actual = args.clone();
+					}
+					actual[i] = value;
+				}else if(!boxedTypes[i].isInstance(arg)) {
+					return null;
+				}
+			}
+			return actual;
+		}
+
+		/**
+		 * @param args 已经按声明类型转换好的参数，lambda函数为原始参数
+		 */
+		Object invoke(Object[] args) throws Throwable {
+			Object[] actual = args.getClass() == Object[].class ? args : Arrays.copyOf(args, args.length, Object[].class);
+			return (Object) spreader.invokeExact(actual);
+		}
+	}
+}
@@ -1,9 +1,11 @@
 package com.lgt.qa.cmdparsers;
 
+import com.lgt.qa.okhttp.CookieStore;
 import com.lgt.qa.okhttp.EasyRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
@@ -16,25 +18,48 @@ import java.util.Properties;
 public class StepContext {
 	private static ThreadLocal<EasyRequest> currentEeasyRequest = new ThreadLocal<>();
 	private static ThreadLocal<Map<String, String>>currentVars=ThreadLocal.withInitial(StepContext::init);// Map<String,String> vars = new HashMap<>(); // 存放自定义全局变量的容器
+	private static ThreadLocal<CookieStore> currentCookies = new ThreadLocal<>(); // 每个线程（虚拟用户）独立的cookie容器，第一次使用时创建
 	private static final Logger logger = LoggerFactory.getLogger(StepContext.class);
 	
+	/**
+	 * 创建一个新的自定义变量容器，本地参数定义文件只在第一次调用时读取，之后所有容器共享同一份只读的基础变量，
+	 * 容器只保存自己的修改
+	 * @return 变量容器
+	 */
 	public static Map<String, String> init() {
-		// 获取本地保存的参数定义文件
-		Map<String, String> map=new HashMap<>();
-		try {
-			Properties prop = PropertiesUtils.read("vars");
-			if(prop != null) {
-				Enumeration<?> keys = prop.propertyNames();
-				while(keys.hasMoreElements()) {
-					String name = keys.nextElement().toString();
-					map.put(name,prop.getProperty(name));
+		return new VarsOverlay(BaseVars.vars);
+	}
+	
+	/**
+	 * 重新读取本地参数定义文件，只影响之后新建的变量容器
+	 */
+	public static void reloadVars() {
+		BaseVars.vars = BaseVars.load();
+	}
+	
+	/**
+	 * 进程内共享的基础变量，第一次使用时加载
+	 */
+	private static final class BaseVars {
+		private static volatile Map<String, String> vars = load();
+		
+		private static Map<String, String> load() {
+			// 获取本地保存的参数定义文件
+			Map<String, String> map=new HashMap<>();
+			try {
+				Properties prop = PropertiesUtils.read("vars");
+				if(prop != null) {
+					Enumeration<?> keys = prop.propertyNames();
+					while(keys.hasMoreElements()) {
+						String name = keys.nextElement().toString();
+						map.put(name,prop.getProperty(name));
+					}
 				}
+			} catch (Exception e) {
+				logger.info("未找到本地配置的参数文件，全局变量置空",e);
 			}
-			return map;
-		} catch (Exception e) {
-			logger.info("未找到本地配置的参数文件，全局变量置空",e);
+			return Collections.unmodifiableMap(map);
 		}
-		return null;
 	}
 	
 	/**
@@ -79,4 +104,122 @@ public class StepContext {
 		currentEeasyRequest.set(easyRequest);
 	}
 	
+	/**
+	 * 获取当前线程的cookie容器，新建的EasyRequest默认使用它
+	 * @return cookie容器
+	 */
+	public static CookieStore getCookieStore() {
+		CookieStore store = currentCookies.get();
+		if(store == null) {
+			store = new CookieStore();
+			currentCookies.set(store);
+		}
+		return store;
+	}
+	/**
+	 * 替换当前线程的cookie容器
+	 * @param cookieStore cookie容器
+	 */
+	public static void setCookieStore(CookieStore cookieStore) {
+		currentCookies.set(cookieStore);
+	}
+	
+	/**
+	 * 丢弃当前线程的cookie容器，之后第一次使用时创建新的空容器。
+	 * 线程池中的线程会被反复使用，应在每个场景或虚拟用户迭代结束时调用，避免cookie在线程上一直累积；
+	 * 已经被快照或EasyRequest持有的容器不受影响
+	 */
+	public static void resetCookies() {
+		currentCookies.remove();
+	}
+	
+	/**
+	 * 捕获当前线程的上下文状态（EasyRequest对象、自定义变量和cookie容器），用于在异步回调等其他线程中恢复
+	 * @return 上下文快照
+	 */
+	public static Snapshot capture() {
+		return new Snapshot(currentEeasyRequest.get(), currentVars.get(), getCookieStore());
+	}
+	
+	/**
+	 * 创建一个独立的上下文快照，变量容器只包含参数定义文件中的变量，cookie容器为空，不与任何线程共享，
+	 * 用于为压测中的每个虚拟用户提供各自的上下文
+	 * @return 新的上下文快照
+	 */
+	public static Snapshot newSnapshot() {
+		return new Snapshot(null, init(), new CookieStore());
+	}
+	
+	/**
+	 * 上下文快照。ThreadLocal中的上下文不会跟随异步任务切换线程，
+	 * 通过{@link #attach()}可以把快照绑定到执行任务的线程上，任务结束后再恢复该线程原有的上下文。
+	 * 快照持有的是变量容器和cookie容器本身而不是副本，异步步骤中对它们的修改对后续步骤可见。
+	 */
+	public static final class Snapshot {
+		private final EasyRequest easyRequest;
+		private final Map<String, String> vars;
+		private final CookieStore cookies;
+		
+		private Snapshot(EasyRequest easyRequest, Map<String, String> vars, CookieStore cookies) {
+			this.easyRequest = easyRequest;
+			this.vars = vars;
+			this.cookies = cookies;
+		}
+		
+		/**
+		 * 创建一个替换了EasyRequest对象的新快照，变量容器和cookie容器保持不变
+		 * @param easyRequest EasyRequest对象
+		 * @return 新的快照
+		 */
+		public Snapshot withEasyRequest(EasyRequest easyRequest) {
+			return new Snapshot(easyRequest, vars, cookies);
+		}
+		
+		public EasyRequest getEasyRequest() {
+			return easyRequest;
+		}
+		
+		public CookieStore getCookieStore() {
+			return cookies;
+		}
+		
+		/**
+		 * 将快照绑定到当前线程
+		 * @return 用于恢复当前线程原有上下文的Scope，应在try-with-resources中使用
+		 */
+		public Scope attach() {
+			Scope scope = new Scope(currentEeasyRequest.get(), currentVars.get(), currentCookies.get()); // 线程还没有cookie容器时记录为null，不为恢复而创建
+			currentEeasyRequest.set(easyRequest);
+			currentVars.set(vars);
+			currentCookies.set(cookies);
+			return scope;
+		}
+	}
+	
+	/**
+	 * 快照的绑定范围，关闭时恢复线程原有的上下文，线程原来没有cookie容器时清除绑定的容器
+	 */
+	public static final class Scope implements AutoCloseable {
+		private final EasyRequest previousRequest;
+		private final Map<String, String> previousVars;
+		private final CookieStore previousCookies;
+		
+		private Scope(EasyRequest previousRequest, Map<String, String> previousVars, CookieStore previousCookies) {
+			this.previousRequest = previousRequest;
+			this.previousVars = previousVars;
+			this.previousCookies = previousCookies;
+		}
+		
+		@Override
+		public void close() {
+			currentEeasyRequest.set(previousRequest);
+			currentVars.set(previousVars);
+			if(previousCookies == null) {
+				currentCookies.remove();
+			}else {
+				currentCookies.set(previousCookies);
+			}
+		}
+	}
+	
 }
@@ -0,0 +1,119 @@
+package com.lgt.qa.cmdparsers;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 自定义变量容器：共享只读的基础变量加上线程自己的修改。
+ * 基础变量（vars.properties）在进程内只加载一次，所有线程共享；
+ * 每个线程只在第一次写入时才创建自己的修改表，读取时先查修改表再查基础变量，因此新线程几乎没有初始化开销。
+ * 与原来的HashMap一样，单个容器不是线程安全的。
+ *
+ */
+final class VarsOverlay extends AbstractMap<String, String> {
+	private static final String REMOVED = new String("<removed>"); // 删除标记，按引用比较
+
+	private final Map<String, String> base;
+	private HashMap<String, String> writes;
+
+	VarsOverlay(Map<String, String> base) {
+		this.base = base;
+	}
+
+	@Override
+	public String get(Object key) {
+		if(writes != null) {
+			String value = writes.get(key);
+			if(value != null || writes.containsKey(key)) {
+				return value == REMOVED ? null : value;
+			}
+		}
+		return base.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if(writes != null) {
+			String value = writes.get(key);
+			if(value != null || writes.containsKey(key)) {
+				return value != REMOVED;
+			}
+		}
+		return base.containsKey(key);
+	}
+
+	@Override
+	public String put(String key, String value) {
+		if(writes == null) {
+			writes = new HashMap<>();
+		}
+		String prev = get(key);
+		writes.put(key, value);
+		return prev;
+	}
+
+	@Override
+	public String remove(Object key) {
+		if(!containsKey(key)) {
+			return null;
+		}
+		String prev = get(key);
+		if(writes == null) {
+			writes = new HashMap<>();
+		}
+		if(base.containsKey(key)) {
+			writes.put((String) key, REMOVED);
+		}else {
+			writes.remove(key);
+		}
+		return prev;
+	}
+
+	@Override
+	public void clear() {
+		writes = new HashMap<>();
+		for(String key : base.keySet()) {
+			writes.put(key, REMOVED);
+		}
+	}
+
+	@Override
+	public int size() {
+		if(writes == null) {
+			return base.size();
+		}
+		int size = base.size();
+		for(Map.Entry<String, String> entry : writes.entrySet()) {
+			boolean inBase = base.containsKey(entry.getKey());
+			if(entry.getValue() == REMOVED) {
+				size--;
+			}else if(!inBase) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * 合并后的只读视图，修改请直接调用容器本身的方法
+	 */
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		if(writes == null) {
+			return Collections.unmodifiableMap(base).entrySet();
+		}
+		Map<String, String> merged = new LinkedHashMap<>(base);
+		for(Map.Entry<String, String> entry : writes.entrySet()) {
+			if(entry.getValue() == REMOVED) {
+				merged.remove(entry.getKey());
+			}else {
+				merged.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return Collections.unmodifiableMap(merged).entrySet();
+	}
+}
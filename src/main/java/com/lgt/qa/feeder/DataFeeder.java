@@ -0,0 +1,504 @@
+package com.lgt.qa.feeder;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.lgt.qa.load.VirtualUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 数据驱动场景的数据源，从CSV或JSONL文件中按指定的策略取行，可以被多个线程同时使用。
+ * 文件通过内存映射读取，打开时扫描一遍建立每行起始位置的索引，索引每行8字节，写在临时文件中同样通过内存映射访问，
+ * 取行时只解码该行，千万行级别的文件既不需要读到堆上，也不占用堆外内存的配额。超过2GB的文件分段映射。
+ * 索引文件在{@link #close()}时删除，使用完毕后必须关闭。
+ * <pre>
+ * try (DataFeeder feeder = DataFeeder.csv(new File("users.csv")).strategy(Strategy.CIRCULAR).open()) {
+ *     Row row = feeder.next();
+ *     row.setVars(); // 之后可以用${username}引用
+ * }
+ * </pre>
+ * CSV支持双引号包围的字段（其中可以包含分隔符、换行和以""表示的引号）；JSONL每行一个json对象，
+ * 字段值为字符串时取字符串内容，为数字、布尔值、对象或数组时取原文（数字保持原来的写法，如10.00）。空行被忽略。
+ *
+ */
+public final class DataFeeder implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(DataFeeder.class);
+	private static final long SEGMENT = 1L << 30; // 每段映射的大小
+	private static final int OVERLAP = 1 << 20; // 相邻映射段的重叠部分，不超过该长度的行总能在一个段内读到
+	private static final int INDEX_SHIFT = 23; // 每个索引段保存2^23行，即64MB
+	private static final int INDEX_CHUNK = 1 << INDEX_SHIFT;
+	private static final int INITIAL_INDEX_BYTES = 8 * 1024; // 索引段首次映射的大小，写满后成倍扩大
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	/**
+	 * 文件格式
+	 */
+	public enum Format {
+		CSV, JSONL
+	}
+
+	/**
+	 * 取行策略
+	 */
+	public enum Strategy {
+		/**
+		 * 所有线程共享一个游标，按顺序每行只取一次，取完后返回null
+		 */
+		SEQUENTIAL,
+		/**
+		 * 所有线程共享一个游标，按顺序取，取完后从头开始
+		 */
+		CIRCULAR,
+		/**
+		 * 每次随机取一行
+		 */
+		RANDOM,
+		/**
+		 * 将所有行平均分成{@link #users(int)}份，每个虚拟用户只使用自己的那一份，在其中循环取，不同用户之间不会拿到同一行
+		 */
+		UNIQUE_PER_USER
+	}
+
+	private final File file;
+	private final Format format;
+	private Strategy strategy = Strategy.SEQUENTIAL;
+	private char delimiter = ',';
+	private boolean header = true;
+	private String[] columns;
+	private int users = 1;
+
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private MappedByteBuffer[] segments;
+	private File indexFile;
+	private RandomAccessFile indexRaf;
+	private final List<MappedByteBuffer> index = new ArrayList<>(); // 每行的起始位置，按段映射
+	private long length;
+	private long rows;
+	private final AtomicLong cursor = new AtomicLong();
+	private AtomicLongArray userCursors;
+
+	private DataFeeder(File file, Format format) {
+		this.file = file;
+		this.format = format;
+	}
+
+	/**
+	 * @param file CSV文件，UTF-8编码，默认第一行为表头
+	 * @return 未打开的数据源
+	 */
+	public static DataFeeder csv(File file) {
+		return new DataFeeder(file, Format.CSV);
+	}
+
+	/**
+	 * @param file JSONL文件，UTF-8编码，每行一个json对象
+	 * @return 未打开的数据源
+	 */
+	public static DataFeeder jsonl(File file) {
+		return new DataFeeder(file, Format.JSONL);
+	}
+
+	/**
+	 * @param strategy 取行策略，默认为{@link Strategy#SEQUENTIAL}
+	 * @return 当前对象
+	 */
+	public DataFeeder strategy(Strategy strategy) {
+		this.strategy = strategy;
+		return this;
+	}
+
+	/**
+	 * @param delimiter CSV的分隔符，默认为逗号
+	 * @return 当前对象
+	 */
+	public DataFeeder delimiter(char delimiter) {
+		this.delimiter = delimiter;
+		return this;
+	}
+
+	/**
+	 * @param header CSV的第一行是否为表头，默认为true
+	 * @return 当前对象
+	 */
+	public DataFeeder header(boolean header) {
+		this.header = header;
+		return this;
+	}
+
+	/**
+	 * 指定CSV的列名，优先于表头。没有表头也没有指定列名时，列名为列的位置"0"、"1"...
+	 * @param columns 列名
+	 * @return 当前对象
+	 */
+	public DataFeeder columns(String... columns) {
+		this.columns = columns.clone();
+		return this;
+	}
+
+	/**
+	 * @param users {@link Strategy#UNIQUE_PER_USER}策略下数据分成的份数，应不小于虚拟用户数
+	 * @return 当前对象
+	 */
+	public DataFeeder users(int users) {
+		if(users < 1) {
+			throw new IllegalArgumentException("users must be positive");
+		}
+		this.users = users;
+		return this;
+	}
+
+	/**
+	 * 映射文件并建立行索引
+	 * @return 当前对象
+	 * @throws IOException 读取文件失败
+	 */
+	public DataFeeder open() throws IOException {
+		raf = new RandomAccessFile(file, "r");
+		channel = raf.getChannel();
+		length = channel.size();
+		int count = (int) ((length + SEGMENT - 1) / SEGMENT);
+		segments = new MappedByteBuffer[count];
+		for(int i = 0; i < count; i++) {
+			long start = i * SEGMENT;
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT + OVERLAP, length - start));
+		}
+		long begin = System.nanoTime();
+		buildIndex();
+		userCursors = new AtomicLongArray(users);
+		logger.info("数据文件{}共{}行，建立索引耗时{}ms", file, rows, (System.nanoTime() - begin) / 1000000);
+		return this;
+	}
+
+	/**
+	 * 扫描文件，记录每个非空行的起始位置。CSV的引号内的换行不作为行的结束
+	 */
+	private void buildIndex() throws IOException {
+		indexFile = File.createTempFile("feeder", ".idx");
+		indexRaf = new RandomAccessFile(indexFile, "rw");
+		boolean csv = format == Format.CSV;
+		boolean quoted = false;
+		long lineStart = 0;
+		boolean blank = true;
+		long pos = 0;
+		if(length >= 3 && byteAt(0) == (byte) 0xEF && byteAt(1) == (byte) 0xBB && byteAt(2) == (byte) 0xBF) { // 跳过UTF-8 BOM
+			pos = lineStart = 3;
+		}
+		boolean headerPending = csv && header;
+		for(int s = 0; s < segments.length; s++) {
+			MappedByteBuffer seg = segments[s];
+			long base = s * SEGMENT;
+			int end = (int) Math.min(SEGMENT, length - base);
+			for(int i = (int) (pos - base); i < end; i++) {
+				byte b = seg.get(i);
+				if(b == '\n' && !quoted) {
+					if(!blank) {
+						if(headerPending) {
+							headerPending = false;
+							if(columns == null) {
+								columns = parseCsv(read(lineStart));
+							}
+						}else {
+							addRow(lineStart);
+						}
+					}
+					lineStart = base + i + 1;
+					blank = true;
+				}else {
+					if(csv && b == '"') {
+						quoted = !quoted;
+					}
+					if(b != '\r' && b != ' ' && b != '\t') {
+						blank = false;
+					}
+				}
+			}
+			pos = base + end;
+		}
+		if(!blank) { // 最后一行没有换行符
+			if(headerPending) {
+				if(columns == null) {
+					columns = parseCsv(read(lineStart));
+				}
+			}else {
+				addRow(lineStart);
+			}
+		}
+	}
+
+	/**
+	 * 记录一行的起始位置。索引段按已有的行数映射，写满后以两倍大小重新映射同一段文件（已写入的内容保留在文件中），
+	 * 直到段的上限，行数很少的文件不会映射整个64MB的段
+	 */
+	private void addRow(long start) throws IOException {
+		int chunk = (int) (rows >>> INDEX_SHIFT);
+		int offset = (int) (rows & (INDEX_CHUNK - 1)) * 8;
+		if(chunk == index.size()) {
+			index.add(mapIndex(chunk, INITIAL_INDEX_BYTES));
+		}else if(offset >= index.get(chunk).capacity()) {
+			index.set(chunk, mapIndex(chunk, Math.min(index.get(chunk).capacity() * 2L, INDEX_CHUNK * 8L)));
+		}
+		index.get(chunk).putLong(offset, start);
+		rows++;
+	}
+
+	private MappedByteBuffer mapIndex(int chunk, long size) throws IOException {
+		return (MappedByteBuffer) indexRaf.getChannel()
+				.map(FileChannel.MapMode.READ_WRITE, (long) chunk * INDEX_CHUNK * 8, size)
+				.order(ByteOrder.nativeOrder());
+	}
+
+	private byte byteAt(long pos) {
+		int s = (int) (pos / SEGMENT);
+		return segments[s].get((int) (pos - s * SEGMENT));
+	}
+
+	/**
+	 * 读取从start开始的一行，不含行尾的换行符
+	 */
+	private byte[] read(long start) {
+		long end = start;
+		boolean quoted = false;
+		boolean csv = format == Format.CSV;
+		for(; end < length; end++) {
+			byte b = byteAt(end);
+			if(b == '\n' && !quoted) {
+				break;
+			}
+			if(csv && b == '"') {
+				quoted = !quoted;
+			}
+		}
+		if(end > start && byteAt(end - 1) == '\r') {
+			end--;
+		}
+		byte[] bytes = new byte[(int) (end - start)];
+		int s = (int) (start / SEGMENT);
+		long base = s * SEGMENT;
+		MappedByteBuffer seg = segments[s];
+		if(end - base <= seg.capacity()) {
+			ByteBuffer dup = seg.duplicate();
+			dup.position((int) (start - base));
+			dup.get(bytes);
+			return bytes;
+		}
+		try { // 超过重叠部分的超长行，直接从文件中读取
+			ByteBuffer dst = ByteBuffer.wrap(bytes);
+			long pos = start;
+			while(dst.hasRemaining()) {
+				int n = channel.read(dst, pos);
+				if(n < 0) {
+					break;
+				}
+				pos += n;
+			}
+			return bytes;
+		} catch (IOException e) {
+			throw new IllegalStateException("读取数据文件" + file + "失败", e);
+		}
+	}
+
+	/**
+	 * 按策略取下一行
+	 * @return 数据行，{@link Strategy#SEQUENTIAL}策略下数据取完或文件为空时返回null
+	 * @throws IllegalStateException 策略为{@link Strategy#UNIQUE_PER_USER}，需要使用{@link #next(int)}
+	 */
+	public Row next() {
+		if(strategy == Strategy.UNIQUE_PER_USER) {
+			throw new IllegalStateException("UNIQUE_PER_USER strategy requires a user id");
+		}
+		return next(1);
+	}
+
+	/**
+	 * 为指定的虚拟用户取下一行
+	 * @param user 虚拟用户
+	 * @return 数据行，参见{@link #next(int)}
+	 */
+	public Row next(VirtualUser user) {
+		return next(user.getId());
+	}
+
+	/**
+	 * 为指定编号的用户取下一行，只有{@link Strategy#UNIQUE_PER_USER}策略使用用户编号
+	 * @param userId 用户编号，从1开始，超过{@link #users(int)}时取模
+	 * @return 数据行，{@link Strategy#SEQUENTIAL}策略下数据取完、文件为空或该用户分到的数据为空时返回null
+	 */
+	public Row next(int userId) {
+		if(rows == 0) {
+			return null;
+		}
+		switch(strategy) {
+			case SEQUENTIAL:
+				long seq = cursor.getAndIncrement();
+				return seq < rows ? get(seq) : null;
+			case CIRCULAR:
+				return get(Math.floorMod(cursor.getAndIncrement(), rows));
+			case RANDOM:
+				return get(ThreadLocalRandom.current().nextLong(rows));
+			default:
+				int slot = Math.floorMod(userId - 1, users);
+				long from = rows * slot / users;
+				long to = rows * (slot + 1) / users;
+				if(to == from) {
+					return null;
+				}
+				return get(from + Math.floorMod(userCursors.getAndIncrement(slot), to - from));
+		}
+	}
+
+	/**
+	 * 按行号读取
+	 * @param row 行号，从0开始，不含CSV表头
+	 * @return 数据行
+	 * @throws IndexOutOfBoundsException 行号超出范围
+	 */
+	public Row get(long row) {
+		if(row < 0 || row >= rows) {
+			throw new IndexOutOfBoundsException("row " + row + " of " + rows);
+		}
+		byte[] bytes = read(index.get((int) (row >>> INDEX_SHIFT)).getLong((int) (row & (INDEX_CHUNK - 1)) * 8));
+		return format == Format.CSV ? csvRow(row, bytes) : jsonRow(row, bytes);
+	}
+
+	private Row csvRow(long row, byte[] bytes) {
+		String[] values = parseCsv(bytes);
+		String[] names = columns;
+		if(names == null || names.length < values.length) {
+			names = new String[values.length];
+			for(int i = 0; i < names.length; i++) {
+				names[i] = columns != null && i < columns.length ? columns[i] : String.valueOf(i);
+			}
+		}
+		return new Row(row, names, values);
+	}
+
+	/**
+	 * 流式解析一行json对象，数字取解析器中的原文，对象和数组直接截取该行中的原始字节
+	 */
+	private Row jsonRow(long row, byte[] bytes) {
+		List<String> names = new ArrayList<>();
+		List<String> values = new ArrayList<>();
+		try (JsonParser parser = JSON_FACTORY.createParser(bytes)) {
+			if(parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IllegalStateException("数据文件" + file + "的第" + (row + 1) + "行不是json对象");
+			}
+			while(parser.nextToken() == JsonToken.FIELD_NAME) {
+				names.add(parser.getCurrentName());
+				JsonToken token = parser.nextToken();
+				if(token == JsonToken.VALUE_NULL) {
+					values.add(null);
+				}else if(token.isStructStart()) {
+					int start = (int) parser.getCurrentLocation().getByteOffset() - 1; // 刚读过的{或[，字段值的tokenLocation指向字段名
+					parser.skipChildren();
+					int end = (int) parser.getCurrentLocation().getByteOffset();
+					values.add(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+				}else {
+					values.add(parser.getText());
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("数据文件" + file + "的第" + (row + 1) + "行不是json对象", e);
+		}
+		return new Row(row, names.toArray(new String[0]), values.toArray(new String[0]));
+	}
+
+	/**
+	 * 解析一行CSV
+	 */
+	private String[] parseCsv(byte[] bytes) {
+		String line = new String(bytes, StandardCharsets.UTF_8);
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for(int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if(quoted) {
+				if(c == '"') {
+					if(i + 1 < line.length() && line.charAt(i + 1) == '"') {
+						field.append('"');
+						i++;
+					}else {
+						quoted = false;
+					}
+				}else {
+					field.append(c);
+				}
+			}else if(c == '"') {
+				quoted = true;
+			}else if(c == delimiter) {
+				fields.add(field.toString());
+				field.setLength(0);
+			}else if(c != '\r') {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields.toArray(new String[0]);
+	}
+
+	/**
+	 * @return 数据行数，不含CSV表头
+	 */
+	public long getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * @return CSV的列名，JSONL文件返回null
+	 */
+	public String[] getColumns() {
+		return columns == null ? null : columns.clone();
+	}
+
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * 重置游标，{@link Strategy#SEQUENTIAL}策略下可以重新从头取
+	 */
+	public void rewind() {
+		cursor.set(0);
+		for(int i = 0; i < userCursors.length(); i++) {
+			userCursors.set(i, 0);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		segments = null;
+		index.clear();
+		if(raf != null) {
+			raf.close();
+			raf = null;
+		}
+		if(indexRaf != null) {
+			indexRaf.close();
+			indexRaf = null;
+			if(!indexFile.delete()) {
+				logger.warn("无法删除索引文件{}", indexFile);
+			}
+		}
+	}
+}
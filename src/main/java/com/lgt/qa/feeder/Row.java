@@ -0,0 +1,91 @@
+package com.lgt.qa.feeder;
+
+import com.lgt.qa.cmdparsers.StepContext;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 数据文件中的一行，列名和列值一一对应。CSV文件的所有行共享同一组列名，JSONL文件每行的列名为该行json对象的字段名
+ *
+ */
+public final class Row {
+	private final long index;
+	private final String[] names;
+	private final String[] values;
+
+	Row(long index, String[] names, String[] values) {
+		this.index = index;
+		this.names = names;
+		this.values = values;
+	}
+
+	/**
+	 * @return 行号，从0开始，不含CSV表头
+	 */
+	public long getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return 列数
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * @param column 列的位置，从0开始
+	 * @return 列值，超出范围时返回null
+	 */
+	public String get(int column) {
+		return column >= 0 && column < values.length ? values[column] : null;
+	}
+
+	/**
+	 * @param name 列名
+	 * @return 列值，不存在该列时返回null
+	 */
+	public String get(String name) {
+		for(int i = 0; i < names.length && i < values.length; i++) {
+			if(name.equals(names[i])) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return 按列顺序排列的值，可以直接传给{@link com.lgt.qa.cmdparsers.CommandParser#replaceMagic(String, List)}
+	 */
+	public List<String> values() {
+		return Arrays.asList(values);
+	}
+
+	/**
+	 * @return 列名到列值的映射，保持列的顺序
+	 */
+	public Map<String, String> toMap() {
+		Map<String, String> map = new LinkedHashMap<>();
+		for(int i = 0; i < names.length && i < values.length; i++) {
+			map.put(names[i], values[i]);
+		}
+		return map;
+	}
+
+	/**
+	 * 将每一列设置为当前线程上下文中的变量，之后可以在请求中以${列名}引用
+	 */
+	public void setVars() {
+		for(int i = 0; i < names.length && i < values.length; i++) {
+			StepContext.setVar(names[i], values[i]);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return index + ":" + toMap();
+	}
+}
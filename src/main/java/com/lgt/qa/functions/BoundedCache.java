@@ -0,0 +1,76 @@
+package com.lgt.qa.functions;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 有界的并发缓存，用于编译结果（正则、json路径、命令模板、reader/writer等）这类可以随时重建的值。
+ * 条目数达到上限时，放入新条目前淘汰迭代顺序中的第一个条目。
+ * 迭代顺序由key的哈希决定，因此淘汰既不是LRU也不是随机，只保证缓存有界；
+ * 常用的key被淘汰后只是在下一次使用时重新构建。
+ *
+ * @param <K> key类型
+ * @param <V> 缓存的值类型
+ */
+public final class BoundedCache<K, V> {
+	private final int maxSize;
+	private final ConcurrentHashMap<K, V> map = new ConcurrentHashMap<>();
+
+	/**
+	 * @param maxSize 最大条目数
+	 */
+	public BoundedCache(int maxSize) {
+		if(maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+		}
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param key key
+	 * @return 缓存的值，不存在时返回null
+	 */
+	public V get(K key) {
+		return map.get(key);
+	}
+
+	/**
+	 * 获取缓存的值，不存在时构建并放入缓存。
+	 * 构建在锁外进行，并发时同一个key可能被构建多次，但所有调用者得到的都是第一个放入缓存的值
+	 * @param key key
+	 * @param loader 构建函数，不能返回null
+	 * @return 缓存的值
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		V value = map.get(key);
+		if(value == null) {
+			value = loader.apply(key);
+			if(map.size() >= maxSize) {
+				Iterator<K> it = map.keySet().iterator();
+				if(it.hasNext()) {
+					map.remove(it.next());
+				}
+			}
+			V prev = map.putIfAbsent(key, value);
+			if(prev != null) {
+				value = prev;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * @return 当前的条目数
+	 */
+	public int size() {
+		return map.size();
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		map.clear();
+	}
+}
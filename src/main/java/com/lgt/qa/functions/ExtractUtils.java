@@ -1,66 +1,131 @@
 package com.lgt.qa.functions;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * 各类提取器常用类
  *
  */
 public class ExtractUtils {
-	private static JsonParser parser = new JsonParser();
 	/**
-	 * json数据提取器
+	 * json数据提取器，提取表达式会被编译并缓存，提取时流式解析，找到目标值后立即停止
 	 * @param jsonStr 需要提取的原文json数据
-	 * @param extractStr json提取表达式
-	 * @return 提取出的字符串
+	 * @param extractStr json提取表达式，参见{@link JsonPath}
+	 * @return 提取出的字符串，目标不存在时返回null
 	 */
 	public static String jsonExtract(String jsonStr,String extractStr){
-		JsonObject jsonObj = (JsonObject) parser.parse(jsonStr);
-		String[] parts = extractStr.split("\\.");
-		for(String part : parts) {
-			if(part.matches(".*\\[\\d+\\]$")) { // 如果是数组
-				int position = part.lastIndexOf('[');
-				int idx = Integer.parseInt(part.substring(position+1, part.length()-1));
-				part = part.substring(0, position);
-				JsonArray array = jsonObj.getAsJsonArray(part);
-				jsonObj = array.get(idx).getAsJsonObject();
-			}else {
-				JsonElement element = jsonObj.get(part);
-				if(element.isJsonPrimitive()) { // 如果是叶子节点，则直接返回
-					return element.getAsString();
-				}else if(element.isJsonArray()) { // 如果节点是数组，则直接返回
-					return element.getAsJsonArray().toString();
-				}else {
-					jsonObj = (JsonObject) element;
-				}
+		return JsonPath.compile(extractStr).extract(jsonStr);
+	}
+	
+	/**
+	 * json数据提取器，从已解析的json文档中提取，同一文档的多次提取只解析一次
+	 * @param document json文档
+	 * @param extractStr json提取表达式，参见{@link JsonPath}
+	 * @return 提取出的字符串，目标不存在时返回null
+	 */
+	public static String jsonExtract(JsonDocument document, String extractStr){
+		return document.extract(extractStr);
+	}
+	
+	/**
+	 * json多值提取器，在一次遍历中提取多个表达式的值
+	 * @param jsonStr 需要提取的原文json数据
+	 * @param extractStrs json提取表达式
+	 * @return 与表达式顺序对应的提取结果
+	 */
+	public static String[] jsonExtractAll(String jsonStr, String... extractStrs) {
+		return JsonPathSet.compile(extractStrs).extract(jsonStr);
+	}
+	
+	/**
+	 * json多值提取器，从已解析的json文档中提取多个表达式的值
+	 * @param document json文档
+	 * @param extractStrs json提取表达式
+	 * @return 与表达式顺序对应的提取结果
+	 */
+	public static String[] jsonExtractAll(JsonDocument document, String... extractStrs) {
+		return document.extract(extractStrs);
+	}
+	
+	/**
+	 * 正则提取器，提取第一个匹配，正则表达式会被编译并缓存
+	 * @param content 需要提取的内容
+	 * @param regPattern 正则表达式
+	 * @return 第一个匹配的第1个分组，表达式没有分组时为整个匹配，未匹配时返回空字符串
+	 */
+	public static String regexExtract(String content, String regPattern) {
+		Matcher m = PatternCache.compile(regPattern).matcher(content);
+		return m.find() ? firstGroup(m) : "";
+	}
+	
+	/**
+	 * 正则提取器，提取第n个匹配
+	 * @param content 需要提取的内容
+	 * @param regPattern 正则表达式
+	 * @param n 匹配的序号，从1开始
+	 * @return 第n个匹配的第1个分组，表达式没有分组时为整个匹配，匹配数不足n个时返回空字符串
+	 */
+	public static String regexExtract(String content, String regPattern, int n) {
+		Matcher m = PatternCache.compile(regPattern).matcher(content);
+		for(int i = 0; i < n; i++) {
+			if(!m.find()) {
+				return "";
 			}
 		}
-		return jsonObj.toString();
+		return n > 0 ? firstGroup(m) : "";
 	}
 	
-	public static String regexExtract(String content, String regPattern) {
-		Pattern p = Pattern.compile(regPattern);
-		Matcher m = p.matcher(content);
-		String result = "";
-//		int i = 0;
-		int gi = 0;
-		if(m.find(gi)) {
-//			i++;
-			result = m.group(1);
-			gi = content.indexOf(result)+result.length()-1;
-			/*if(Integer.parseInt(index) == i) {
-				break;
-			}*/
+	/**
+	 * 正则提取器，提取第一个匹配中的命名分组
+	 * @param content 需要提取的内容
+	 * @param regPattern 含有命名分组的正则表达式，如code=(?&lt;code&gt;\w+)
+	 * @param group 分组名
+	 * @return 分组的值，未匹配或分组未参与匹配时返回空字符串
+	 */
+	public static String regexExtractGroup(String content, String regPattern, String group) {
+		Matcher m = PatternCache.compile(regPattern).matcher(content);
+		if(m.find()) {
+			String value = m.group(group);
+			return value == null ? "" : value;
+		}
+		return "";
+	}
+	
+	/**
+	 * 正则提取器，提取所有匹配
+	 * @param content 需要提取的内容
+	 * @param regPattern 正则表达式
+	 * @return 所有匹配的第1个分组（表达式没有分组时为整个匹配），没有匹配时返回空列表
+	 */
+	public static List<String> regexExtractAll(String content, String regPattern) {
+		Matcher m = PatternCache.compile(regPattern).matcher(content);
+		List<String> result = new ArrayList<>();
+		while(m.find()) {
+			result.add(firstGroup(m));
 		}
 		return result;
 	}
 	
+	/**
+	 * 多表达式正则提取器，在一次扫描中提取每个表达式的第一个匹配，参见{@link RegexSet}
+	 * @param content 需要提取的内容
+	 * @param regPatterns 正则表达式
+	 * @return 与表达式顺序对应的提取结果，未匹配的为空字符串
+	 */
+	public static String[] regexExtractEach(String content, String... regPatterns) {
+		return RegexSet.compile(regPatterns).extract(content);
+	}
+	
+	/**
+	 * 匹配结果的第1个分组，表达式没有分组时为整个匹配
+	 */
+	static String firstGroup(Matcher m) {
+		String value = m.groupCount() > 0 ? m.group(1) : m.group();
+		return value == null ? "" : value;
+	}
+	
 	public static void main(String[] args) {
 		String s = "{\"retCode\":100000,\"version\":\"1.0\",\"timestamp\":\"1524450874156\",\"data\":\"http://www.baidu.com?code=5aBcd\"}";
 		String p = "code=(.*?)\"}";
@@ -2,18 +2,32 @@ package com.lgt.qa.functions;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedOutputStream;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 public final class JSONUtil {
     private static final Logger logger = LoggerFactory.getLogger(JSONUtil.class);
@@ -21,14 +35,72 @@ public final class JSONUtil {
     private final static ObjectReader objectReader;
     private final static ObjectWriter objectWriter;
     private final static JsonFactory jsonFactory;
+    /**
+     * 读取JsonNode时浮点数保存为BigDecimal且不去掉末尾的0，输出时与原文的写法一致
+     */
+    private final static ObjectReader exactTreeReader;
+    private static final int MAX_CACHE_SIZE = Integer.getInteger("jsonutil.cache", 512);
+    private static final BoundedCache<Type, ObjectReader> readers = new BoundedCache<>(MAX_CACHE_SIZE); // 有界，如大量匿名类或动态生成的类型
+    private static final BoundedCache<Class<?>, ObjectWriter> writers = new BoundedCache<>(MAX_CACHE_SIZE);
 
     static {
         objectMapper = new ObjectMapper();
         //objectMapper.configure(JsonGenerator.Feature.QUOTE_FIELD_NAMES,false);
         objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        if (Boolean.getBoolean("jsonutil.afterburner")) {
+            registerAfterburner();
+        }
         objectReader = objectMapper.reader();
-        objectWriter = objectMapper.writer();
+        objectWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
         jsonFactory = objectMapper.getFactory();
+        exactTreeReader = objectMapper.readerFor(JsonNode.class)
+                .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                .with(JsonNodeFactory.withExactBigDecimals(true));
+    }
+
+    /**
+     * 注册Jackson Afterburner模块，用生成的字节码代替反射访问属性。该模块是可选依赖，不在classpath上时忽略
+     */
+    private static void registerAfterburner() {
+        try {
+            Class<?> module = Class.forName("com.fasterxml.jackson.module.afterburner.AfterburnerModule");
+            objectMapper.registerModule((Module) module.getDeclaredConstructor().newInstance());
+            logger.info("JSONUtil已启用Afterburner");
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warn("jsonutil.afterburner=true但无法加载jackson-module-afterburner，使用默认的反射方式", e);
+        }
+    }
+
+    /**
+     * 获取指定类型的reader，每个类型只构建一次，反序列化器在第一次使用后保存在reader中
+     *
+     * @param type 反序列化类型
+     * @return ObjectReader
+     */
+    static ObjectReader reader(Type type) {
+        return readers.get(type, t -> objectMapper.readerFor(objectMapper.constructType(t)));
+    }
+
+    /**
+     * 获取对象运行时类型的writer，序列化器在构建时预先查找好
+     *
+     * @param obj 要序列化的对象
+     * @return ObjectWriter
+     */
+    static ObjectWriter writer(Object obj) {
+        if (obj == null) {
+            return objectWriter;
+        }
+        return writers.get(obj.getClass(), objectWriter::forType);
+    }
+
+    /**
+     * 获取共享的JsonFactory，供同包内的流式解析使用
+     *
+     * @return JsonFactory
+     */
+    static JsonFactory getFactory() {
+        return jsonFactory;
     }
 
     /**
@@ -41,7 +113,7 @@ public final class JSONUtil {
      */
     public static <T> T unSerialize(String json, Type type) {
         try {
-            return objectReader.readValue(jsonFactory.createParser(json), objectMapper.constructType(type));
+            return reader(type).readValue(json);
         } catch (IOException e) {
             logger.error(String.format("Failed to convert json <%s> to object. ", json), e);
             return null;
@@ -58,7 +130,7 @@ public final class JSONUtil {
      */
     public static <T> T unSerialize(String json, Class<T> type) {
         try {
-            return objectReader.readValue(jsonFactory.createParser(json), type);
+            return reader(type).readValue(json);
         } catch (IOException e) {
             logger.error(String.format("Failed to convert json <%s> to object. ", json), e);
             return null;
@@ -90,7 +162,7 @@ public final class JSONUtil {
      */
     public static <T> T unSerialize(byte[] json, Type type) {
         try {
-            return objectReader.readValue(jsonFactory.createParser(json), objectMapper.constructType(type));
+            return reader(type).readValue(json);
         } catch (IOException e) {
             logger.error(String.format("Failed to convert json <%s> to object. ", new String(json)), e);
             return null;
@@ -107,7 +179,7 @@ public final class JSONUtil {
      */
     public static <T> T unSerialize(byte[] json, Class<T> type) {
         try {
-            return objectReader.readValue(jsonFactory.createParser(json), type);
+            return reader(type).readValue(json);
         } catch (IOException e) {
             logger.error(String.format("Failed to convert json <%s> to object. ", new String(json)), e);
             return null;
@@ -129,6 +201,265 @@ public final class JSONUtil {
         }
     }
 
+    /**
+     * 从输入流反序列化对象，不经过中间的字符串
+     *
+     * @param in   json输入流，读完后关闭
+     * @param type 反序列化类型
+     * @param <T>  要反序列化的类型
+     * @return 反序列化得到的对象
+     */
+    public static <T> T unSerialize(InputStream in, Type type) {
+        try {
+            return reader(type).readValue(in);
+        } catch (IOException e) {
+            logger.error("Failed to convert json stream to object. ", e);
+            return null;
+        }
+    }
+
+    /**
+     * 从输入流反序列化对象，不经过中间的字符串
+     *
+     * @param in   json输入流，读完后关闭
+     * @param type 反序列化类型
+     * @param <T>  要反序列化的类型
+     * @return 反序列化得到的对象
+     */
+    public static <T> T unSerialize(InputStream in, Class<T> type) {
+        return unSerialize(in, (Type) type);
+    }
+
+    /**
+     * 从ByteBuffer反序列化对象，读取position到limit之间的内容，读完后position移动到limit
+     *
+     * @param buffer json UTF-8 数据，堆内或堆外
+     * @param type   反序列化类型
+     * @param <T>    要反序列化的类型
+     * @return 反序列化得到的对象
+     */
+    public static <T> T unSerialize(ByteBuffer buffer, Type type) {
+        try {
+            if (buffer.hasArray()) {
+                T value = reader(type).readValue(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                buffer.position(buffer.limit());
+                return value;
+            }
+            return reader(type).readValue(new ByteBufferBackedInputStream(buffer));
+        } catch (IOException e) {
+            logger.error("Failed to convert json buffer to object. ", e);
+            return null;
+        }
+    }
+
+    /**
+     * 从ByteBuffer反序列化对象，参见{@link #unSerialize(ByteBuffer, Type)}
+     *
+     * @param buffer json UTF-8 数据，堆内或堆外
+     * @param type   反序列化类型
+     * @param <T>    要反序列化的类型
+     * @return 反序列化得到的对象
+     */
+    public static <T> T unSerialize(ByteBuffer buffer, Class<T> type) {
+        return unSerialize(buffer, (Type) type);
+    }
+
+    /**
+     * 将已解析的json文档转换成对象，复用文档中共享的json树，不再重新解析
+     *
+     * @param document json文档
+     * @param type     反序列化类型
+     * @param <T>      要反序列化的类型
+     * @return 反序列化得到的对象，文档不是合法的json时返回null
+     */
+    public static <T> T unSerialize(JsonDocument document, Type type) {
+        JsonNode root = document.getRoot();
+        if (root == null) {
+            return null;
+        }
+        try {
+            return reader(type).readValue(root);
+        } catch (IOException e) {
+            logger.error("Failed to convert json document to object. ", e);
+            return null;
+        }
+    }
+
+    /**
+     * 将已解析的json文档转换成对象，复用文档中共享的json树，不再重新解析
+     *
+     * @param document json文档
+     * @param type     反序列化类型
+     * @param <T>      要反序列化的类型
+     * @return 反序列化得到的对象，文档不是合法的json时返回null
+     */
+    public static <T> T unSerialize(JsonDocument document, Class<T> type) {
+        JsonNode root = document.getRoot();
+        if (root == null) {
+            return null;
+        }
+        try {
+            return reader(type).readValue(root);
+        } catch (IOException e) {
+            logger.error("Failed to convert json document to object. ", e);
+            return null;
+        }
+    }
+
+    /**
+     * 获取json文档共享的JsonNode
+     *
+     * @param document json文档
+     * @return JsonNode，文档不是合法的json时返回null
+     */
+    public static JsonNode unSerialize(JsonDocument document) {
+        return document.getRoot();
+    }
+
+    /**
+     * 逐个读取输入流中根节点数组的元素，不把整个数组读到内存中
+     *
+     * @param in   json输入流，迭代器关闭时一起关闭
+     * @param type 元素类型，可以是JsonNode
+     * @param <T>  元素类型
+     * @return 元素迭代器
+     */
+    public static <T> JsonArrayIterator<T> iterate(InputStream in, Class<T> type) {
+        return iterate(in, null, type);
+    }
+
+    /**
+     * 先定位到嵌套的数组，再逐个读取其中的元素。定位时跳过的内容不会被转换成对象
+     *
+     * @param in   json输入流，迭代器关闭时一起关闭
+     * @param path 数组所在的路径，如data.list，参见{@link JsonPath}；路径不存在或为null时得到空的迭代器
+     * @param type 元素类型，可以是JsonNode
+     * @param <T>  元素类型
+     * @return 元素迭代器
+     * @throws IllegalArgumentException 路径上的值不是数组
+     */
+    public static <T> JsonArrayIterator<T> iterate(InputStream in, String path, Class<T> type) {
+        try {
+            return new JsonArrayIterator<>(jsonFactory.createParser(in), path, reader(type), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open json stream. ", e);
+        }
+    }
+
+    /**
+     * 逐个读取json UTF-8 数组中根节点数组的元素
+     *
+     * @param json json UTF-8 数组
+     * @param type 元素类型
+     * @param <T>  元素类型
+     * @return 元素迭代器
+     */
+    public static <T> JsonArrayIterator<T> iterate(byte[] json, Class<T> type) {
+        return iterate(json, null, type);
+    }
+
+    /**
+     * 逐个读取json UTF-8 数组中嵌套数组的元素
+     *
+     * @param json json UTF-8 数组
+     * @param path 数组所在的路径，参见{@link #iterate(InputStream, String, Class)}
+     * @param type 元素类型
+     * @param <T>  元素类型
+     * @return 元素迭代器
+     */
+    public static <T> JsonArrayIterator<T> iterate(byte[] json, String path, Class<T> type) {
+        try {
+            return new JsonArrayIterator<>(jsonFactory.createParser(json), path, reader(type), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open json bytes. ", e);
+        }
+    }
+
+    /**
+     * 逐个读取应答body中根节点数组的元素，body边下载边解析
+     *
+     * @param body 应答body，迭代器关闭时一起关闭
+     * @param type 元素类型
+     * @param <T>  元素类型
+     * @return 元素迭代器
+     */
+    public static <T> JsonArrayIterator<T> iterate(ResponseBody body, Class<T> type) {
+        return iterate(body, null, type);
+    }
+
+    /**
+     * 逐个读取应答body中嵌套数组的元素，body边下载边解析
+     *
+     * @param body 应答body，迭代器关闭时一起关闭
+     * @param path 数组所在的路径，参见{@link #iterate(InputStream, String, Class)}
+     * @param type 元素类型
+     * @param <T>  元素类型
+     * @return 元素迭代器
+     */
+    public static <T> JsonArrayIterator<T> iterate(ResponseBody body, String path, Class<T> type) {
+        try {
+            return new JsonArrayIterator<>(jsonFactory.createParser(body.byteStream()), path, reader(type), body);
+        } catch (IOException e) {
+            body.close();
+            throw new UncheckedIOException("Failed to open json response body. ", e);
+        }
+    }
+
+    /**
+     * 逐个把输入流中嵌套数组的元素读成JsonNode，浮点数保存为BigDecimal并保留原文的精度，
+     * 元素上的json提取得到的数字与在原文上流式提取的结果一致（10.00不会变成10.0）
+     *
+     * @param in   json输入流，迭代器关闭时一起关闭
+     * @param path 数组所在的路径，参见{@link #iterate(InputStream, String, Class)}
+     * @return 元素迭代器
+     */
+    public static JsonArrayIterator<JsonNode> iterateTree(InputStream in, String path) {
+        try {
+            return new JsonArrayIterator<>(jsonFactory.createParser(in), path, exactTreeReader, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open json stream. ", e);
+        }
+    }
+
+    /**
+     * 以Stream的形式逐个读取输入流中嵌套数组的元素，应在try-with-resources中使用以保证输入被关闭
+     *
+     * @param in   json输入流
+     * @param path 数组所在的路径，为null时根节点即为数组
+     * @param type 元素类型
+     * @param <T>  元素类型
+     * @return 元素流
+     */
+    public static <T> Stream<T> stream(InputStream in, String path, Class<T> type) {
+        return iterate(in, path, type).stream();
+    }
+
+    /**
+     * 以Stream的形式逐个读取json UTF-8 数组中嵌套数组的元素
+     *
+     * @param json json UTF-8 数组
+     * @param path 数组所在的路径，为null时根节点即为数组
+     * @param type 元素类型
+     * @param <T>  元素类型
+     * @return 元素流
+     */
+    public static <T> Stream<T> stream(byte[] json, String path, Class<T> type) {
+        return iterate(json, path, type).stream();
+    }
+
+    /**
+     * 以Stream的形式逐个读取应答body中嵌套数组的元素，应在try-with-resources中使用以保证连接被释放
+     *
+     * @param body 应答body
+     * @param path 数组所在的路径，为null时根节点即为数组
+     * @param type 元素类型
+     * @param <T>  元素类型
+     * @return 元素流
+     */
+    public static <T> Stream<T> stream(ResponseBody body, String path, Class<T> type) {
+        return iterate(body, path, type).stream();
+    }
+
     /**
      * 创建JsonObjectNode
      *
@@ -155,7 +486,7 @@ public final class JSONUtil {
      */
     public static String serialize(Object obj) {
         try {
-            return objectWriter.writeValueAsString(obj);
+            return writer(obj).writeValueAsString(obj);
         } catch (JsonProcessingException e) {
             logger.error("Failed to convert object to json. ", e);
             return null;
@@ -170,10 +501,52 @@ public final class JSONUtil {
      */
     public static byte[] serializeToBytes(Object obj) {
         try {
-            return objectWriter.writeValueAsBytes(obj);
+            return writer(obj).writeValueAsBytes(obj);
         } catch (JsonProcessingException e) {
             logger.error("Failed to convert object to json. ", e);
             return null;
         }
     }
+
+    /**
+     * 对象序列化后直接写入输出流，不产生中间的字符串或数组。写完后刷新但不关闭流
+     *
+     * @param obj 对象
+     * @param out 输出流
+     * @throws IOException 写入失败或对象无法序列化
+     */
+    public static void serialize(Object obj, OutputStream out) throws IOException {
+        writer(obj).writeValue(out, obj);
+    }
+
+    /**
+     * 对象序列化后直接写入Okio的BufferedSink，如RequestBody.writeTo中的sink。写完后不关闭sink
+     *
+     * @param obj  对象
+     * @param sink 目标sink
+     * @throws IOException 写入失败或对象无法序列化
+     */
+    public static void serialize(Object obj, BufferedSink sink) throws IOException {
+        writer(obj).writeValue(sink.outputStream(), obj);
+    }
+
+    /**
+     * 对象序列化后写入ByteBuffer，从position开始写，写完后position移动到数据末尾
+     *
+     * @param obj    对象
+     * @param buffer 堆内或堆外buffer
+     * @return 写入的字节数
+     * @throws IOException 对象无法序列化
+     * @throws java.nio.BufferOverflowException buffer剩余空间不足，此时buffer的position不变
+     */
+    public static int serialize(Object obj, ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        try {
+            writer(obj).writeValue(new ByteBufferBackedOutputStream(buffer), obj);
+        } catch (RuntimeException | IOException e) {
+            buffer.position(start);
+            throw e;
+        }
+        return buffer.position() - start;
+    }
 }
@@ -0,0 +1,128 @@
+package com.lgt.qa.functions;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 逐个读取json数组元素的迭代器，由{@link JSONUtil#iterate(java.io.InputStream, String, Class)}等方法创建。
+ * 使用Jackson的流式解析器，每次只把一个元素转换成对象，已经返回的元素不被引用，
+ * 内存占用与数组长度无关。数组读完时自动关闭，提前结束时应调用{@link #close()}释放输入。
+ * 不是线程安全的。
+ *
+ */
+public final class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+	private final JsonParser parser;
+	private final ObjectReader reader;
+	private final Closeable source;
+	private boolean ready; // 解析器已停在下一个元素的第一个token上
+	private boolean done;
+	private long count;
+
+	/**
+	 * @param parser 尚未读取任何token的解析器
+	 * @param path 数组所在的路径，为null或空时根节点即为数组
+	 * @param reader 元素类型的reader
+	 * @param source 需要随迭代器一起关闭的资源，可以为null
+	 */
+	JsonArrayIterator(JsonParser parser, String path, ObjectReader reader, Closeable source) {
+		this.parser = parser;
+		this.reader = reader;
+		this.source = source;
+		try {
+			JsonToken token = parser.nextToken();
+			boolean found = path == null || path.isEmpty() ? token != null : JsonPath.compile(path).seek(parser, token);
+			token = parser.getCurrentToken();
+			if(!found || token == JsonToken.VALUE_NULL) { // 路径不存在或为null时视为空数组
+				close();
+			}else if(token != JsonToken.START_ARRAY) {
+				close();
+				throw new IllegalArgumentException("json value at " + (path == null || path.isEmpty() ? "root" : path) + " is not an array");
+			}
+		} catch (IOException e) {
+			close();
+			throw new UncheckedIOException("无法定位json数组", e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if(ready) {
+			return true;
+		}
+		if(done) {
+			return false;
+		}
+		try {
+			JsonToken token = parser.nextToken();
+			if(token == JsonToken.END_ARRAY || token == null) {
+				close();
+				return false;
+			}
+			ready = true;
+			return true;
+		} catch (IOException e) {
+			close();
+			throw new UncheckedIOException("读取json数组失败", e);
+		}
+	}
+
+	@Override
+	public T next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		ready = false;
+		try {
+			T value = reader.readValue(parser);
+			count++;
+			return value;
+		} catch (IOException e) {
+			close();
+			throw new UncheckedIOException("无法转换json数组的第" + (count + 1) + "个元素", e);
+		}
+	}
+
+	/**
+	 * @return 已经读取的元素个数
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * 包装成顺序流，流关闭时关闭迭代器
+	 * @return Stream
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+				.onClose(this::close);
+	}
+
+	@Override
+	public void close() {
+		if(done) {
+			return;
+		}
+		done = true;
+		ready = false;
+		try {
+			parser.close();
+			if(source != null) {
+				source.close();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
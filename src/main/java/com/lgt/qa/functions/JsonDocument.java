@@ -0,0 +1,213 @@
+package com.lgt.qa.functions;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * 只解析一次的json文档，通常对应一次应答的body。
+ * 第一次提取或绑定时把原始数据解析成一棵json树，之后同一个文档上的所有json提取和{@link JSONUtil}的对象绑定都读取这棵树，不再重新解析。
+ * 树中的数字保持原文的写法（10.00、1E+2，参见{@link RawNumberNode}），提取结果与在原文上流式提取一致。
+ * 文档可以被多个线程共享读取。
+ *
+ */
+public final class JsonDocument {
+	private static final Logger logger = LoggerFactory.getLogger(JsonDocument.class);
+	private static final JsonNode INVALID = MissingNode.getInstance();
+	private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+	private final ByteBuffer utf8;
+	private final Supplier<String> textSupplier;
+	private volatile String text;
+	private volatile JsonNode root;
+
+	private JsonDocument(ByteBuffer utf8, String text, Supplier<String> textSupplier) {
+		this.utf8 = utf8;
+		this.text = text;
+		this.textSupplier = textSupplier;
+	}
+
+	/**
+	 * @param json json字符串
+	 * @return 文档对象
+	 */
+	public static JsonDocument of(String json) {
+		return new JsonDocument(null, json, null);
+	}
+
+	/**
+	 * @param utf8 json UTF-8 数组，调用者之后不应再修改它
+	 * @return 文档对象
+	 */
+	public static JsonDocument of(byte[] utf8) {
+		return of(utf8, null);
+	}
+
+	/**
+	 * @param utf8 json UTF-8 数组，调用者之后不应再修改它
+	 * @param text 文档的字符串形式的提供者，需要字符串时调用，用于复用已经解码好的字符串
+	 * @return 文档对象
+	 */
+	public static JsonDocument of(byte[] utf8, Supplier<String> text) {
+		return of(ByteBuffer.wrap(utf8), text);
+	}
+
+	/**
+	 * 直接在调用者的buffer上创建文档，不复制数据，如okio的ByteString.asByteBuffer()
+	 * @param utf8 json UTF-8 数据，position到limit之间的内容，调用者之后不应再修改它；buffer本身的position不会改变
+	 * @param text 文档的字符串形式的提供者，可以为null
+	 * @return 文档对象
+	 */
+	public static JsonDocument of(ByteBuffer utf8, Supplier<String> text) {
+		return new JsonDocument(utf8.duplicate(), null, text);
+	}
+
+	/**
+	 * 获取文档的json树，第一次调用时解析
+	 * @return 根节点，数字保持原文的写法；文档不是合法的json时返回null
+	 */
+	public JsonNode getRoot() {
+		JsonNode node = root;
+		if(node == null) {
+			synchronized (this) {
+				node = root;
+				if(node == null) {
+					node = parse();
+					root = node;
+				}
+			}
+		}
+		return node == INVALID ? null : node;
+	}
+
+	private JsonNode parse() {
+		try (JsonParser parser = createParser()) {
+			JsonToken token = parser.nextToken();
+			return token == null ? INVALID : read(parser, token);
+		} catch (IOException e) {
+			logger.error("Failed to parse json document. ", e);
+			return INVALID;
+		}
+	}
+
+	private JsonParser createParser() throws IOException {
+		if(utf8 == null) {
+			return JSONUtil.getFactory().createParser(text);
+		}
+		ByteBuffer buffer = utf8.duplicate();
+		if(buffer.hasArray()) {
+			return JSONUtil.getFactory().createParser(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		}
+		return JSONUtil.getFactory().createParser(new ByteBufferBackedInputStream(buffer)); // 只读或堆外的buffer分段读取，不复制整个body
+	}
+
+	/**
+	 * 从解析器当前所在的token开始读取一个完整的值
+	 */
+	private static JsonNode read(JsonParser parser, JsonToken token) throws IOException {
+		if(token == null) {
+			throw new JsonParseException("Unexpected end of json input", parser.getCurrentLocation());
+		}
+		switch(token) {
+			case START_OBJECT: {
+				ObjectNode object = NODES.objectNode();
+				while((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+					String name = parser.getCurrentName();
+					object.set(name, read(parser, parser.nextToken()));
+				}
+				if(token != JsonToken.END_OBJECT) {
+					throw new JsonParseException("Unexpected end of json object", parser.getCurrentLocation());
+				}
+				return object;
+			}
+			case START_ARRAY: {
+				ArrayNode array = NODES.arrayNode();
+				while((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+					array.add(read(parser, token));
+				}
+				return array;
+			}
+			case VALUE_STRING:
+				return NODES.textNode(parser.getText());
+			case VALUE_NUMBER_INT:
+			case VALUE_NUMBER_FLOAT:
+				return RawNumberNode.of(parser);
+			case VALUE_TRUE:
+				return NODES.booleanNode(true);
+			case VALUE_FALSE:
+				return NODES.booleanNode(false);
+			case VALUE_NULL:
+				return NODES.nullNode();
+			case VALUE_EMBEDDED_OBJECT:
+				return NODES.pojoNode(parser.getEmbeddedObject());
+			default:
+				throw new JsonParseException("Unexpected token " + token, parser.getCurrentLocation());
+		}
+	}
+
+	/**
+	 * @return json树是否已经构建
+	 */
+	public boolean isParsed() {
+		return root != null;
+	}
+
+	/**
+	 * @return 文档的字符串形式
+	 */
+	public String text() {
+		String s = text;
+		if(s == null) {
+			s = textSupplier != null ? textSupplier.get() : StandardCharsets.UTF_8.decode(utf8.duplicate()).toString();
+			text = s;
+		}
+		return s;
+	}
+
+	/**
+	 * 提取单个值，读取共享的json树
+	 * @param expression 提取表达式，语法参见{@link JsonPath}
+	 * @return 提取结果，规则参见{@link JsonPath#extract(String)}，文档不是合法的json时返回null
+	 */
+	public String extract(String expression) {
+		JsonNode node = getRoot();
+		return node == null ? null : JsonPath.compile(expression).extract(node);
+	}
+
+	/**
+	 * 一次提取多个值
+	 * @param expressions 提取表达式
+	 * @return 与表达式顺序对应的提取结果
+	 */
+	public String[] extract(String... expressions) {
+		return extract(JsonPathSet.compile(expressions));
+	}
+
+	/**
+	 * 一次提取多个值，读取共享的json树
+	 * @param paths 编译好的表达式集合
+	 * @return 与表达式顺序对应的提取结果，文档不是合法的json时全部为null
+	 */
+	public String[] extract(JsonPathSet paths) {
+		JsonNode node = getRoot();
+		return node == null ? new String[paths.size()] : paths.extract(node);
+	}
+
+	@Override
+	public String toString() {
+		return text();
+	}
+}
@@ -0,0 +1,272 @@
+package com.lgt.qa.functions;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 预编译的json提取表达式，如data.items[0].id、[0].name、matrix[1][2]。
+ * 表达式只解析一次并缓存，提取时使用Jackson的流式解析器逐个token前进，跳过无关的字段和数组元素，
+ * 找到目标值后立即停止，不会为整个文档构建对象树，开销只与目标值之前的内容有关。
+ *
+ */
+public final class JsonPath {
+	private static final int MAX_CACHE_SIZE = Integer.getInteger("jsonpath.cache", 1024);
+	private static final BoundedCache<String, JsonPath> CACHE = new BoundedCache<>(MAX_CACHE_SIZE);
+
+	private final String expression;
+	private final String[] names; // 字段名，数组下标位置为null
+	private final int[] indexes; // 数组下标，字段名位置为-1
+
+	private JsonPath(String expression, String[] names, int[] indexes) {
+		this.expression = expression;
+		this.names = names;
+		this.indexes = indexes;
+	}
+
+	/**
+	 * 编译json提取表达式，相同的表达式只会解析一次
+	 * @param expression 提取表达式，字段之间用.分隔，数组下标用[n]表示，根节点是数组时以[n]开头
+	 * @return 编译后的表达式
+	 */
+	public static JsonPath compile(String expression) {
+		return CACHE.get(expression, JsonPath::parse);
+	}
+
+	private static JsonPath parse(String expression) {
+		List<String> names = new ArrayList<>();
+		List<Integer> indexes = new ArrayList<>();
+		for(String part : expression.split("\\.")) {
+			int bracket = part.indexOf('[');
+			String name = bracket == -1 ? part : part.substring(0, bracket);
+			if(!name.isEmpty()) {
+				names.add(name);
+				indexes.add(-1);
+			}
+			while(bracket != -1) {
+				int close = part.indexOf(']', bracket);
+				if(close == -1) {
+					throw new IllegalArgumentException("invalid json path "+expression);
+				}
+				int idx;
+				try {
+					idx = Integer.parseInt(part.substring(bracket + 1, close).trim());
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("invalid array index in json path "+expression, e);
+				}
+				if(idx < 0) {
+					throw new IllegalArgumentException("invalid array index in json path "+expression);
+				}
+				names.add(null);
+				indexes.add(idx);
+				bracket = part.indexOf('[', close);
+			}
+		}
+		int[] idx = new int[indexes.size()];
+		for(int i = 0; i < idx.length; i++) {
+			idx[i] = indexes.get(i);
+		}
+		return new JsonPath(expression, names.toArray(new String[0]), idx);
+	}
+
+	/**
+	 * 从json字符串中提取目标值
+	 * @param json json字符串
+	 * @return 目标值是字符串、数字或布尔值时返回其文本，是对象或数组时返回json文本，不存在或为null时返回null
+	 */
+	public String extract(String json) {
+		try (JsonParser parser = JSONUtil.getFactory().createParser(json)) {
+			return extract(parser);
+		} catch (IOException e) {
+			throw new UncheckedIOException("无法从json中提取"+expression, e);
+		}
+	}
+
+	/**
+	 * 从json UTF-8 数组中提取目标值
+	 * @param json json UTF-8 数组
+	 * @return 参见{@link #extract(String)}
+	 */
+	public String extract(byte[] json) {
+		try (JsonParser parser = JSONUtil.getFactory().createParser(json)) {
+			return extract(parser);
+		} catch (IOException e) {
+			throw new UncheckedIOException("无法从json中提取"+expression, e);
+		}
+	}
+
+	/**
+	 * 从尚未读取任何token的解析器中提取目标值
+	 */
+	private String extract(JsonParser parser) throws IOException {
+		JsonToken token = parser.nextToken();
+		if(!seek(parser, token)) {
+			return null;
+		}
+		return render(parser, JSONUtil.getFactory());
+	}
+
+	/**
+	 * 将解析器移动到目标值上
+	 * @param parser 解析器
+	 * @param token 解析器当前所在的token，应当是要开始匹配的值
+	 * @return 是否找到目标值，找到时解析器停在目标值的第一个token上
+	 * @throws IOException 读取失败
+	 */
+	boolean seek(JsonParser parser, JsonToken token) throws IOException {
+		for(int i = 0; i < names.length; i++) {
+			if(token == null) {
+				return false;
+			}
+			if(names[i] != null) {
+				if(token != JsonToken.START_OBJECT) {
+					return false;
+				}
+				String name = names[i];
+				while(true) {
+					token = parser.nextToken();
+					if(token != JsonToken.FIELD_NAME) { // 对象结束，没有找到该字段
+						return false;
+					}
+					boolean matched = name.equals(parser.getCurrentName());
+					token = parser.nextToken();
+					if(matched) {
+						break;
+					}
+					parser.skipChildren();
+				}
+			}else {
+				if(token != JsonToken.START_ARRAY) {
+					return false;
+				}
+				int idx = indexes[i];
+				for(int n = 0; ; n++) {
+					token = parser.nextToken();
+					if(token == JsonToken.END_ARRAY || token == null) {
+						return false;
+					}
+					if(n == idx) {
+						break;
+					}
+					parser.skipChildren();
+				}
+			}
+		}
+		return token != null;
+	}
+
+	/**
+	 * 从已经解析好的json树中提取目标值。数字按树中保存的值输出，
+	 * 浮点数在默认解析得到的树中是double（10.00输出为10.0），需要保持原文写法时使用流式提取或{@link JsonDocument#getRoot()}得到的树
+	 * @param root 根节点
+	 * @return 参见{@link #extract(String)}
+	 */
+	public String extract(JsonNode root) {
+		return render(select(root));
+	}
+
+	/**
+	 * 在json树中定位目标节点
+	 * @param root 根节点
+	 * @return 目标节点，不存在时返回null
+	 */
+	public JsonNode select(JsonNode root) {
+		JsonNode node = root;
+		for(int i = 0; i < names.length && node != null; i++) {
+			node = names[i] != null ? (node.isObject() ? node.get(names[i]) : null)
+					: (node.isArray() ? node.get(indexes[i]) : null);
+		}
+		return node;
+	}
+
+	/**
+	 * 输出json树中的节点，规则与流式提取一致。
+	 * 数字按树中保存的值输出，只有树保留了原文写法（参见{@link JsonDocument#getRoot()}）
+	 * 或浮点数以不去掉末尾0的BigDecimal保存时（参见{@link JSONUtil#iterateTree(java.io.InputStream, String)}）才与原文一致
+	 */
+	static String render(JsonNode node) {
+		if(node == null || node.isNull() || node.isMissingNode()) {
+			return null;
+		}
+		return node.isValueNode() ? node.asText() : node.toString();
+	}
+
+	/**
+	 * 输出解析器当前所在的值，数字（包括对象和数组中的数字）保持原文的写法，如10.00、1E+2
+	 */
+	static String render(JsonParser parser, JsonFactory factory) throws IOException {
+		JsonToken token = parser.getCurrentToken();
+		if(token == null || token == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		if(token.isScalarValue()) {
+			return parser.getText();
+		}
+		StringWriter writer = new StringWriter();
+		try (JsonGenerator generator = factory.createGenerator(writer)) {
+			int depth = 0;
+			do {
+				if(token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+					generator.writeNumber(parser.getText()); // copyCurrentEvent会把数字转成double再输出
+				}else {
+					generator.copyCurrentEvent(parser);
+				}
+				if(token.isStructStart()) {
+					depth++;
+				}else if(token.isStructEnd()) {
+					depth--;
+				}
+			} while(depth > 0 && (token = parser.nextToken()) != null);
+		}
+		return writer.toString();
+	}
+
+	/**
+	 * @param from 起始段的位置
+	 * @return 由该段及之后的段组成的表达式，用于在已经定位到的子树中继续提取
+	 */
+	JsonPath suffix(int from) {
+		return new JsonPath(expression, Arrays.copyOfRange(names, from, names.length), Arrays.copyOfRange(indexes, from, indexes.length));
+	}
+
+	/**
+	 * @return 表达式的段数
+	 */
+	public int depth() {
+		return names.length;
+	}
+
+	/**
+	 * @param i 段的位置
+	 * @return 该段的字段名，是数组下标时返回null
+	 */
+	public String nameAt(int i) {
+		return names[i];
+	}
+
+	/**
+	 * @param i 段的位置
+	 * @return 该段的数组下标，是字段名时返回-1
+	 */
+	public int indexAt(int i) {
+		return indexes[i];
+	}
+
+	public String getExpression() {
+		return expression;
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+}
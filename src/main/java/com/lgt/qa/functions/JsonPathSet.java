@@ -0,0 +1,253 @@
+package com.lgt.qa.functions;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一组预编译的json提取表达式，在一次遍历中提取所有目标值。
+ * 表达式按路径前缀合并为一棵前缀树，流式解析时只进入前缀树中存在的字段和数组元素，
+ * 其余内容直接跳过，所有目标值都找到后立即停止。
+ *
+ */
+public final class JsonPathSet {
+	private final JsonPath[] paths;
+	private final Node root = new Node();
+
+	private JsonPathSet(JsonPath[] paths) {
+		this.paths = paths;
+		for(int i = 0; i < paths.length; i++) {
+			Node node = root;
+			JsonPath path = paths[i];
+			for(int d = 0; d < path.depth(); d++) {
+				node = path.nameAt(d) != null ? node.field(path.nameAt(d)) : node.index(path.indexAt(d));
+			}
+			node.targets.add(i);
+		}
+	}
+
+	/**
+	 * 编译一组提取表达式
+	 * @param expressions 提取表达式，语法参见{@link JsonPath}
+	 * @return 编译后的表达式集合
+	 */
+	public static JsonPathSet compile(String... expressions) {
+		JsonPath[] paths = new JsonPath[expressions.length];
+		for(int i = 0; i < expressions.length; i++) {
+			paths[i] = JsonPath.compile(expressions[i]);
+		}
+		return new JsonPathSet(paths);
+	}
+
+	/**
+	 * @return 表达式个数
+	 */
+	public int size() {
+		return paths.length;
+	}
+
+	/**
+	 * 在一次流式遍历中从json字符串提取所有目标值
+	 * @param json json字符串
+	 * @return 与表达式顺序对应的提取结果，规则参见{@link JsonPath#extract(String)}
+	 */
+	public String[] extract(String json) {
+		try (JsonParser parser = JSONUtil.getFactory().createParser(json)) {
+			return extract(parser);
+		} catch (IOException e) {
+			throw new UncheckedIOException("无法从json中提取多个值", e);
+		}
+	}
+
+	/**
+	 * 在一次流式遍历中从json UTF-8 数组提取所有目标值
+	 * @param json json UTF-8 数组
+	 * @return 与表达式顺序对应的提取结果
+	 */
+	public String[] extract(byte[] json) {
+		try (JsonParser parser = JSONUtil.getFactory().createParser(json)) {
+			return extract(parser);
+		} catch (IOException e) {
+			throw new UncheckedIOException("无法从json中提取多个值", e);
+		}
+	}
+
+	/**
+	 * 在一次流式遍历中从输入流提取所有目标值，所有目标值都找到后不再继续读取
+	 * @param in json输入流，提取结束后关闭
+	 * @return 与表达式顺序对应的提取结果
+	 */
+	public String[] extract(InputStream in) {
+		try (JsonParser parser = JSONUtil.getFactory().createParser(in)) {
+			return extract(parser);
+		} catch (IOException e) {
+			throw new UncheckedIOException("无法从json中提取多个值", e);
+		}
+	}
+
+	/**
+	 * 在一次流式遍历中从字符流提取所有目标值，所有目标值都找到后不再继续读取
+	 * @param reader json字符流，提取结束后关闭
+	 * @return 与表达式顺序对应的提取结果
+	 */
+	public String[] extract(Reader reader) {
+		try (JsonParser parser = JSONUtil.getFactory().createParser(reader)) {
+			return extract(parser);
+		} catch (IOException e) {
+			throw new UncheckedIOException("无法从json中提取多个值", e);
+		}
+	}
+
+	/**
+	 * 从已经解析好的json树中提取所有目标值，数字的输出规则参见{@link JsonPath#extract(JsonNode)}
+	 * @param root 根节点
+	 * @return 与表达式顺序对应的提取结果
+	 */
+	public String[] extract(JsonNode root) {
+		String[] result = new String[paths.length];
+		for(int i = 0; i < paths.length; i++) {
+			result[i] = paths[i].extract(root);
+		}
+		return result;
+	}
+
+	/**
+	 * 从尚未读取任何token的解析器中提取所有目标值
+	 * @param parser 解析器
+	 * @return 与表达式顺序对应的提取结果
+	 * @throws IOException 读取失败
+	 */
+	public String[] extract(JsonParser parser) throws IOException {
+		String[] result = new String[paths.length];
+		JsonToken token = parser.nextToken();
+		if(token != null) {
+			walk(parser, token, root, result, new int[]{paths.length});
+		}
+		return result;
+	}
+
+	/**
+	 * 处理解析器当前所在的值
+	 * @param remaining 尚未找到的目标个数，为0时停止遍历
+	 * @return 是否应该继续遍历
+	 */
+	private boolean walk(JsonParser parser, JsonToken token, Node node, String[] result, int[] remaining) throws IOException {
+		if(!node.targets.isEmpty()) {
+			if(node.isLeaf()) {
+				String value = JsonPath.render(parser, JSONUtil.getFactory());
+				for(int target : node.targets) {
+					result[target] = value;
+				}
+				remaining[0] -= node.targets.size();
+			}else { // 该值本身和它的子节点都是目标，先输出该值，子节点上的目标在输出的文本中继续提取
+				boolean container = parser.getCurrentToken().isStructStart();
+				String value = JsonPath.render(parser, JSONUtil.getFactory());
+				for(int target : node.collectTargets()) {
+					JsonPath path = paths[target];
+					if(path.depth() == node.depth) {
+						result[target] = value;
+					}else {
+						result[target] = container ? path.suffix(node.depth).extract(value) : null;
+					}
+					remaining[0]--;
+				}
+			}
+			return remaining[0] > 0;
+		}
+		if(token == JsonToken.START_OBJECT && node.fields != null) {
+			while((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+				Node child = node.fields.get(parser.getCurrentName());
+				token = parser.nextToken();
+				if(child == null) {
+					parser.skipChildren();
+				}else if(!walk(parser, token, child, result, remaining)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if(token == JsonToken.START_ARRAY && node.indexes != null) {
+			int maxIndex = node.maxIndex;
+			for(int n = 0; (token = parser.nextToken()) != JsonToken.END_ARRAY && token != null; n++) {
+				Node child = n <= maxIndex ? node.indexes.get(n) : null;
+				if(child == null) {
+					parser.skipChildren();
+				}else if(!walk(parser, token, child, result, remaining)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		parser.skipChildren(); // 类型与表达式不符，目标不存在
+		return true;
+	}
+
+	/**
+	 * 前缀树节点
+	 */
+	private static final class Node {
+		private Map<String, Node> fields;
+		private Map<Integer, Node> indexes;
+		private final List<Integer> targets = new ArrayList<>(1);
+		private int maxIndex = -1;
+		private int depth;
+
+		Node field(String name) {
+			if(fields == null) {
+				fields = new HashMap<>();
+			}
+			Node child = fields.get(name);
+			if(child == null) {
+				child = new Node();
+				child.depth = depth + 1;
+				fields.put(name, child);
+			}
+			return child;
+		}
+
+		Node index(int idx) {
+			if(indexes == null) {
+				indexes = new HashMap<>();
+			}
+			Node child = indexes.get(idx);
+			if(child == null) {
+				child = new Node();
+				child.depth = depth + 1;
+				indexes.put(idx, child);
+			}
+			maxIndex = Math.max(maxIndex, idx);
+			return child;
+		}
+
+		boolean isLeaf() {
+			return fields == null && indexes == null;
+		}
+
+		/**
+		 * 收集该节点及其所有子节点上的目标
+		 */
+		List<Integer> collectTargets() {
+			List<Integer> all = new ArrayList<>(targets);
+			if(fields != null) {
+				for(Node child : fields.values()) {
+					all.addAll(child.collectTargets());
+				}
+			}
+			if(indexes != null) {
+				for(Node child : indexes.values()) {
+					all.addAll(child.collectTargets());
+				}
+			}
+			return all;
+		}
+	}
+}
@@ -6,53 +6,58 @@ import com.esotericsoftware.kryo.io.Output;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
  * <p>ClassName: ObjectUtils</p>
  * <p>Description: Object操作工具类</p>
+ * <p>Kryo实例不是线程安全的，这里使用一个有界的实例池，每个实例自带可复用、可增长的输入输出缓冲区，
+ * 多个线程可以同时调用而不会互相干扰。通过{@link #register(Class)}注册的类在所有实例上按相同顺序注册，
+ * 编码结果只写类的编号而不是类名，更加紧凑。</p>
  */
 public class ObjectUtils implements Serializable {
 
     private static Logger logger = LoggerFactory.getLogger(ObjectUtils.class);
 
+    /**
+     * @deprecated Kryo不是线程安全的，多个线程共享该实例会产生错误的结果，请使用{@link #ObjectToByte(Object)}和{@link #ByteToObject(byte[])}
+     */
+    @Deprecated
     public final static Kryo kryo = new Kryo();
     static {
         kryo.setRegistrationRequired(false);
         kryo.setMaxDepth(20);
     }
 
+    private static final int MAX_POOLED = Integer.getInteger("objectutils.kryo.pool", Runtime.getRuntime().availableProcessors() * 2);
+    private static final int MAX_RETAINED_BUFFER = 1 << 20; // 归还时超过该大小的输出缓冲区不再保留
+    private static final int INITIAL_BUFFER = 4096;
+    private static final byte[] EMPTY = new byte[0];
+    private static final ConcurrentLinkedQueue<PooledKryo> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+    private static final CopyOnWriteArrayList<Registration> registrations = new CopyOnWriteArrayList<>();
+    private static volatile boolean registrationRequired = false;
+
     /**
      * Description :将对像转换为字节
      * @param  obj Object
      * @return byte[]
      */
     public static byte[] ObjectToByte(Object obj) {
-        ByteArrayOutputStream out = null;
-        Output output = null;
+        PooledKryo pk = borrow();
         try {
-            out = new ByteArrayOutputStream();
-            output = new Output(out, 1024);
-            kryo.writeClassAndObject(output, obj);
-            return output.toBytes();
+            pk.output.clear();
+            pk.kryo.writeClassAndObject(pk.output, obj);
+            return pk.output.toBytes();
         } catch (Exception e) {
             logger.error("ObjectUtils.ObjectToByte(Object obj)  throw IOException...");
             throw (e);
         } finally {
-            if (null != out) {
-                try {
-                    out.close();
-                    out = null;
-                } catch (IOException e) {
-                }
-            }
-            if (null != output) {
-                output.close();
-                output = null;
-            }
+            release(pk);
         }
     }
 
@@ -62,18 +67,113 @@ public class ObjectUtils implements Serializable {
      * @return obj Object
      */
     public static Object ByteToObject(byte[] bytes) {
-        Input input = null;
+        return ByteToObject(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Description :将字节数组中的一段转换为对象
+     * @param  bytes byte[]
+     * @param  offset 起始位置
+     * @param  length 长度
+     * @return obj Object
+     */
+    public static Object ByteToObject(byte[] bytes, int offset, int length) {
+        PooledKryo pk = borrow();
         try {
-            input = new Input(bytes, 0, 1024);
-            return kryo.readClassAndObject(input);
+            pk.input.setBuffer(bytes, offset, length);
+            return pk.kryo.readClassAndObject(pk.input);
         } catch (Exception e) {
             logger.error("ObjectUtils.ByteToObject(byte[] bytes)  throw IOException...");
             throw (e);
         } finally {
-            if (null != input) {
-                input.close();
-                input = null;
+            pk.input.setBuffer(EMPTY);
+            release(pk);
+        }
+    }
+
+    /**
+     * 注册类，之后的序列化只写类的编号。序列化和反序列化两端必须按相同的顺序注册相同的类，应在使用前统一注册
+     * @param type 需要注册的类
+     */
+    public static void register(Class<?> type) {
+        registrations.add(new Registration(type, -1));
+    }
+
+    /**
+     * 使用指定编号注册类
+     * @param type 需要注册的类
+     * @param id 类的编号，不能与Kryo内置类型的编号冲突（通常从10以后开始）
+     */
+    public static void register(Class<?> type, int id) {
+        registrations.add(new Registration(type, id));
+    }
+
+    /**
+     * 设置是否只允许序列化已注册的类
+     * @param required true-未注册的类序列化时抛出异常，false-未注册的类写入完整类名
+     */
+    public static void setRegistrationRequired(boolean required) {
+        registrationRequired = required;
+    }
+
+    private static PooledKryo borrow() {
+        PooledKryo pk = POOL.poll();
+        if (pk == null) {
+            pk = new PooledKryo();
+        } else {
+            pooled.decrementAndGet();
+        }
+        pk.sync();
+        return pk;
+    }
+
+    private static void release(PooledKryo pk) {
+        if (pk.output.getBuffer().length > MAX_RETAINED_BUFFER) { // 偶尔的大对象不应让池中的缓冲区一直占用大块内存
+            pk.output.setBuffer(new byte[INITIAL_BUFFER], -1);
+        }
+        if (pooled.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(pk);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * 池中的Kryo实例及其专用的缓冲区
+     */
+    private static final class PooledKryo {
+        private final Kryo kryo = new Kryo();
+        private final Output output = new Output(INITIAL_BUFFER, -1);
+        private final Input input = new Input();
+        private int applied; // 已经应用的注册个数
+
+        PooledKryo() {
+            kryo.setMaxDepth(20);
+        }
+
+        /**
+         * 应用新增的注册和配置
+         */
+        void sync() {
+            kryo.setRegistrationRequired(registrationRequired);
+            int size = registrations.size();
+            for (; applied < size; applied++) {
+                Registration r = registrations.get(applied);
+                // register(Class)在该实例已经按类名写过这个类时会直接返回原来的隐式注册，类仍按类名编码，
+                // 与池中其他实例分配的编号不一致，因此总是显式指定编号重新注册
+                int id = r.id < 0 ? kryo.getNextRegistrationId() : r.id;
+                kryo.register(r.type, kryo.getDefaultSerializer(r.type), id);
             }
         }
     }
+
+    private static final class Registration {
+        private final Class<?> type;
+        private final int id;
+
+        Registration(Class<?> type, int id) {
+            this.type = type;
+            this.id = id;
+        }
+    }
 }
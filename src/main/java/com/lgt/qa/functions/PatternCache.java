@@ -0,0 +1,32 @@
+package com.lgt.qa.functions;
+
+import java.util.regex.Pattern;
+
+/**
+ * 编译后正则表达式的有界缓存，相同的表达式只编译一次。
+ * Pattern本身是线程安全的，可以被多个线程共享，每次匹配只需要创建新的Matcher。
+ *
+ */
+public final class PatternCache {
+	private static final int MAX_CACHE_SIZE = Integer.getInteger("regex.cache", 512);
+	private static final BoundedCache<String, Pattern> CACHE = new BoundedCache<>(MAX_CACHE_SIZE);
+
+	private PatternCache() {
+	}
+
+	/**
+	 * 获取编译后的正则表达式
+	 * @param regex 正则表达式
+	 * @return 编译后的表达式
+	 */
+	public static Pattern compile(String regex) {
+		return CACHE.get(regex, Pattern::compile);
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public static void clear() {
+		CACHE.clear();
+	}
+}
@@ -0,0 +1,179 @@
+package com.lgt.qa.functions;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.node.BigIntegerNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NumericNode;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * 保留原文写法的数字节点，用于{@link JsonDocument}的json树。
+ * 文本形式（asText、toString、序列化）与原文一致，如10.00、1E+2；
+ * 数值与默认解析的结果相同（整数为int、long或BigInteger，浮点数为double），因此对象绑定的结果不变。
+ *
+ */
+final class RawNumberNode extends NumericNode {
+	private final String text;
+	private final NumericNode value;
+
+	private RawNumberNode(String text, NumericNode value) {
+		this.text = text;
+		this.value = value;
+	}
+
+	/**
+	 * 由解析器当前所在的数字创建节点
+	 * @param parser 停在VALUE_NUMBER_INT或VALUE_NUMBER_FLOAT上的解析器
+	 * @return 数字节点
+	 * @throws IOException 读取失败
+	 */
+	static RawNumberNode of(JsonParser parser) throws IOException {
+		String text = parser.getText();
+		NumericNode value;
+		if(parser.getCurrentToken() == JsonToken.VALUE_NUMBER_FLOAT) {
+			value = DoubleNode.valueOf(parser.getDoubleValue());
+		}else {
+			switch(parser.getNumberType()) {
+				case INT:
+					value = IntNode.valueOf(parser.getIntValue());
+					break;
+				case LONG:
+					value = LongNode.valueOf(parser.getLongValue());
+					break;
+				default:
+					value = BigIntegerNode.valueOf(parser.getBigIntegerValue());
+			}
+		}
+		return new RawNumberNode(text, value);
+	}
+
+	@Override
+	public JsonToken asToken() {
+		return value.asToken();
+	}
+
+	@Override
+	public JsonParser.NumberType numberType() {
+		return value.numberType();
+	}
+
+	@Override
+	public boolean isIntegralNumber() {
+		return value.isIntegralNumber();
+	}
+
+	@Override
+	public boolean isFloatingPointNumber() {
+		return value.isFloatingPointNumber();
+	}
+
+	@Override
+	public boolean isInt() {
+		return value.isInt();
+	}
+
+	@Override
+	public boolean isLong() {
+		return value.isLong();
+	}
+
+	@Override
+	public boolean isBigInteger() {
+		return value.isBigInteger();
+	}
+
+	@Override
+	public boolean isDouble() {
+		return value.isDouble();
+	}
+
+	@Override
+	public Number numberValue() {
+		return value.numberValue();
+	}
+
+	@Override
+	public short shortValue() {
+		return value.shortValue();
+	}
+
+	@Override
+	public int intValue() {
+		return value.intValue();
+	}
+
+	@Override
+	public long longValue() {
+		return value.longValue();
+	}
+
+	@Override
+	public float floatValue() {
+		return value.floatValue();
+	}
+
+	@Override
+	public double doubleValue() {
+		return value.doubleValue();
+	}
+
+	@Override
+	public BigDecimal decimalValue() {
+		return value.decimalValue();
+	}
+
+	@Override
+	public BigInteger bigIntegerValue() {
+		return value.bigIntegerValue();
+	}
+
+	@Override
+	public boolean canConvertToInt() {
+		return value.canConvertToInt();
+	}
+
+	@Override
+	public boolean canConvertToLong() {
+		return value.canConvertToLong();
+	}
+
+	/**
+	 * @return 原文中的写法
+	 */
+	@Override
+	public String asText() {
+		return text;
+	}
+
+	@Override
+	public void serialize(JsonGenerator generator, SerializerProvider provider) throws IOException {
+		generator.writeNumber(text);
+	}
+
+	/**
+	 * 按数值比较，与同类型的普通数字节点的比较结果一致
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if(o == this) {
+			return true;
+		}
+		if(o instanceof RawNumberNode) {
+			return value.equals(((RawNumberNode) o).value);
+		}
+		return value.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return value.hashCode();
+	}
+}
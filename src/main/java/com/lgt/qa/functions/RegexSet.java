@@ -0,0 +1,129 @@
+package com.lgt.qa.functions;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 一组正则表达式，在一次扫描中提取每个表达式的第一个匹配。
+ * 所有表达式合并为一个分支表达式，扫描只在有表达式能够匹配的位置停下，
+ * 再在该位置上用各自的表达式确认，因此每个表达式的结果与单独执行{@link Matcher#find()}完全一致。
+ * 含有反向引用或合并后无法编译（如命名分组重名）时，退化为逐个表达式查找。
+ *
+ */
+public final class RegexSet {
+	private static final int MAX_CACHE_SIZE = Integer.getInteger("regex.cache", 512);
+	private static final BoundedCache<String, RegexSet> CACHE = new BoundedCache<>(MAX_CACHE_SIZE);
+	private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)");
+
+	private final Pattern[] patterns;
+	private final Pattern combined; // 为null时逐个查找
+
+	private RegexSet(String[] regexes) {
+		patterns = new Pattern[regexes.length];
+		StringBuilder sb = new StringBuilder();
+		boolean combinable = true;
+		for(int i = 0; i < regexes.length; i++) {
+			patterns[i] = PatternCache.compile(regexes[i]);
+			if(BACK_REFERENCE.matcher(regexes[i]).find()) { // 合并后分组编号改变，反向引用会失效
+				combinable = false;
+			}
+			if(i > 0) {
+				sb.append('|');
+			}
+			sb.append("(?:").append(regexes[i]).append(')');
+		}
+		Pattern p = null;
+		if(combinable && regexes.length > 1) {
+			try {
+				p = Pattern.compile(sb.toString());
+			} catch (PatternSyntaxException e) {
+				p = null;
+			}
+		}
+		combined = p;
+	}
+
+	/**
+	 * 编译一组正则表达式，相同的表达式组只编译一次
+	 * @param regexes 正则表达式
+	 * @return 编译后的表达式组
+	 */
+	public static RegexSet compile(String... regexes) {
+		String key = String.join("\u0000", regexes);
+		return CACHE.get(key, k -> new RegexSet(regexes.clone()));
+	}
+
+	/**
+	 * @return 表达式个数
+	 */
+	public int size() {
+		return patterns.length;
+	}
+
+	/**
+	 * 提取每个表达式第一个匹配的值
+	 * @param content 需要提取的内容
+	 * @return 与表达式顺序对应的结果，规则同{@link ExtractUtils#regexExtract(String, String)}，未匹配时为空字符串
+	 */
+	public String[] extract(CharSequence content) {
+		String[] result = scan(content);
+		for(int i = 0; i < result.length; i++) {
+			if(result[i] == null) {
+				result[i] = "";
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 判断每个表达式在内容中是否能找到匹配，与{@link #extract(CharSequence)}共用同一次扫描
+	 * @param content 需要查找的内容
+	 * @return 与表达式顺序对应的结果，匹配到空字符串也视为找到
+	 */
+	public boolean[] find(CharSequence content) {
+		String[] result = scan(content);
+		boolean[] found = new boolean[result.length];
+		for(int i = 0; i < result.length; i++) {
+			found[i] = result[i] != null;
+		}
+		return found;
+	}
+
+	/**
+	 * 扫描一次内容，找到每个表达式的第一个匹配
+	 * @return 与表达式顺序对应的结果，未匹配时为null
+	 */
+	private String[] scan(CharSequence content) {
+		String[] result = new String[patterns.length];
+		Matcher[] matchers = new Matcher[patterns.length];
+		for(int i = 0; i < patterns.length; i++) {
+			matchers[i] = patterns[i].matcher(content);
+		}
+		if(combined == null) {
+			for(int i = 0; i < patterns.length; i++) {
+				result[i] = matchers[i].find() ? ExtractUtils.firstGroup(matchers[i]) : null;
+			}
+			return result;
+		}
+		int remaining = patterns.length;
+		int length = content.length();
+		Matcher scanner = combined.matcher(content);
+		int from = 0;
+		while(remaining > 0 && from <= length && scanner.find(from)) {
+			int start = scanner.start();
+			for(int i = 0; i < patterns.length; i++) { // 同一位置可能有多个表达式匹配，逐个确认尚未找到的表达式
+				if(result[i] == null) {
+					Matcher m = matchers[i];
+					m.region(start, length).useTransparentBounds(true).useAnchoringBounds(false);
+					if(m.lookingAt()) {
+						result[i] = ExtractUtils.firstGroup(m);
+						remaining--;
+					}
+				}
+			}
+			from = start + 1;
+		}
+		return result;
+	}
+}
@@ -1,11 +1,39 @@
 package com.lgt.qa.functions;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.ByteBufferInputStream;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeMemoryInput;
+import com.esotericsoftware.kryo.io.UnsafeMemoryOutput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
+import com.esotericsoftware.kryo.util.UnsafeUtil;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * 基于Kryo的对象序列化工具，每个线程使用各自的Kryo实例和输出缓冲区。
+ * 除字节数组外，还可以直接读写调用者提供的堆内或堆外ByteBuffer、输入输出流和FileChannel，没有大小限制。
+ * 设置系统属性serializableutil.unsafe=true且当前JVM支持sun.misc.Unsafe时使用Kryo的unsafe读写，
+ * 数值按本机字节序定长写入，速度更快但编码与默认模式不兼容，读写两端必须使用相同的设置。
+ */
 public class SerializableUtil {
+    private static final boolean UNSAFE = Boolean.getBoolean("serializableutil.unsafe") && UnsafeUtil.unsafe() != null;
+    private static final boolean UNSAFE_MEMORY = UNSAFE && probeUnsafeMemory(); // 新版本JDK默认不允许访问堆外buffer的地址
+    private static final int INITIAL_BUFFER = 4096;
+    private static final int MAX_RETAINED_BUFFER = 1 << 20; // 超过该大小的输出缓冲区用完后不再保留
+    private static final int STREAM_BUFFER = 8192;
+
     private final static ThreadLocal<Kryo> currentKryo = ThreadLocal.withInitial(SerializableUtil::createKryo);
+    private final static ThreadLocal<Output> currentOutput = ThreadLocal.withInitial(() -> newOutput(INITIAL_BUFFER));
 
     /**
      * 数组转对象
@@ -15,26 +43,166 @@ public class SerializableUtil {
      */
     public static <T> T unSerialize(byte[] bytes, Class<T> type) {
         Kryo kryo = currentKryo.get();
-        try (Input input = new Input(bytes)) {
+        try (Input input = UNSAFE ? new UnsafeInput(bytes) : new Input(bytes)) {
             return kryo.readObject(input, type);
         }
     }
 
     /**
-     * 对象转数组
+     * 对象转数组，复用线程内的输出缓冲区，大小不受限制
      *
      * @param obj 要转成数组的对象
      * @return byte[]
      */
     public static byte[] serialize(Object obj) {
         Kryo kryo = currentKryo.get();
-        try (Output output = new Output(512, 102400)) {
+        Output output = currentOutput.get();
+        try {
+            output.clear();
             kryo.writeObject(output, obj);
             return output.toBytes();
+        } finally {
+            if (output.getBuffer().length > MAX_RETAINED_BUFFER) {
+                currentOutput.remove();
+            }
+        }
+    }
+
+    /**
+     * 将对象直接写入ByteBuffer，从buffer当前位置开始写，写完后位置移动到数据末尾
+     *
+     * @param obj    要序列化的对象
+     * @param buffer 堆内或堆外（direct）buffer
+     * @return 写入的字节数
+     * @throws com.esotericsoftware.kryo.KryoException buffer剩余空间不足（unsafe模式下写入堆内buffer时为BufferOverflowException）
+     */
+    public static int serialize(Object obj, ByteBuffer buffer) {
+        Kryo kryo = currentKryo.get();
+        int start = buffer.position();
+        if (UNSAFE && (!buffer.isDirect() || !UNSAFE_MEMORY)) { // 没有可用的unsafe实现时，先写入线程缓冲区再复制
+            byte[] bytes = serialize(obj);
+            buffer.put(bytes);
+            return bytes.length;
+        }
+        ByteBufferOutput output = UNSAFE ? new UnsafeMemoryOutput() : new ByteBufferOutput();
+        output.setBuffer(buffer.slice(), buffer.remaining());
+        kryo.writeObject(output, obj);
+        output.flush();
+        buffer.position(start + output.position());
+        return output.position();
+    }
+
+    /**
+     * 从ByteBuffer读取对象，从buffer当前位置开始读，读完后位置移动到该对象的末尾，可以连续读取多个对象。
+     * 可写的buffer直接在原内存上读取，只读buffer（如内存映射的文件）经过一个小的缓冲区分段读取
+     *
+     * @param buffer 堆内或堆外（direct）buffer
+     * @param type   对象类型
+     * @return object
+     */
+    public static <T> T unSerialize(ByteBuffer buffer, Class<T> type) {
+        Kryo kryo = currentKryo.get();
+        int start = buffer.position();
+        Input input;
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset() + start;
+            input = UNSAFE ? new UnsafeInput(buffer.array(), offset, buffer.remaining()) : new Input(buffer.array(), offset, buffer.remaining());
+            T obj = kryo.readObject(input, type);
+            buffer.position(start + input.position() - offset);
+            return obj;
+        }
+        ByteBuffer slice = buffer.slice();
+        if (buffer.isReadOnly() || (UNSAFE && !UNSAFE_MEMORY)) { // Kryo读取字符串时会临时改写buffer，只读buffer经小缓冲区分段读取
+            input = UNSAFE ? new UnsafeInput(new ByteBufferInputStream(slice), STREAM_BUFFER) : new Input(new ByteBufferInputStream(slice), STREAM_BUFFER);
+            T obj = kryo.readObject(input, type);
+            buffer.position(start + (int) input.total());
+            return obj;
+        }
+        input = UNSAFE ? new UnsafeMemoryInput(slice) : new ByteBufferInput(slice);
+        T obj = kryo.readObject(input, type);
+        buffer.position(start + input.position());
+        return obj;
+    }
+
+    /**
+     * 将对象写入输出流，经过固定大小的缓冲区分段写出，不需要在堆上保存完整的序列化结果。写完后刷新但不关闭流
+     *
+     * @param obj 要序列化的对象
+     * @param out 输出流
+     * @return 写入的字节数
+     */
+    public static long serialize(Object obj, OutputStream out) {
+        Kryo kryo = currentKryo.get();
+        Output output = UNSAFE ? new UnsafeOutput(out, STREAM_BUFFER) : new Output(out, STREAM_BUFFER);
+        kryo.writeObject(output, obj);
+        output.flush();
+        return output.total();
+    }
+
+    /**
+     * 从输入流读取对象。读取时会预读缓冲，流中该对象之后的数据可能已被消耗，不要在同一个流上继续读取其他数据
+     *
+     * @param in   输入流，不会被关闭
+     * @param type 对象类型
+     * @return object
+     */
+    public static <T> T unSerialize(InputStream in, Class<T> type) {
+        Kryo kryo = currentKryo.get();
+        Input input = UNSAFE ? new UnsafeInput(in, STREAM_BUFFER) : new Input(in, STREAM_BUFFER);
+        return kryo.readObject(input, type);
+    }
+
+    /**
+     * 将对象写入文件通道的当前位置，写完后通道位置移动到数据末尾
+     *
+     * @param obj     要序列化的对象
+     * @param channel 文件通道
+     * @return 写入的字节数
+     */
+    public static long serialize(Object obj, FileChannel channel) {
+        return serialize(obj, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * 从文件通道的当前位置读取对象，经过固定大小的缓冲区分段读取，只读取该对象所需的数据，不受文件大小限制。
+     * 读完后通道位置移动到该对象的末尾，可以连续读取多个对象
+     *
+     * @param channel 文件通道，不会被关闭
+     * @param type    对象类型
+     * @return object
+     * @throws IOException 读取文件失败
+     */
+    public static <T> T unSerialize(FileChannel channel, Class<T> type) throws IOException {
+        long start = channel.position();
+        Kryo kryo = currentKryo.get();
+        InputStream in = Channels.newInputStream(channel); // 关闭该流会关闭通道，因此不关闭
+        Input input = UNSAFE ? new UnsafeInput(in, STREAM_BUFFER) : new Input(in, STREAM_BUFFER);
+        T obj = kryo.readObject(input, type);
+        channel.position(start + input.total()); // 预读的部分退回
+        return obj;
+    }
+
+    /**
+     * @return 是否使用unsafe读写
+     */
+    public static boolean isUnsafe() {
+        return UNSAFE;
+    }
+
+    private static boolean probeUnsafeMemory() {
+        try {
+            new UnsafeMemoryOutput().setBuffer(ByteBuffer.allocateDirect(16), 16);
+            return true;
+        } catch (Throwable e) {
+            return false;
         }
     }
 
+    private static Output newOutput(int bufferSize) {
+        return UNSAFE ? new UnsafeOutput(bufferSize, -1) : new Output(bufferSize, -1);
+    }
+
     private static Kryo createKryo() {
         return new Kryo();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package com.lgt.qa.load;
+
+import com.lgt.qa.cmdparsers.StepContext;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 开放模型的压测引擎，按{@link LoadProfile}给定的到达率调度场景迭代。
+ * 迭代的开始时间只由到达率决定，与被测系统的响应快慢无关；被测系统变慢时迭代会在工作线程前排队，
+ * 延迟从计划开始时间算起，因此排队时间会如实计入结果，避免协调遗漏（coordinated omission）。
+ * 每次迭代从空闲的虚拟用户中取一个执行，没有空闲用户时创建新的虚拟用户。
+ * <pre>
+ * LoadReport report = new LoadEngine(profile, user -&gt; {
+ *     EasyRequest req = new EasyRequest(...);
+ *     user.getStepContext().setEasyRequest(req);
+ *     req.executeRequest();
+ * }).threads(200).run();
+ * </pre>
+ *
+ */
+public class LoadEngine {
+	private static final Logger logger = LoggerFactory.getLogger(LoadEngine.class);
+	private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final LoadProfile profile;
+	private final Scenario scenario;
+	private int threads = Runtime.getRuntime().availableProcessors() * 8;
+	private long maxOutstanding = 100000;
+	private long drainTimeoutSeconds = 60;
+
+	private final AtomicBoolean started = new AtomicBoolean();
+	private final ConcurrentLinkedQueue<VirtualUser> idleUsers = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger userIds = new AtomicInteger();
+	private final AtomicLong outstanding = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final Recorder latencyRecorder = new Recorder(3);
+	private final Recorder serviceRecorder = new Recorder(3);
+
+	public LoadEngine(LoadProfile profile, Scenario scenario) {
+		this.profile = profile;
+		this.scenario = scenario;
+	}
+
+	/**
+	 * @param threads 执行场景的工作线程数，决定同时在执行的最大迭代数
+	 * @return 当前对象
+	 */
+	public LoadEngine threads(int threads) {
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * @param maxOutstanding 允许排队和执行中的最大迭代数，超过后新到达的迭代被丢弃并计数
+	 * @return 当前对象
+	 */
+	public LoadEngine maxOutstanding(long maxOutstanding) {
+		this.maxOutstanding = maxOutstanding;
+		return this;
+	}
+
+	/**
+	 * @param drainTimeoutSeconds 到达率曲线结束后等待剩余迭代完成的最长时间
+	 * @return 当前对象
+	 */
+	public LoadEngine drainTimeout(long drainTimeoutSeconds) {
+		this.drainTimeoutSeconds = drainTimeoutSeconds;
+		return this;
+	}
+
+	/**
+	 * 按到达率曲线执行压测，阻塞直到所有阶段结束且剩余迭代执行完毕，每个引擎实例只能运行一次
+	 * @return 压测结果
+	 * @throws InterruptedException 等待过程中线程被中断
+	 */
+	public LoadReport run() throws InterruptedException {
+		if(!started.compareAndSet(false, true)) {
+			throw new IllegalStateException("LoadEngine can only be run once");
+		}
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), r -> {
+					Thread t = new Thread(r, "load-worker");
+					t.setDaemon(true);
+					return t;
+				});
+		long total = profile.totalDurationNanos();
+		long start = System.nanoTime();
+		long scheduled = 0;
+		long dropped = 0;
+		double acc = 0; // 累计的到达数
+		try {
+			for(long t0 = 0; t0 < total; t0 += TICK_NANOS) {
+				long tick = Math.min(TICK_NANOS, total - t0);
+				double expected = profile.rateAt(t0 + tick / 2) * tick / 1e9;
+				if(expected <= 0) {
+					continue;
+				}
+				double before = acc;
+				acc += expected;
+				for(long n = (long) Math.floor(before) + 1; n <= (long) Math.floor(acc); n++) {
+					// 在本刻度内按累计到达数线性插值出第n次到达的计划时间
+					long intended = start + t0 + (long) ((n - before) / expected * tick);
+					long wait = intended - System.nanoTime();
+					if(wait > 0) {
+						LockSupport.parkNanos(wait);
+					}
+					scheduled++;
+					if(outstanding.get() >= maxOutstanding) {
+						dropped++;
+						continue;
+					}
+					outstanding.incrementAndGet();
+					executor.execute(new Iteration(intended));
+				}
+				if(Thread.currentThread().isInterrupted()) {
+					throw new InterruptedException();
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		if(!executor.awaitTermination(drainTimeoutSeconds, TimeUnit.SECONDS)) {
+			logger.warn("压测结束后仍有"+outstanding.get()+"次迭代未完成，强制停止");
+			executor.shutdownNow();
+		}
+		long duration = System.nanoTime() - start;
+		Histogram latency = latencyRecorder.getIntervalHistogram();
+		Histogram service = serviceRecorder.getIntervalHistogram();
+		return new LoadReport(scheduled, completed.get(), errors.get(), dropped, userIds.get(), duration, latency, service);
+	}
+
+	private VirtualUser acquireUser() {
+		VirtualUser user = idleUsers.poll();
+		return user != null ? user : new VirtualUser(userIds.incrementAndGet());
+	}
+
+	/**
+	 * 一次场景迭代
+	 */
+	private final class Iteration implements Runnable {
+		private final long intendedStart;
+
+		Iteration(long intendedStart) {
+			this.intendedStart = intendedStart;
+		}
+
+		@Override
+		public void run() {
+			VirtualUser user = acquireUser();
+			long actualStart = System.nanoTime();
+			StepContext.Scope scope = user.attach();
+			try {
+				scenario.run(user);
+			} catch (Throwable e) {
+				errors.incrementAndGet();
+				logger.debug("虚拟用户"+user.getId()+"迭代失败", e);
+			} finally {
+				user.detach(scope);
+				long end = System.nanoTime();
+				latencyRecorder.recordValue(end - intendedStart);
+				serviceRecorder.recordValue(end - actualStart);
+				completed.incrementAndGet();
+				outstanding.decrementAndGet();
+				idleUsers.offer(user);
+			}
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.lgt.qa.load;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 开放模型的到达率曲线，由若干阶段组成。
+ * 每个阶段在持续时间内把目标到达率（每秒开始的场景迭代数）从上一阶段结束时的值线性变化到本阶段的目标值，
+ * 因此爬坡、稳态和降压都可以用阶段来描述：
+ * <pre>
+ * new LoadProfile()
+ *     .rampUp(30, TimeUnit.SECONDS, 200)  // 30秒内从0升到200rps
+ *     .steady(5, TimeUnit.MINUTES)        // 保持200rps五分钟
+ *     .rampDown(10, TimeUnit.SECONDS);    // 10秒内降到0
+ * </pre>
+ *
+ */
+public class LoadProfile {
+	private final List<Stage> stages = new ArrayList<>();
+	private double startRate;
+
+	/**
+	 * 设置第一个阶段开始时的到达率，默认为0
+	 * @param rate 每秒到达数
+	 * @return 当前对象
+	 */
+	public LoadProfile startAt(double rate) {
+		this.startRate = rate;
+		return this;
+	}
+
+	/**
+	 * 增加一个阶段，到达率在该阶段内线性变化到目标值
+	 * @param duration 阶段持续时间
+	 * @param unit 时间单位
+	 * @param targetRate 阶段结束时的每秒到达数
+	 * @return 当前对象
+	 */
+	public LoadProfile stage(long duration, TimeUnit unit, double targetRate) {
+		if(duration <= 0 || targetRate < 0) {
+			throw new IllegalArgumentException("duration must be positive and rate must not be negative");
+		}
+		stages.add(new Stage(unit.toNanos(duration), endRate(), targetRate));
+		return this;
+	}
+
+	/**
+	 * 爬坡阶段，等同于{@link #stage(long, TimeUnit, double)}
+	 */
+	public LoadProfile rampUp(long duration, TimeUnit unit, double targetRate) {
+		return stage(duration, unit, targetRate);
+	}
+
+	/**
+	 * 稳态阶段，保持上一阶段结束时的到达率
+	 */
+	public LoadProfile steady(long duration, TimeUnit unit) {
+		return stage(duration, unit, endRate());
+	}
+
+	/**
+	 * 降压阶段，到达率线性降到0
+	 */
+	public LoadProfile rampDown(long duration, TimeUnit unit) {
+		return stage(duration, unit, 0);
+	}
+
+	private double endRate() {
+		return stages.isEmpty() ? startRate : stages.get(stages.size() - 1).toRate;
+	}
+
+	/**
+	 * @return 所有阶段的总时长，单位纳秒
+	 */
+	public long totalDurationNanos() {
+		long total = 0;
+		for(Stage stage : stages) {
+			total += stage.durationNanos;
+		}
+		return total;
+	}
+
+	/**
+	 * 计算压测开始后指定时刻的到达率
+	 * @param elapsedNanos 距离压测开始的纳秒数
+	 * @return 每秒到达数，超出所有阶段后为0
+	 */
+	public double rateAt(long elapsedNanos) {
+		long offset = elapsedNanos;
+		for(Stage stage : stages) {
+			if(offset < stage.durationNanos) {
+				return stage.fromRate + (stage.toRate - stage.fromRate) * offset / stage.durationNanos;
+			}
+			offset -= stage.durationNanos;
+		}
+		return 0;
+	}
+
+	public List<Stage> getStages() {
+		return Collections.unmodifiableList(stages);
+	}
+
+	/**
+	 * 到达率曲线中的一个阶段
+	 */
+	public static final class Stage {
+		private final long durationNanos;
+		private final double fromRate;
+		private final double toRate;
+
+		Stage(long durationNanos, double fromRate, double toRate) {
+			this.durationNanos = durationNanos;
+			this.fromRate = fromRate;
+			this.toRate = toRate;
+		}
+
+		public long getDurationNanos() {
+			return durationNanos;
+		}
+
+		public double getFromRate() {
+			return fromRate;
+		}
+
+		public double getToRate() {
+			return toRate;
+		}
+
+		@Override
+		public String toString() {
+			return "Stage{" + TimeUnit.NANOSECONDS.toMillis(durationNanos) + "ms, " + fromRate + " -> " + toRate + " rps}";
+		}
+	}
+}
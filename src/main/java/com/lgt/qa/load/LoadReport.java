@@ -0,0 +1,115 @@
+package com.lgt.qa.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次压测的结果。
+ * latency从每次迭代的计划开始时间算起，包含了因系统变慢而产生的排队等待，不受协调遗漏影响；
+ * serviceTime从实际开始执行算起，两者的差距反映了施压端的积压程度。
+ *
+ */
+public class LoadReport {
+	private final long scheduled;
+	private final long completed;
+	private final long errors;
+	private final long dropped;
+	private final int virtualUsers;
+	private final long durationNanos;
+	private final Histogram latency;
+	private final Histogram serviceTime;
+
+	LoadReport(long scheduled, long completed, long errors, long dropped, int virtualUsers, long durationNanos,
+			Histogram latency, Histogram serviceTime) {
+		this.scheduled = scheduled;
+		this.completed = completed;
+		this.errors = errors;
+		this.dropped = dropped;
+		this.virtualUsers = virtualUsers;
+		this.durationNanos = durationNanos;
+		this.latency = latency;
+		this.serviceTime = serviceTime;
+	}
+
+	/**
+	 * @return 按到达率曲线计划的迭代数
+	 */
+	public long getScheduled() {
+		return scheduled;
+	}
+
+	/**
+	 * @return 执行完成的迭代数，包括失败的迭代
+	 */
+	public long getCompleted() {
+		return completed;
+	}
+
+	/**
+	 * @return 失败的迭代数
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * @return 因积压超过上限而未执行的迭代数
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return 压测过程中创建的虚拟用户数
+	 */
+	public int getVirtualUsers() {
+		return virtualUsers;
+	}
+
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	/**
+	 * @return 实际完成的每秒迭代数
+	 */
+	public double getThroughput() {
+		return durationNanos == 0 ? 0 : completed * 1e9 / durationNanos;
+	}
+
+	/**
+	 * @return 从计划开始时间算起的延迟分布，单位纳秒
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return 从实际开始时间算起的执行时间分布，单位纳秒
+	 */
+	public Histogram getServiceTime() {
+		return serviceTime;
+	}
+
+	/**
+	 * 获取延迟的百分位值
+	 * @param percentile 百分位，如99.9
+	 * @return 延迟，单位毫秒
+	 */
+	public double latencyPercentileMillis(double percentile) {
+		return latency.getValueAtPercentile(percentile) / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LoadReport{duration=%ds, scheduled=%d, completed=%d, errors=%d, dropped=%d, users=%d, "
+				+ "throughput=%.1f/s, latency(ms) p50=%.2f p90=%.2f p99=%.2f p999=%.2f max=%.2f, "
+				+ "service(ms) p50=%.2f p99=%.2f}",
+				TimeUnit.NANOSECONDS.toSeconds(durationNanos), scheduled, completed, errors, dropped, virtualUsers,
+				getThroughput(),
+				latencyPercentileMillis(50), latencyPercentileMillis(90), latencyPercentileMillis(99),
+				latencyPercentileMillis(99.9), latency.getMaxValue() / 1e6,
+				serviceTime.getValueAtPercentile(50) / 1e6, serviceTime.getValueAtPercentile(99) / 1e6);
+	}
+}
@@ -0,0 +1,16 @@
+package com.lgt.qa.load;
+
+/**
+ * 压测场景，一次调用代表一次场景迭代，通常由若干EasyRequest和CommandParser步骤组成。
+ * 场景执行时虚拟用户的{@link com.lgt.qa.cmdparsers.StepContext}已经绑定到当前线程，
+ * 抛出任何异常都会被记为一次失败的迭代。
+ *
+ */
+public interface Scenario {
+	/**
+	 * 执行一次场景迭代
+	 * @param user 执行本次迭代的虚拟用户
+	 * @throws Exception 迭代失败
+	 */
+	void run(VirtualUser user) throws Exception;
+}
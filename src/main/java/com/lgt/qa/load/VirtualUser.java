@@ -0,0 +1,68 @@
+package com.lgt.qa.load;
+
+import com.lgt.qa.cmdparsers.CommandParser;
+import com.lgt.qa.cmdparsers.StepContext;
+
+/**
+ * 压测中的虚拟用户。
+ * 每个虚拟用户拥有独立的{@link StepContext}状态（自定义变量、cookie容器和当前EasyRequest），
+ * 迭代执行期间该状态绑定到执行线程，迭代结束后解绑，同一虚拟用户的多次迭代之间变量和cookie会保留。
+ *
+ */
+public class VirtualUser {
+	private final int id;
+	private final StepContext stepContext = new StepContext();
+	private final CommandParser parser = new CommandParser(stepContext);
+	private StepContext.Snapshot context = StepContext.newSnapshot();
+	private long iterations;
+
+	VirtualUser(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * 将虚拟用户的上下文绑定到当前线程
+	 */
+	StepContext.Scope attach() {
+		return context.attach();
+	}
+
+	/**
+	 * 迭代结束时保存当前线程上的EasyRequest，供下一次迭代使用，并丢弃工作线程自身的cookie容器。
+	 * 工作线程原来没有cookie容器时scope关闭后即为空，resetCookies只清除ThreadLocal，不会创建新的容器
+	 */
+	void detach(StepContext.Scope scope) {
+		context = context.withEasyRequest(stepContext.getEasyRequest());
+		iterations++;
+		scope.close();
+		StepContext.resetCookies();
+	}
+
+	/**
+	 * @return 虚拟用户编号，从1开始
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return 该虚拟用户的上下文
+	 */
+	public StepContext getStepContext() {
+		return stepContext;
+	}
+
+	/**
+	 * @return 绑定该虚拟用户上下文的命令解释器
+	 */
+	public CommandParser getParser() {
+		return parser;
+	}
+
+	/**
+	 * @return 该虚拟用户已完成的迭代次数
+	 */
+	public long getIterations() {
+		return iterations;
+	}
+}
@@ -0,0 +1,142 @@
+package com.lgt.qa.okhttp;
+
+import com.lgt.qa.functions.JsonDocument;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+
+/**
+ * 按{@link ResponseBodyPolicy}读取后的应答body。
+ * 字符串形式在第一次调用{@link #string()}时才解码（SINK到文件时才从文件加载），之后缓存复用。
+ *
+ */
+public final class CapturedBody {
+	private static final ByteString UTF8_BOM = ByteString.decodeHex("efbbbf");
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final ResponseBodyPolicy.Mode mode;
+	private final long size;
+	private final String digest;
+	private final ByteString bytes;
+	private final File file;
+	private final boolean truncated;
+	private final Charset charset;
+	private volatile String string;
+	private volatile JsonDocument document;
+
+	CapturedBody(ResponseBodyPolicy.Mode mode, long size, String digest, ByteString bytes, File file,
+			boolean truncated, Charset charset) {
+		this.mode = mode;
+		this.size = size;
+		this.digest = digest;
+		this.bytes = bytes;
+		this.file = file;
+		this.truncated = truncated;
+		this.charset = charset;
+	}
+
+	/**
+	 * 获取body的字符串形式
+	 * @return body字符串，PREFIX策略下为前N个字节解码的结果，DISCARD、DIGEST和写入自定义Sink时为null
+	 */
+	public String string() {
+		String s = string;
+		if(s == null) {
+			ByteString content = bytes;
+			if(content == null && file != null) {
+				content = readFile();
+			}
+			if(content == null) {
+				return null;
+			}
+			if(content.rangeEquals(0, UTF8_BOM, 0, UTF8_BOM.size())) {
+				content = content.substring(UTF8_BOM.size());
+			}
+			s = content.string(charset);
+			string = s;
+		}
+		return s;
+	}
+
+	/**
+	 * 获取body对应的json文档，同一个应答只创建一次，文档中的json树在第一次使用时才解析
+	 * @return json文档，body没有保留在内存或文件中时为null
+	 */
+	public JsonDocument document() {
+		JsonDocument doc = document;
+		if(doc == null) {
+			synchronized (this) {
+				doc = document;
+				if(doc == null) {
+					if(bytes != null && string == null && UTF_8.equals(charset)) { // 直接解析UTF-8字节，不需要先解码成字符串
+						doc = JsonDocument.of(bytes.asByteBuffer(), this::string); // 只读视图，不复制body
+					}else {
+						String s = string();
+						if(s == null) {
+							return null;
+						}
+						doc = JsonDocument.of(s);
+					}
+					document = doc;
+				}
+			}
+		}
+		return doc;
+	}
+
+	private ByteString readFile() {
+		try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+			return source.readByteString();
+		} catch (IOException e) {
+			throw new UncheckedIOException("无法读取应答文件"+file, e);
+		}
+	}
+
+	/**
+	 * @return 保留在内存中的body字节，未保留时为null
+	 */
+	public ByteString bytes() {
+		return bytes;
+	}
+
+	public ResponseBodyPolicy.Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * @return 服务端返回的body总字节数
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return 十六进制摘要，仅DIGEST策略下有值
+	 */
+	public String getDigest() {
+		return digest;
+	}
+
+	/**
+	 * @return body写入的文件，仅写入文件时有值
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return PREFIX策略下body是否被截断
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	public Charset getCharset() {
+		return charset;
+	}
+}
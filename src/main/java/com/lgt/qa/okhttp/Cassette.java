@@ -0,0 +1,562 @@
+package com.lgt.qa.okhttp;
+
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 请求/应答录制回放磁带。
+ * 录制模式下，经过{@link #interceptor(CookieJar)}的每一对请求和应答都追加写入磁带文件，
+ * 应答body在被读取时同时写入有界的暂存区（超过64KB转存临时文件），body读完或关闭时才写入这条记录；
+ * 回放模式下，按“方法+URL+请求body哈希”查找录制的应答直接返回，不访问网络，
+ * 从文件、输入流等读取的流式body（参见{@link RequestBodies}）不参与哈希，只按方法和URL匹配，
+ * 同一个请求录制了多次时按录制顺序轮流返回。哈希只取8个字节，命中后还会核对记录中保存的方法和URL，不一致视为未命中。
+ * <p>文件格式（自定义二进制，大端）：
+ * <ul>
+ * <li>数据文件：魔数"EZCS"、版本号，之后是连续的记录，每条记录为长度前缀加
+ * key、方法、URL、状态码、状态描述、协议、头信息和body</li>
+ * <li>索引文件（数据文件名加.idx）：魔数"EZCI"、版本号、对应的数据文件长度、记录数，
+ * 之后是按key排序的(key, 记录偏移)数组</li>
+ * </ul>
+ * 回放时数据文件和索引文件都通过内存映射读取，查找为索引上的二分查找；
+ * 索引文件缺失或与数据文件不一致时扫描数据文件重建。数据文件不能超过2GB。
+ *
+ */
+public final class Cassette implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(Cassette.class);
+	private static final int DATA_MAGIC = 0x455a4353; // EZCS
+	private static final int INDEX_MAGIC = 0x455a4349; // EZCI
+	private static final int VERSION = 1;
+	private static final int DATA_HEADER = 8;
+	private static final int INDEX_HEADER = 24;
+	private static final long SPOOL_MEMORY = 64 * 1024; // 录制时单个body在内存中暂存的上限
+	private static final long SPOOL_CHUNK = 8192;
+
+	/**
+	 * 磁带模式
+	 */
+	public enum Mode {
+		/** 访问网络并录制 */
+		RECORD,
+		/** 从磁带回放，不访问网络 */
+		REPLAY
+	}
+
+	private final Mode mode;
+	private final File file;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	// 录制
+	private BufferedSink sink;
+	private long written;
+	private List<long[]> entries;
+
+	// 回放，关闭后置为null，进行中的回放使用各自读取到的引用
+	private volatile MappedByteBuffer data;
+	private volatile LongBuffer index;
+	private int count;
+	private ConcurrentHashMap<Long, AtomicInteger> cursors;
+
+	private Cassette(Mode mode, File file) {
+		this.mode = mode;
+		this.file = file;
+	}
+
+	/**
+	 * 创建录制模式的磁带，文件已存在时覆盖
+	 * @param file 磁带文件
+	 * @return 磁带
+	 * @throws IOException 文件无法写入
+	 */
+	public static Cassette record(File file) throws IOException {
+		Cassette cassette = new Cassette(Mode.RECORD, file);
+		cassette.sink = Okio.buffer(Okio.sink(file));
+		cassette.sink.writeInt(DATA_MAGIC).writeInt(VERSION);
+		cassette.written = DATA_HEADER;
+		cassette.entries = new ArrayList<>();
+		return cassette;
+	}
+
+	/**
+	 * 打开回放模式的磁带
+	 * @param file 录制好的磁带文件
+	 * @return 磁带
+	 * @throws IOException 文件不存在或格式不正确
+	 */
+	public static Cassette replay(File file) throws IOException {
+		Cassette cassette = new Cassette(Mode.REPLAY, file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			if(raf.length() > Integer.MAX_VALUE) {
+				throw new IOException("cassette larger than 2GB: "+file);
+			}
+			cassette.data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		}
+		if(cassette.data.limit() < DATA_HEADER || cassette.data.getInt(0) != DATA_MAGIC || cassette.data.getInt(4) != VERSION) {
+			throw new IOException("not a cassette file: "+file);
+		}
+		cassette.loadIndex();
+		cassette.cursors = new ConcurrentHashMap<>();
+		return cassette;
+	}
+
+	/**
+	 * 创建拦截器，作为应用拦截器加入client。回放时应答中的Set-Cookie会写入指定的cookie容器，与真实请求的效果一致
+	 * @param cookieJar 请求使用的cookie容器，可以为null
+	 * @return 拦截器
+	 */
+	public Interceptor interceptor(CookieJar cookieJar) {
+		return chain -> mode == Mode.RECORD ? record(chain) : replay(chain, cookieJar);
+	}
+
+	/**
+	 * 计算请求的查找key：方法、URL和请求body的SHA-256的前8个字节。
+	 * 流式body不写入哈希，避免提前消耗只能发送一次的输入流，或把上传的文件整个复制到内存
+	 * @param request 请求
+	 * @return key
+	 * @throws IOException body无法读取
+	 */
+	public static long key(Request request) throws IOException {
+		Buffer buffer = new Buffer();
+		buffer.writeUtf8(request.method()).writeByte(' ').writeUtf8(request.url().toString()).writeByte('\n');
+		RequestBody body = request.body();
+		if(body != null && !RequestBodies.isStreaming(body)) {
+			body.writeTo(buffer);
+		}
+		return buffer.sha256().asByteBuffer().getLong();
+	}
+
+	private Response record(Interceptor.Chain chain) throws IOException {
+		Request request = chain.request();
+		long key = key(request);
+		Response response = chain.proceed(request);
+		Buffer header = new Buffer(); // 记录中body之前的部分
+		header.writeLong(key);
+		writeString(header, request.method());
+		writeString(header, request.url().toString());
+		header.writeInt(response.code());
+		writeString(header, response.message());
+		writeString(header, response.protocol().toString());
+		Headers headers = response.headers();
+		header.writeInt(headers.size());
+		for(int i = 0; i < headers.size(); i++) {
+			writeString(header, headers.name(i));
+			writeString(header, headers.value(i));
+		}
+		ResponseBody body = response.body();
+		if(body == null) {
+			append(key, header, new BodySpool());
+			return response;
+		}
+		RecordingSource source = new RecordingSource(body.source(), key, header, request.method()+" "+request.url());
+		return response.newBuilder()
+				.body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+				.build();
+	}
+
+	/**
+	 * 追加一条完整的记录
+	 */
+	private void append(long key, Buffer header, BodySpool spool) throws IOException {
+		try {
+			synchronized (this) {
+				if(sink == null) {
+					throw new IOException("cassette closed");
+				}
+				long length = header.size() + 4 + spool.size();
+				entries.add(new long[]{key, written});
+				sink.writeInt((int) length);
+				sink.writeAll(header);
+				sink.writeInt((int) spool.size());
+				try (Source body = spool.source()) {
+					sink.writeAll(body);
+				}
+				sink.flush();
+				written += 4 + length;
+			}
+		} finally {
+			spool.delete();
+		}
+	}
+
+	/**
+	 * 录制中的应答body。数据原样交给调用者（由{@link ResponseBodyPolicy}决定如何处理），同时复制一份到暂存区；
+	 * body读完或被关闭时把记录写入磁带，提前关闭时先读完剩余的数据。读取失败的应答不录制
+	 */
+	private final class RecordingSource extends ForwardingSource {
+		private final long key;
+		private final Buffer header;
+		private final String description;
+		private final BodySpool spool = new BodySpool();
+		private boolean done;
+
+		RecordingSource(Source delegate, long key, Buffer header, String description) {
+			super(delegate);
+			this.key = key;
+			this.header = header;
+			this.description = description;
+		}
+
+		@Override
+		public long read(Buffer sink, long byteCount) throws IOException {
+			long n;
+			try {
+				n = super.read(sink, byteCount);
+				if(n != -1) {
+					spool.write(sink, sink.size() - n, n);
+				}
+			} catch (IOException e) {
+				abandon();
+				throw e;
+			}
+			if(n == -1 && !done) {
+				done = true;
+				append(key, header, spool);
+			}
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if(!done) {
+					Buffer rest = new Buffer();
+					try {
+						while(super.read(rest, SPOOL_CHUNK) != -1) {
+							spool.write(rest, 0, rest.size());
+							rest.clear();
+						}
+					} catch (IOException e) {
+						logger.warn("读取应答body失败，不录制："+description, e);
+						abandon();
+					}
+					if(!done) {
+						done = true;
+						append(key, header, spool);
+					}
+				}
+			} finally {
+				super.close();
+			}
+		}
+
+		private void abandon() {
+			done = true;
+			spool.delete();
+		}
+	}
+
+	/**
+	 * 录制中body的暂存区，不超过{@link #SPOOL_MEMORY}时保存在内存中，超过后转存到临时文件，避免大body占用堆内存
+	 */
+	private static final class BodySpool {
+		private Buffer memory = new Buffer();
+		private File file;
+		private BufferedSink out;
+		private long size;
+
+		void write(Buffer source, long offset, long byteCount) throws IOException {
+			if(out == null && memory.size() + byteCount > SPOOL_MEMORY) {
+				file = File.createTempFile("cassette", ".body");
+				out = Okio.buffer(Okio.sink(file));
+				out.writeAll(memory);
+				memory = null;
+			}
+			if(out == null) {
+				source.copyTo(memory, offset, byteCount);
+			}else {
+				source.copyTo(out.buffer(), offset, byteCount);
+				out.emitCompleteSegments();
+			}
+			size += byteCount;
+		}
+
+		long size() {
+			return size;
+		}
+
+		Source source() throws IOException {
+			if(out == null) {
+				return memory;
+			}
+			out.close();
+			return Okio.source(file);
+		}
+
+		void delete() {
+			if(out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// 临时文件随后被删除
+				}
+				if(!file.delete()) {
+					logger.warn("无法删除录制暂存文件："+file);
+				}
+			}
+		}
+	}
+
+	private Response replay(Interceptor.Chain chain, CookieJar cookieJar) throws IOException {
+		MappedByteBuffer data = this.data;
+		LongBuffer index = this.index;
+		if(data == null || index == null) {
+			throw new IOException("cassette closed: "+file);
+		}
+		Request request = chain.request();
+		long key = key(request);
+		byte[] method = request.method().getBytes(StandardCharsets.UTF_8);
+		byte[] url = request.url().toString().getBytes(StandardCharsets.UTF_8);
+		int[] offsets = new int[4];
+		int n = 0;
+		for(int i = lowerBound(index, key); i < count && index.get(2 * i) == key; i++) {
+			int offset = (int) index.get(2 * i + 1);
+			if(matches(data, offset, method, url)) { // 排除哈希碰撞
+				if(n == offsets.length) {
+					offsets = Arrays.copyOf(offsets, n * 2);
+				}
+				offsets[n++] = offset;
+			}
+		}
+		if(n == 0) {
+			misses.incrementAndGet();
+			throw new IOException("no recorded response for "+request.method()+" "+request.url());
+		}
+		hits.incrementAndGet();
+		int pick = n == 1 ? 0 : Math.floorMod(cursors.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement(), n);
+		Response response = readRecord(data, offsets[pick], request);
+		if(cookieJar != null && cookieJar != CookieJar.NO_COOKIES) {
+			List<Cookie> cookies = Cookie.parseAll(request.url(), response.headers());
+			if(!cookies.isEmpty()) {
+				cookieJar.saveFromResponse(request.url(), cookies);
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * 核对记录中保存的方法和URL
+	 */
+	private static boolean matches(ByteBuffer data, int offset, byte[] method, byte[] url) {
+		int pos = offset + 4 + 8; // 跳过记录长度和key
+		return matches(data, pos, method) && matches(data, pos + 4 + method.length, url);
+	}
+
+	private static boolean matches(ByteBuffer data, int pos, byte[] expected) {
+		if(data.getInt(pos) != expected.length) {
+			return false;
+		}
+		for(int i = 0; i < expected.length; i++) {
+			if(data.get(pos + 4 + i) != expected[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Response readRecord(ByteBuffer data, int offset, Request request) {
+		ByteBuffer buf = data.duplicate();
+		buf.position(offset + 4 + 8); // 跳过记录长度和key
+		readString(buf); // 方法
+		readString(buf); // URL
+		int code = buf.getInt();
+		String message = readString(buf);
+		String protocol = readString(buf);
+		int headerCount = buf.getInt();
+		Headers.Builder headers = new Headers.Builder();
+		for(int i = 0; i < headerCount; i++) {
+			headers.add(readString(buf), readString(buf));
+		}
+		byte[] body = new byte[buf.getInt()];
+		buf.get(body);
+		Headers h = headers.build();
+		String contentType = h.get("Content-Type");
+		Protocol p;
+		try {
+			p = Protocol.get(protocol);
+		} catch (IOException e) {
+			p = Protocol.HTTP_1_1;
+		}
+		long now = System.currentTimeMillis();
+		return new Response.Builder()
+				.request(request)
+				.protocol(p)
+				.code(code)
+				.message(message)
+				.headers(h)
+				.body(ResponseBody.create(contentType != null ? MediaType.parse(contentType) : null, body))
+				.sentRequestAtMillis(now)
+				.receivedResponseAtMillis(now)
+				.build();
+	}
+
+	private int lowerBound(LongBuffer index, long key) {
+		int lo = 0;
+		int hi = count;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(index.get(2 * mid) < key) {
+				lo = mid + 1;
+			}else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * 映射索引文件，缺失或过期时扫描数据文件重建
+	 */
+	private void loadIndex() throws IOException {
+		File idx = indexFile(file);
+		if(idx.isFile()) {
+			try (RandomAccessFile raf = new RandomAccessFile(idx, "r")) {
+				MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+				if(mapped.limit() >= INDEX_HEADER && mapped.getInt(0) == INDEX_MAGIC && mapped.getInt(4) == VERSION
+						&& mapped.getLong(8) == data.limit()) {
+					count = mapped.getInt(16);
+					mapped.position(INDEX_HEADER);
+					index = mapped.slice().asLongBuffer();
+					return;
+				}
+			}
+			logger.warn("磁带索引与数据文件不一致，重新建立索引："+idx);
+		}
+		List<long[]> scanned = new ArrayList<>();
+		int pos = DATA_HEADER;
+		while(pos + 12 <= data.limit()) {
+			int len = data.getInt(pos);
+			if(len < 8 || pos + 4 + len > data.limit()) { // 录制中断留下的不完整记录
+				break;
+			}
+			scanned.add(new long[]{data.getLong(pos + 4), pos});
+			pos += 4 + len;
+		}
+		writeIndex(idx, scanned, data.limit());
+		ByteBuffer buf = ByteBuffer.allocate(scanned.size() * 16);
+		LongBuffer longs = buf.asLongBuffer();
+		sort(scanned);
+		for(long[] e : scanned) {
+			longs.put(e[0]).put(e[1]);
+		}
+		longs.flip();
+		index = longs;
+		count = scanned.size();
+	}
+
+	private static void writeIndex(File idx, List<long[]> entries, long dataLength) throws IOException {
+		sort(entries);
+		try (BufferedSink out = Okio.buffer(Okio.sink(idx))) {
+			out.writeInt(INDEX_MAGIC).writeInt(VERSION).writeLong(dataLength).writeInt(entries.size()).writeInt(0);
+			for(long[] e : entries) {
+				out.writeLong(e[0]).writeLong(e[1]);
+			}
+		}
+	}
+
+	private static void sort(List<long[]> entries) {
+		entries.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+	}
+
+	private static File indexFile(File file) {
+		return new File(file.getPath() + ".idx");
+	}
+
+	private static void writeString(Buffer buffer, String s) {
+		ByteString bytes = ByteString.encodeUtf8(s);
+		buffer.writeInt(bytes.size());
+		buffer.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buf) {
+		byte[] bytes = new byte[buf.getInt()];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 结束录制并写入索引；回放模式下释放映射的引用，之后的回放抛出IOException，已经开始的回放不受影响
+	 * @throws IOException 写入失败
+	 */
+	@Override
+	public void close() throws IOException {
+		if(mode == Mode.RECORD) {
+			List<long[]> toIndex;
+			long length;
+			synchronized (this) {
+				if(sink == null) {
+					return;
+				}
+				sink.close();
+				sink = null;
+				toIndex = entries;
+				length = written;
+			}
+			writeIndex(indexFile(file), toIndex, length);
+			logger.info("磁带录制完成，共{}条记录：{}", toIndex.size(), file);
+		}else {
+			data = null;
+			index = null;
+		}
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return 录制模式下已录制的记录数，回放模式下磁带中的记录数
+	 */
+	public synchronized int size() {
+		return mode == Mode.RECORD ? entries.size() : count;
+	}
+
+	/**
+	 * @return 回放命中次数
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return 回放未命中次数
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+}
@@ -0,0 +1,300 @@
+package com.lgt.qa.okhttp;
+
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.HttpUrl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 线程安全的非持久化cookie容器，按RFC 6265匹配域名和路径。
+ * cookie按域名和名字两级索引，按名字查找只需要对请求主机及其各级父域名各做一次哈希查找；
+ * 过期的cookie在读取时跳过并清除，也可以调用{@link #evictExpired()}主动清理。
+ * 每个虚拟用户（或每个线程）应当使用各自的实例，参见{@link com.lgt.qa.cmdparsers.StepContext#getCookieStore()}。
+ *
+ */
+public class CookieStore implements CookieJar {
+	// 域名 -> cookie名 -> 同名但路径不同的cookie
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, Cookie[]>> domains = new ConcurrentHashMap<>();
+
+	@Override
+	public void saveFromResponse(HttpUrl url, List<Cookie> cookies) {
+		long now = System.currentTimeMillis();
+		for(Cookie cookie : cookies) {
+			if(cookie.expiresAt() <= now) { // 服务端通过过期时间删除cookie
+				remove(cookie);
+			}else {
+				add(cookie);
+			}
+		}
+	}
+
+	@Override
+	public List<Cookie> loadForRequest(HttpUrl url) {
+		long now = System.currentTimeMillis();
+		List<Cookie> result = null;
+		String host = url.host();
+		for(String domain = host; domain != null; domain = parentDomain(host, domain)) {
+			ConcurrentHashMap<String, Cookie[]> byName = domains.get(domain);
+			if(byName == null) {
+				continue;
+			}
+			boolean expired = false;
+			for(Cookie[] cookies : byName.values()) {
+				for(Cookie cookie : cookies) {
+					if(cookie.expiresAt() <= now) {
+						expired = true;
+					}else if(cookie.matches(url)) {
+						if(result == null) {
+							result = new ArrayList<>();
+						}
+						result.add(cookie);
+					}
+				}
+			}
+			if(expired) {
+				evictExpired(domain, now);
+			}
+		}
+		if(result == null) {
+			return Collections.emptyList();
+		}
+		if(result.size() > 1) { // 路径更长的cookie排在前面
+			result.sort((a, b) -> b.path().length() - a.path().length());
+		}
+		return result;
+	}
+
+	/**
+	 * 添加cookie，名字、域名和路径都相同的cookie会被替换
+	 * @param cookie 需要添加的cookie
+	 */
+	public void add(Cookie cookie) {
+		domains.compute(cookie.domain(), (domain, byName) -> { // 与pruneDomain互斥，不会写入已经被移除的域名索引
+			if(byName == null) {
+				byName = new ConcurrentHashMap<>();
+			}
+			byName.merge(cookie.name(), new Cookie[]{cookie}, (old, added) -> {
+				for(int i = 0; i < old.length; i++) {
+					if(old[i].path().equals(cookie.path())) {
+						Cookie[] updated = old.clone();
+						updated[i] = cookie;
+						return updated;
+					}
+				}
+				Cookie[] updated = Arrays.copyOf(old, old.length + 1);
+				updated[old.length] = cookie;
+				return updated;
+			});
+			return byName;
+		});
+	}
+
+	/**
+	 * 自定义cookie添加功能，cookie按其自身的域名保存
+	 * @param host 主机地址，仅为兼容原有接口保留
+	 * @param cookie 需要添加的cookie
+	 */
+	public void addCookie(String host, Cookie cookie) {
+		add(cookie);
+	}
+
+	/**
+	 * 删除名字、域名和路径都相同的cookie
+	 * @param cookie 需要删除的cookie
+	 */
+	public void remove(Cookie cookie) {
+		ConcurrentHashMap<String, Cookie[]> byName = domains.get(cookie.domain());
+		if(byName != null) {
+			byName.computeIfPresent(cookie.name(), (name, old) -> {
+				for(int i = 0; i < old.length; i++) {
+					if(old[i].path().equals(cookie.path())) {
+						return without(old, i);
+					}
+				}
+				return old;
+			});
+			pruneDomain(cookie.domain());
+		}
+	}
+
+	/**
+	 * 删除指定的cookie
+	 * @param host 主机地址，仅为兼容原有接口保留
+	 * @param cookie 需要删除的cookie
+	 */
+	public void clearCookie(String host, Cookie cookie) {
+		remove(cookie);
+	}
+
+	/**
+	 * 清除所有cookie
+	 */
+	public void clearCookie() {
+		domains.clear();
+	}
+
+	/**
+	 * 获取发往指定主机的指定名字的cookie，不区分路径，有多个时返回路径最长的一个
+	 * @param host 主机地址
+	 * @param name cookie名字
+	 * @return 未过期的cookie，不存在时返回null
+	 */
+	public Cookie getCookie(String host, String name) {
+		long now = System.currentTimeMillis();
+		Cookie found = null;
+		for(String domain = host; domain != null; domain = parentDomain(host, domain)) {
+			ConcurrentHashMap<String, Cookie[]> byName = domains.get(domain);
+			Cookie[] cookies = byName != null ? byName.get(name) : null;
+			if(cookies == null) {
+				continue;
+			}
+			for(Cookie cookie : cookies) {
+				if(cookie.expiresAt() > now && domainMatches(cookie, host)
+						&& (found == null || cookie.path().length() > found.path().length())) {
+					found = cookie;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * 获取发往指定主机的所有cookie，不区分路径
+	 * @param host 主机地址
+	 * @return 未过期的cookie
+	 */
+	public List<Cookie> getAllCookie(String host) {
+		long now = System.currentTimeMillis();
+		List<Cookie> result = new ArrayList<>();
+		for(String domain = host; domain != null; domain = parentDomain(host, domain)) {
+			ConcurrentHashMap<String, Cookie[]> byName = domains.get(domain);
+			if(byName == null) {
+				continue;
+			}
+			for(Cookie[] cookies : byName.values()) {
+				for(Cookie cookie : cookies) {
+					if(cookie.expiresAt() > now && domainMatches(cookie, host)) {
+						result.add(cookie);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 获取容器中所有未过期的cookie
+	 * @return cookie列表
+	 */
+	public List<Cookie> getAll() {
+		long now = System.currentTimeMillis();
+		List<Cookie> result = new ArrayList<>();
+		for(ConcurrentHashMap<String, Cookie[]> byName : domains.values()) {
+			for(Cookie[] cookies : byName.values()) {
+				for(Cookie cookie : cookies) {
+					if(cookie.expiresAt() > now) {
+						result.add(cookie);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 清除所有已过期的cookie
+	 */
+	public void evictExpired() {
+		long now = System.currentTimeMillis();
+		for(String domain : domains.keySet()) {
+			evictExpired(domain, now);
+		}
+	}
+
+	private void evictExpired(String domain, long now) {
+		ConcurrentHashMap<String, Cookie[]> byName = domains.get(domain);
+		if(byName == null) {
+			return;
+		}
+		for(Map.Entry<String, Cookie[]> entry : byName.entrySet()) {
+			byName.computeIfPresent(entry.getKey(), (name, old) -> {
+				Cookie[] kept = old;
+				for(int i = kept.length - 1; i >= 0; i--) {
+					if(kept[i].expiresAt() <= now) {
+						kept = without(kept, i);
+						if(kept == null) {
+							return null;
+						}
+					}
+				}
+				return kept;
+			});
+		}
+		pruneDomain(domain);
+	}
+
+	/**
+	 * 域名下已经没有cookie时移除该域名的索引，避免访问过大量域名后留下空的索引
+	 */
+	private void pruneDomain(String domain) {
+		domains.computeIfPresent(domain, (d, byName) -> byName.isEmpty() ? null : byName);
+	}
+
+	/**
+	 * @return 保存有cookie的域名个数
+	 */
+	int domainCount() {
+		return domains.size();
+	}
+
+	/**
+	 * @return 容器中的cookie个数，包括尚未清除的过期cookie
+	 */
+	public int size() {
+		int size = 0;
+		for(ConcurrentHashMap<String, Cookie[]> byName : domains.values()) {
+			for(Cookie[] cookies : byName.values()) {
+				size += cookies.length;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * 删除数组中的一个元素，删除后为空时返回null，使对应的名字从索引中移除
+	 */
+	private static Cookie[] without(Cookie[] cookies, int idx) {
+		if(cookies.length == 1) {
+			return null;
+		}
+		Cookie[] updated = new Cookie[cookies.length - 1];
+		System.arraycopy(cookies, 0, updated, 0, idx);
+		System.arraycopy(cookies, idx + 1, updated, idx, updated.length - idx);
+		return updated;
+	}
+
+	/**
+	 * 主机名只能与自身匹配的cookie（hostOnly）只发往完全相同的主机
+	 */
+	private static boolean domainMatches(Cookie cookie, String host) {
+		return cookie.hostOnly() ? host.equals(cookie.domain()) : host.equals(cookie.domain()) || host.endsWith("." + cookie.domain());
+	}
+
+	/**
+	 * 依次返回主机的各级父域名，IP地址没有父域名
+	 * @return 下一个需要查找的域名，没有时返回null
+	 */
+	private static String parentDomain(String host, String domain) {
+		if(host.indexOf(':') != -1 || Character.isDigit(host.charAt(host.length() - 1))) { // IPv6或IPv4地址
+			return null;
+		}
+		int dot = domain.indexOf('.');
+		return dot == -1 ? null : domain.substring(dot + 1);
+	}
+}
@@ -1,70 +1,114 @@
 package com.lgt.qa.okhttp;
 
+import com.lgt.qa.cmdparsers.CommandParser;
+import com.lgt.qa.cmdparsers.StepContext;
+import com.lgt.qa.functions.JsonDocument;
 import okhttp3.*;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSession;
-import javax.net.ssl.X509TrustManager;
 import java.io.IOException;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * 简单请求处理类，封装了okhttp工具包，自带cookie容器，兼容https协议
+ * 简单请求处理类，封装了okhttp工具包，自带cookie容器，兼容https协议。
+ * 所有实例共享{@link HttpClientPool}中的连接池，keep-alive连接可以跨步骤复用；
+ * cookie容器默认取创建时所在线程（虚拟用户）的{@link StepContext#getCookieStore()}，不同线程之间互不干扰
  *
  */
 public class EasyRequest {
 	private static final Logger logger = LoggerFactory.getLogger(EasyRequest.class);
-	private static final TempCookieJar cookieJar = new TempCookieJar();
-	private SSLContext sslContext;
-	private final OkHttpClient client = new OkHttpClient.Builder()
-			.cookieJar(cookieJar)
-			.followRedirects(false)
-			.connectTimeout(60, TimeUnit.SECONDS)
-			.readTimeout(60, TimeUnit.SECONDS)
-			.build();
+	private static volatile ResponseBodyPolicy defaultBodyPolicy = ResponseBodyPolicy.materialize();
+	private static volatile PhaseTimings defaultTimings;
+	private static volatile Cassette defaultCassette;
+	private CookieStore cookieJar = StepContext.getCookieStore();
+	private OkHttpClient client;
+	private PhaseTimings timings = defaultTimings;
+	private Cassette cassette = defaultCassette;
 	private Request request;
 	private Response response;
-	private String responseBody;
+	private CapturedBody responseBody;
+	private ResponseBodyPolicy bodyPolicy = defaultBodyPolicy;
+	private long elapsedNanos = -1;
 
 	private String url;
 	private String queryString;
 	private String method;
 	private RequestBody requestBody;
 	private Map<String, String> headers;
+	private boolean prepared; // request由RequestTemplate渲染且之后未修改过，执行时直接使用
 
-	private static final String PLAIN = "text/plain; charset=utf-8";
-	private static final String JSON = "application/json; charset=utf-8";
-	private static final String XML = "application/xml; charset=utf-8";
-	private static final String SOAP12 = "application/xml+soap; charset=utf-8";
+	// MediaType是不可变的，解析一次后所有请求共享
+	private static final MediaType PLAIN = MediaType.parse("text/plain; charset=utf-8");
+	private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+	private static final MediaType XML = MediaType.parse("application/xml; charset=utf-8");
+	private static final MediaType SOAP12 = MediaType.parse("application/xml+soap; charset=utf-8");
 
 	/**
-	 * 初始化TSL证书
+	 * 初始化http client，client由{@link HttpClientPool}派生，与其他EasyRequest共享连接池和调度器，
+	 * TLS证书信任策略同样由HttpClientPool统一配置
 	 */
 	public void init() {
-		X509TrustManager[] tms = initTlsCert();
-		if(sslContext != null) {
-			client.newBuilder()
-			.sslSocketFactory(sslContext.getSocketFactory(), tms[0])
-			.hostnameVerifier(new HostnameVerifier() {
-				@Override
-				public boolean verify(String hostname, SSLSession session) {
-					return true;
-				}
-			})
-			.build();
+		OkHttpClient.Builder builder = HttpClientPool.getClient().newBuilder()
+				.cookieJar(cookieJar);
+		if(timings != null) {
+			builder.eventListenerFactory(PhaseTimingListener.factory(timings));
+		}
+		if(cassette != null) {
+			builder.addInterceptor(cassette.interceptor(cookieJar));
 		}
+		client = builder.build();
+	}
+	
+	/**
+	 * 设置当前请求使用的录制回放磁带，录制模式下请求和应答写入磁带，回放模式下直接返回磁带中录制的应答
+	 * @param cassette 磁带，为null时正常访问网络
+	 */
+	public void setCassette(Cassette cassette) {
+		this.cassette = cassette;
+		init();
+	}
+	
+	/**
+	 * 设置之后新建的EasyRequest默认使用的录制回放磁带
+	 * @param cassette 磁带，为null时正常访问网络
+	 */
+	public static void setDefaultCassette(Cassette cassette) {
+		defaultCassette = cassette;
+	}
+	
+	/**
+	 * 替换当前请求使用的cookie容器
+	 * @param cookieStore cookie容器
+	 */
+	public void setCookieStore(CookieStore cookieStore) {
+		this.cookieJar = cookieStore;
+		init();
+	}
+	
+	public CookieStore getCookieStore() {
+		return cookieJar;
+	}
+	
+	/**
+	 * 为当前请求开启分阶段耗时统计（DNS、建连、TLS、写请求、首字节、读body），结果写入指定的统计集合
+	 * @param timings 统计集合，为null时关闭统计
+	 */
+	public void setPhaseTimings(PhaseTimings timings) {
+		this.timings = timings;
+		init();
+	}
+	
+	/**
+	 * 设置之后新建的EasyRequest默认使用的分阶段耗时统计集合
+	 * @param timings 统计集合，为null时默认不统计
+	 */
+	public static void setDefaultPhaseTimings(PhaseTimings timings) {
+		defaultTimings = timings;
 	}
 	/**
 	 * 根据给定的url构造EasyRequest对象
@@ -79,12 +123,31 @@ public class EasyRequest {
 
 		//cookieJar.clearCookie();  //清除cookie，避免cookie干扰
 	}
+
+	/**
+	 * 根据请求模板构造EasyRequest对象，url、头信息和body由模板渲染，执行时不再重新组装；
+	 * 之后再调用setUrl、setMethod、setHeaders等方法时按普通方式重新组装，模板渲染的头信息会被保留
+	 * @param template 预编译的请求模板，可以被多个线程共享
+	 * @param parser 用于执行模板中${}引用的命令解释器
+	 */
+	public EasyRequest(RequestTemplate template, CommandParser parser) {
+		init();
+		request = template.render(parser);
+		String fullUrl = request.url().toString();
+		int q = fullUrl.indexOf('?');
+		this.url = q == -1 ? fullUrl : fullUrl.substring(0, q);
+		this.queryString = q == -1 ? null : fullUrl.substring(q + 1);
+		this.method = request.method();
+		this.requestBody = request.body();
+		this.prepared = true;
+	}
 	/**
 	 * 设置需要传递的query string参数
 	 * @param queryStr 指定的query字符串，格式为key1=value1&key2=value2....多个参数之间用&隔开 
 	 */
 	public void setQueryString(String queryStr) {
 //		this.queryString = queryStr;
+		prepared = false;
 		
 		if (StringUtils.isBlank(this.queryString))
 			this.queryString = queryStr;
@@ -119,6 +182,7 @@ public class EasyRequest {
 
 	public void setUrl(String url) {
 		this.url = url;
+		prepared = false;
 	}
 
 	public String getUrl() {
@@ -141,7 +205,7 @@ public class EasyRequest {
 				.path(path)
 				.expiresAt(expire)
 				.build();
-		cookieJar.addCookie(request.url().host(), cookie);
+		cookieJar.add(cookie);
 	}
 
 	/**
@@ -149,11 +213,11 @@ public class EasyRequest {
 	 * @param cookie 
 	 */
 	public void addCookie(Cookie cookie) {
-		cookieJar.addCookie(request.url().host(), cookie);		
+		cookieJar.add(cookie);
 	}
 
 	public void deleteCookie(Cookie cookie) {
-		cookieJar.clearCookie(request.url().host(), cookie);
+		cookieJar.remove(cookie);
 	}
 
 	public Cookie getCookie(String name) {
@@ -167,6 +231,7 @@ public class EasyRequest {
 	public void setMethod(String method) {
 		//Request.Builder builder = request.newBuilder();
 		this.method = method.toUpperCase();
+		prepared = false;
 		//request = builder.method(method, null).build();
 	}
 
@@ -178,6 +243,7 @@ public class EasyRequest {
 	public void setMethod(String method, Map<String,String> formDate) {
 		//Request.Builder builder = request.newBuilder();
 		this.method = method.toUpperCase();
+		prepared = false;
 		FormBody.Builder formBuilder = new FormBody.Builder();
 		for(Map.Entry<String, String> entry : formDate.entrySet()) {
 			formBuilder.add(entry.getKey(), entry.getValue());
@@ -188,29 +254,45 @@ public class EasyRequest {
 
 	public void setMethod(String method, String mimeType ,String bodyData) {
 		this.method = method.toUpperCase();
-		MediaType mt = null;
+		prepared = false;
+		MediaType mt = mediaType(mimeType);
+		if(mt == null) {
+			logger.warn("不支持的mime_type类型");
+		}else {
+			/*request = request.newBuilder()
+				.method(method, RequestBody.create(mt, bodyData))
+				.build();*/
+			requestBody = RequestBody.create(mt, bodyData);
+		}
+	}
+
+	/**
+	 * 设置请求方法和任意body，如{@link RequestBodies}中从文件或流读取的流式body
+	 * @param method 方法名称，对大小写不明感
+	 * @param body 请求body，是{@link RequestBodies#gzip(RequestBody)}压缩的body时自动加上Content-Encoding: gzip
+	 */
+	public void setMethod(String method, RequestBody body) {
+		this.method = method.toUpperCase();
+		prepared = false;
+		requestBody = body;
+	}
+
+	/**
+	 * @param mimeType json、xml、soap12、plain，或完整的媒体类型如"application/x-ndjson; charset=utf-8"
+	 * @return 对应的MediaType，无法识别的类型返回null
+	 */
+	static MediaType mediaType(String mimeType) {
 		switch(mimeType) {
 		case "json":
-			mt = MediaType.parse(JSON);
-			break;
+			return JSON;
 		case "xml":
-			mt = MediaType.parse(XML);
-			break;
+			return XML;
 		case "soap12":
-			mt = MediaType.parse(SOAP12);
-			break;
+			return SOAP12;
 		case "plain":
-			mt = MediaType.parse(PLAIN);
-			break;
+			return PLAIN;
 		default:
-			logger.warn("不支持的mime_type类型");
-			break;
-		}
-		if(mt!=null) {
-			/*request = request.newBuilder()
-				.method(method, RequestBody.create(mt, bodyData))
-				.build();*/
-			requestBody = RequestBody.create(mt, bodyData);
+			return MediaType.parse(mimeType);
 		}
 	}
 
@@ -229,6 +311,7 @@ public class EasyRequest {
 		}
 		request = builder.build();*/
 		this.headers = headers;
+		prepared = false;
 	}
 	
 	/**
@@ -240,6 +323,7 @@ public class EasyRequest {
 		if (this.headers==null)
 			this.headers=new HashMap<String,String>();
 		this.headers.put(headName, headValue);
+		prepared = false;
 	}
 
 	public List<Cookie> getCookies(){
@@ -247,17 +331,25 @@ public class EasyRequest {
 	}
 
 	public void setCookies(List<Cookie> cookies) {
-		String host = request.url().host();
 		if(cookies != null) {
 			int len = cookies.size();
 			for(int i = 0; i < len; i++) {
-				cookieJar.addCookie(host, cookies.get(i));
+				cookieJar.add(cookies.get(i));
 			}
 		}
 	}
 
+	/**
+	 * 携带认证会话，会话的cookie写入cookie容器，请求头加入当前请求的头信息
+	 * @param session 会话，通常从{@link SessionPool}租用
+	 */
+	public void setSession(Session session) {
+		session.apply(this);
+	}
+
 	public void setRequestBody(RequestBody requestBody) {
 		this.requestBody = requestBody;
+		prepared = false;
 	}
 
 	public RequestBody getRequestBody() {
@@ -274,6 +366,67 @@ public class EasyRequest {
 	 * @throws IOException 如果连接已关闭，则会报读写异常，注意，response在OkHttp中是自动关闭的
 	 */
 	public Response executeRequest() throws IOException {
+		request = buildRequest();
+		elapsedNanos = -1;
+		long start = System.nanoTime();
+		return handleResponse(client.newCall(request).execute(), start);
+	}
+	
+	/**
+	 * 异步执行请求，不阻塞调用线程。
+	 * 返回的future在读取完应答body后以当前EasyRequest对象完成，完成时会把调用线程的{@link StepContext}
+	 * 上下文（EasyRequest绑定为当前对象）恢复到回调线程，因此直接挂在future上的同步后续步骤可以正常使用命令解释器。
+	 * 需要把多个步骤串成非阻塞流水线时，使用{@link RequestPipeline}。
+	 * @return 以当前对象完成的future，请求失败时以IOException异常完成
+	 */
+	public CompletableFuture<EasyRequest> executeAsync() {
+		return executeAsync(StepContext.capture());
+	}
+	
+	/**
+	 * 异步执行请求，并在完成时恢复指定的上下文
+	 * @param context 上下文快照
+	 * @return 以当前对象完成的future
+	 */
+	CompletableFuture<EasyRequest> executeAsync(StepContext.Snapshot context) {
+		final StepContext.Snapshot ctx = context.withEasyRequest(this);
+		final CompletableFuture<EasyRequest> future = new CompletableFuture<>();
+		request = buildRequest();
+		elapsedNanos = -1;
+		final long start = System.nanoTime();
+		client.newCall(request).enqueue(new Callback() {
+			@Override
+			public void onFailure(Call call, IOException e) {
+				try (StepContext.Scope scope = ctx.attach()) {
+					future.completeExceptionally(e);
+				}
+			}
+
+			@Override
+			public void onResponse(Call call, Response resp) {
+				try {
+					handleResponse(resp, start);
+				} catch (IOException | RuntimeException e) {
+					try (StepContext.Scope scope = ctx.attach()) {
+						future.completeExceptionally(e);
+					}
+					return;
+				}
+				try (StepContext.Scope scope = ctx.attach()) {
+					future.complete(EasyRequest.this);
+				}
+			}
+		});
+		return future;
+	}
+	
+	/**
+	 * 根据当前设置的url、query、headers、方法和body组装Request
+	 */
+	private Request buildRequest() {
+		if(prepared) {
+			return request;
+		}
 		Request.Builder build = request.newBuilder();
 		// 拼装url
 		if(url.indexOf("?")!=-1) { // 如果已经存在query字符串
@@ -288,22 +441,72 @@ public class EasyRequest {
 			}
 		}
 		// 设置请求方法和body参数
+		if(RequestBodies.isGzip(requestBody)) {
+			build.header("Content-Encoding", "gzip");
+		}
 		build.method(method, requestBody);
-		request = build.build();
-		response = client.newCall(request).execute();
-		responseBody = response.body().string();
-
-		cookieJar.clearCookie();
-
-		return response;
+		return build.build();
 	}
+	
 	/**
-	 * 获取应答身体部分的数据
-	 * @return 应答的body部分字符串表达式
+	 * 保存应答并读取body，记录从发出请求到读完body的耗时
+	 */
+	private Response handleResponse(Response resp, long start) throws IOException {
+		response = resp;
+		responseBody = bodyPolicy.capture(resp.body());
+		elapsedNanos = System.nanoTime() - start;
+		return resp;
+	}
+	/**
+	 * 获取应答身体部分的数据，字符串在第一次调用时才解码
+	 * @return 应答的body部分字符串表达式，body未按完整内容保留时参见{@link CapturedBody#string()}
 	 */
 	public String getRespnseBody() {
-		return this.responseBody;
+		return responseBody != null ? responseBody.string() : null;
 	}
+	
+	/**
+	 * 获取应答body对应的json文档，同一个应答上的多次json提取共享同一次解析结果
+	 * @return json文档，请求未执行或body未保留时为null
+	 */
+	public JsonDocument getResponseDocument() {
+		return responseBody != null ? responseBody.document() : null;
+	}
+	
+	/**
+	 * 获取按body处理策略读取后的应答body，包含大小、摘要等信息
+	 * @return 应答body，请求未执行时为null
+	 */
+	public CapturedBody getCapturedBody() {
+		return responseBody;
+	}
+	
+	/**
+	 * 设置当前请求的应答body处理策略
+	 * @param bodyPolicy body处理策略
+	 */
+	public void setBodyPolicy(ResponseBodyPolicy bodyPolicy) {
+		this.bodyPolicy = bodyPolicy;
+	}
+	
+	public ResponseBodyPolicy getBodyPolicy() {
+		return bodyPolicy;
+	}
+	
+	/**
+	 * 设置之后新建的EasyRequest默认使用的应答body处理策略
+	 * @param bodyPolicy body处理策略
+	 */
+	public static void setDefaultBodyPolicy(ResponseBodyPolicy bodyPolicy) {
+		defaultBodyPolicy = bodyPolicy;
+	}
+	/**
+	 * @return 最近一次执行从发出请求到按策略读完应答body的耗时，毫秒，请求未执行或失败时为-1
+	 */
+	public double getElapsedMillis() {
+		return elapsedNanos < 0 ? -1 : elapsedNanos / 1e6;
+	}
+
 	/**
 	 * 获取response对象
 	 * @return Response对象
@@ -318,43 +521,6 @@ public class EasyRequest {
 	public Request getRequest() {
 		return this.request;
 	}
-	/**
-	 * 创建509认证管理器，信任所有证书
-	 * @return 证书管理器
-	 */
-	private X509TrustManager[] initTlsCert() {
-		final X509TrustManager[] trustAllCerts = 
-				new X509TrustManager[] {
-						new X509TrustManager() {
-
-							@Override
-							public X509Certificate[] getAcceptedIssuers() {
-								X509Certificate[] x509Certificates = new X509Certificate[0];
-								return x509Certificates;
-							}
-
-							@Override
-							public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-
-							}
-
-							@Override
-							public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-							}
-						}};
-		try {
-			sslContext = SSLContext.getInstance("TLS");
-			sslContext.init(null, trustAllCerts, new SecureRandom());
-		} catch (NoSuchAlgorithmException e) {
-			logger.error("证书协议错误", e);
-			e.printStackTrace();
-		} catch (KeyManagementException e) {
-			logger.error("钥匙管理异常", e);
-			e.printStackTrace();
-		}
-		return trustAllCerts;
-	}
-
 	public static void main(String[] args) {
 		EasyRequest easy = new EasyRequest("http://test.tfsicsp.com/api/v1.0/catering_service/application/login");
 		easy.setQueryString("device_info=eyJkZXZpY2VUeXBlIjoiUEMiLCJvc1R5cGUiOiJ3aW5kb3dzIiwiYWdlbnRUeXBlIjoiQnJvd3NlciJ9&code=Mr6YL9o4SvyPpdSHajyWlg&installation_id=JVMgA22ASsQLY57k9NGyHA&state=eyJmcm9tX1VSTCI6Imh0dHA6Ly90ZXN0LnRmc2ljc3AuY29tIiwidGFyZ2V0X3VybCI6Imh0dHA6Ly90ZXN0LnRmc2ljc3AuY29tIn0&client_id=N_sr5zVpSKSvxL38nlKgVQ");
@@ -0,0 +1,188 @@
+package com.lgt.qa.okhttp;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 以字符序列的形式按块读取文件，供正则在写入文件的应答body上查找，不把整个文件解码到堆内。
+ * 打开时顺序解码一遍，记录每块（约4K字符）起始的字节位置和字符位置；
+ * 之后按需从文件重新解码所在的块，只缓存当前块，正则顺序扫描时每块只解码一次。
+ * 与{@link CapturedBody#string()}一致，跳过开头的UTF-8 BOM，无法解码的字节替换为U+FFFD。
+ * 只能用于无状态的字符集，不是线程安全的。
+ *
+ */
+final class FileCharSequence implements CharSequence, Closeable {
+	private static final int BLOCK_CHARS = 4096;
+	private static final byte[] UTF8_BOM = {(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+
+	private final FileChannel channel;
+	private final CharsetDecoder decoder;
+	private final long[] blockBytes; // 每块起始的字节位置，最后一项为文件结尾
+	private final int[] blockChars; // 每块起始的字符位置，最后一项为总长度
+	private final int blocks;
+	private final ByteBuffer in;
+	private final CharBuffer block = CharBuffer.allocate(BLOCK_CHARS);
+	private int current = -1; // 当前缓存的块
+
+	private FileCharSequence(FileChannel channel, Charset charset) throws IOException {
+		this.channel = channel;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.in = ByteBuffer.allocate((int) Math.ceil(BLOCK_CHARS * (double) charset.newEncoder().maxBytesPerChar()) + 16);
+		long[] bytes = new long[16];
+		int[] chars = new int[16];
+		int count = 0;
+		long position = bomLength();
+		long total = 0;
+		long size = channel.size();
+		while(position < size) {
+			if(count + 1 >= bytes.length) {
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+				chars = Arrays.copyOf(chars, chars.length * 2);
+			}
+			bytes[count] = position;
+			chars[count] = (int) total;
+			count++;
+			long next = decodeBlock(position, size);
+			total += block.remaining();
+			if(total > Integer.MAX_VALUE) {
+				throw new IOException("file too large for a char sequence: " + size + " bytes");
+			}
+			position = next;
+		}
+		bytes[count] = size;
+		chars[count] = (int) total;
+		this.blockBytes = bytes;
+		this.blockChars = chars;
+		this.blocks = count;
+	}
+
+	/**
+	 * @param file 文件
+	 * @param charset 字符集，必须是无状态的，如UTF-8、GBK、ISO-8859-1
+	 * @return 文件的字符序列，使用完毕后需要关闭
+	 * @throws IOException 读取失败
+	 */
+	static FileCharSequence open(File file, Charset charset) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			return new FileCharSequence(channel, charset);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param charset 字符集
+	 * @return 该字符集能否从任意字符边界开始解码；UTF-16、UTF-32依赖开头的BOM决定字节序，不能分块解码
+	 */
+	static boolean supports(Charset charset) {
+		String name = charset.name();
+		return !name.equals("UTF-16") && !name.equals("UTF-32") && !name.startsWith("ISO-2022");
+	}
+
+	private long bomLength() throws IOException {
+		ByteBuffer head = ByteBuffer.allocate(UTF8_BOM.length);
+		while(head.hasRemaining() && channel.read(head, head.position()) > 0) {
+		}
+		return head.position() == UTF8_BOM.length && Arrays.equals(head.array(), UTF8_BOM) ? UTF8_BOM.length : 0;
+	}
+
+	/**
+	 * 从指定字节位置解码一块到block，解码总是停在完整字符的边界上
+	 * @return 下一块起始的字节位置
+	 */
+	private long decodeBlock(long position, long end) throws IOException {
+		block.clear();
+		decoder.reset();
+		in.clear();
+		long read = position;
+		while(true) {
+			int n = in.hasRemaining() && read < end ? channel.read(in, read) : 0;
+			if(n > 0) {
+				read += n;
+			}
+			in.flip();
+			boolean eof = read >= end;
+			CoderResult result = decoder.decode(in, block, eof);
+			if(result.isOverflow()) {
+				break;
+			}
+			if(result.isError()) {
+				throw new CharacterCodingException();
+			}
+			if(eof) {
+				decoder.flush(block);
+				break;
+			}
+			in.compact();
+			if(n < 0) {
+				throw new EOFException("unexpected end of file at " + read);
+			}
+		}
+		block.flip();
+		return read - in.remaining();
+	}
+
+	@Override
+	public int length() {
+		return blockChars[blocks];
+	}
+
+	@Override
+	public char charAt(int index) {
+		if(index < 0 || index >= length()) {
+			throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+		}
+		if(current < 0 || index < blockChars[current] || index >= blockChars[current + 1]) {
+			int b = Arrays.binarySearch(blockChars, 0, blocks, index);
+			load(b >= 0 ? b : -b - 2);
+		}
+		return block.get(index - blockChars[current]);
+	}
+
+	private void load(int b) {
+		try {
+			decodeBlock(blockBytes[b], blockBytes[b + 1]);
+		} catch (IOException e) {
+			throw new IllegalStateException("无法读取应答文件", e);
+		}
+		current = b;
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if(start < 0 || end > length() || start > end) {
+			throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length());
+		}
+		StringBuilder sb = new StringBuilder(end - start);
+		for(int i = start; i < end; i++) {
+			sb.append(charAt(i));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return subSequence(0, length()).toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,334 @@
+package com.lgt.qa.okhttp;
+
+import okhttp3.ConnectionPool;
+import okhttp3.CookieJar;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.X509TrustManager;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内共享的OkHttpClient注册表。
+ * 所有EasyRequest使用的client都由同一个基础client派生，共享同一个ConnectionPool和Dispatcher，
+ * 因此不同步骤、不同线程之间可以复用keep-alive连接，避免每个请求都重新做TCP和TLS握手。
+ * 连接池和并发参数可以通过{@link #configure(Config)}或系统属性调整。
+ * 默认使用JDK的证书和主机名校验，测试环境需要信任自签名证书时通过{@link Config#trustAllCerts(boolean)}
+ * 或-Deasyrequest.pool.trustAll=true显式开启。
+ *
+ */
+public final class HttpClientPool {
+	private static final Logger logger = LoggerFactory.getLogger(HttpClientPool.class);
+	private static volatile Config config = Config.fromSystemProperties();
+	private static volatile OkHttpClient sharedClient;
+
+	private HttpClientPool() {
+	}
+
+	/**
+	 * 获取共享的基础client，首次调用时按当前配置创建
+	 * @return 共享的OkHttpClient
+	 */
+	public static OkHttpClient getClient() {
+		OkHttpClient client = sharedClient;
+		if(client == null) {
+			synchronized (HttpClientPool.class) {
+				client = sharedClient;
+				if(client == null) {
+					client = build(config);
+					sharedClient = client;
+				}
+			}
+		}
+		return client;
+	}
+
+	/**
+	 * 派生一个使用指定cookie容器的client，派生出的client与基础client共享连接池和调度器
+	 * @param cookieJar cookie容器
+	 * @return 派生的OkHttpClient
+	 */
+	public static OkHttpClient newClient(CookieJar cookieJar) {
+		return getClient().newBuilder()
+				.cookieJar(cookieJar)
+				.build();
+	}
+
+	/**
+	 * 使用新的配置重建基础client，之后派生的client使用新的连接池，旧连接池中的空闲连接会被关闭
+	 * @param newConfig 新的配置
+	 */
+	public static synchronized void configure(Config newConfig) {
+		OkHttpClient old = sharedClient;
+		config = newConfig.copy();
+		sharedClient = build(config);
+		if(old != null) {
+			old.connectionPool().evictAll();
+		}
+		logger.info("共享连接池已按新配置重建："+config);
+	}
+
+	/**
+	 * @return 当前使用的配置副本
+	 */
+	public static Config getConfig() {
+		return config.copy();
+	}
+
+	/**
+	 * 读取连接池和调度器的实时统计
+	 * @return 统计信息
+	 */
+	public static PoolStats getStats() {
+		OkHttpClient client = getClient();
+		ConnectionPool pool = client.connectionPool();
+		Dispatcher dispatcher = client.dispatcher();
+		return new PoolStats(pool.connectionCount(), pool.idleConnectionCount(),
+				dispatcher.runningCallsCount(), dispatcher.queuedCallsCount(),
+				dispatcher.getMaxRequests(), dispatcher.getMaxRequestsPerHost());
+	}
+
+	private static OkHttpClient build(Config cfg) {
+		Dispatcher dispatcher = new Dispatcher();
+		dispatcher.setMaxRequests(cfg.maxRequests);
+		dispatcher.setMaxRequestsPerHost(cfg.maxRequestsPerHost);
+		OkHttpClient.Builder builder = new OkHttpClient.Builder()
+				.connectionPool(new ConnectionPool(cfg.maxIdleConnections, cfg.keepAliveSeconds, TimeUnit.SECONDS))
+				.dispatcher(dispatcher)
+				.protocols(cfg.http2 ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1) : Collections.singletonList(Protocol.HTTP_1_1))
+				.followRedirects(false)
+				.connectTimeout(cfg.connectTimeoutSeconds, TimeUnit.SECONDS)
+				.readTimeout(cfg.readTimeoutSeconds, TimeUnit.SECONDS)
+				.writeTimeout(cfg.writeTimeoutSeconds, TimeUnit.SECONDS);
+		if(cfg.trustAllCerts) {
+			X509TrustManager trustManager = trustAllManager();
+			SSLContext sslContext = initTlsContext(trustManager);
+			if(sslContext != null) {
+				builder.sslSocketFactory(sslContext.getSocketFactory(), trustManager)
+						.hostnameVerifier((hostname, session) -> true);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * 创建509认证管理器，信任所有证书
+	 * @return 证书管理器
+	 */
+	private static X509TrustManager trustAllManager() {
+		return new X509TrustManager() {
+			@Override
+			public X509Certificate[] getAcceptedIssuers() {
+				return new X509Certificate[0];
+			}
+
+			@Override
+			public void checkServerTrusted(X509Certificate[] chain, String authType) {
+			}
+
+			@Override
+			public void checkClientTrusted(X509Certificate[] chain, String authType) {
+			}
+		};
+	}
+
+	private static SSLContext initTlsContext(X509TrustManager trustManager) {
+		try {
+			SSLContext sslContext = SSLContext.getInstance("TLS");
+			sslContext.init(null, new X509TrustManager[]{trustManager}, new SecureRandom());
+			return sslContext;
+		} catch (NoSuchAlgorithmException e) {
+			logger.error("证书协议错误", e);
+		} catch (KeyManagementException e) {
+			logger.error("钥匙管理异常", e);
+		}
+		return null;
+	}
+
+	/**
+	 * 共享client的配置，默认值可以通过easyrequest.pool.*系统属性覆盖
+	 */
+	public static final class Config {
+		private int maxIdleConnections = Integer.getInteger("easyrequest.pool.maxIdle", 32);
+		private long keepAliveSeconds = Long.getLong("easyrequest.pool.keepAliveSeconds", 300L);
+		private int maxRequests = Integer.getInteger("easyrequest.pool.maxRequests", 256);
+		private int maxRequestsPerHost = Integer.getInteger("easyrequest.pool.maxRequestsPerHost", 64);
+		private boolean http2 = Boolean.parseBoolean(System.getProperty("easyrequest.pool.http2", "true"));
+		private boolean trustAllCerts = Boolean.parseBoolean(System.getProperty("easyrequest.pool.trustAll", "false"));
+		private long connectTimeoutSeconds = Long.getLong("easyrequest.pool.connectTimeout", 60L);
+		private long readTimeoutSeconds = Long.getLong("easyrequest.pool.readTimeout", 60L);
+		private long writeTimeoutSeconds = Long.getLong("easyrequest.pool.writeTimeout", 60L);
+
+		public static Config fromSystemProperties() {
+			return new Config();
+		}
+
+		/**
+		 * @param maxIdleConnections 连接池最多保留的空闲连接数
+		 */
+		public Config maxIdleConnections(int maxIdleConnections) {
+			this.maxIdleConnections = maxIdleConnections;
+			return this;
+		}
+
+		/**
+		 * @param keepAliveSeconds 空闲连接保留时间，单位秒
+		 */
+		public Config keepAliveSeconds(long keepAliveSeconds) {
+			this.keepAliveSeconds = keepAliveSeconds;
+			return this;
+		}
+
+		/**
+		 * @param maxRequests 异步请求的最大并发数
+		 */
+		public Config maxRequests(int maxRequests) {
+			this.maxRequests = maxRequests;
+			return this;
+		}
+
+		/**
+		 * @param maxRequestsPerHost 每个主机的异步请求最大并发数
+		 */
+		public Config maxRequestsPerHost(int maxRequestsPerHost) {
+			this.maxRequestsPerHost = maxRequestsPerHost;
+			return this;
+		}
+
+		/**
+		 * @param http2 是否通过ALPN协商使用HTTP/2
+		 */
+		public Config http2(boolean http2) {
+			this.http2 = http2;
+			return this;
+		}
+
+		/**
+		 * @param trustAllCerts 是否信任所有证书并跳过主机名校验，默认为false，只应在测试环境中开启
+		 */
+		public Config trustAllCerts(boolean trustAllCerts) {
+			this.trustAllCerts = trustAllCerts;
+			return this;
+		}
+
+		public Config connectTimeoutSeconds(long connectTimeoutSeconds) {
+			this.connectTimeoutSeconds = connectTimeoutSeconds;
+			return this;
+		}
+
+		public Config readTimeoutSeconds(long readTimeoutSeconds) {
+			this.readTimeoutSeconds = readTimeoutSeconds;
+			return this;
+		}
+
+		public Config writeTimeoutSeconds(long writeTimeoutSeconds) {
+			this.writeTimeoutSeconds = writeTimeoutSeconds;
+			return this;
+		}
+
+		Config copy() {
+			Config c = new Config();
+			c.maxIdleConnections = maxIdleConnections;
+			c.keepAliveSeconds = keepAliveSeconds;
+			c.maxRequests = maxRequests;
+			c.maxRequestsPerHost = maxRequestsPerHost;
+			c.http2 = http2;
+			c.trustAllCerts = trustAllCerts;
+			c.connectTimeoutSeconds = connectTimeoutSeconds;
+			c.readTimeoutSeconds = readTimeoutSeconds;
+			c.writeTimeoutSeconds = writeTimeoutSeconds;
+			return c;
+		}
+
+		@Override
+		public String toString() {
+			return "Config{maxIdleConnections=" + maxIdleConnections
+					+ ", keepAliveSeconds=" + keepAliveSeconds
+					+ ", maxRequests=" + maxRequests
+					+ ", maxRequestsPerHost=" + maxRequestsPerHost
+					+ ", http2=" + http2
+					+ ", trustAllCerts=" + trustAllCerts
+					+ ", connectTimeoutSeconds=" + connectTimeoutSeconds
+					+ ", readTimeoutSeconds=" + readTimeoutSeconds
+					+ ", writeTimeoutSeconds=" + writeTimeoutSeconds + "}";
+		}
+	}
+
+	/**
+	 * 连接池和调度器的统计快照
+	 */
+	public static final class PoolStats {
+		private final int connectionCount;
+		private final int idleConnectionCount;
+		private final int runningCalls;
+		private final int queuedCalls;
+		private final int maxRequests;
+		private final int maxRequestsPerHost;
+
+		PoolStats(int connectionCount, int idleConnectionCount, int runningCalls, int queuedCalls,
+				int maxRequests, int maxRequestsPerHost) {
+			this.connectionCount = connectionCount;
+			this.idleConnectionCount = idleConnectionCount;
+			this.runningCalls = runningCalls;
+			this.queuedCalls = queuedCalls;
+			this.maxRequests = maxRequests;
+			this.maxRequestsPerHost = maxRequestsPerHost;
+		}
+
+		/**
+		 * @return 连接池中的连接总数
+		 */
+		public int getConnectionCount() {
+			return connectionCount;
+		}
+
+		/**
+		 * @return 连接池中的空闲连接数
+		 */
+		public int getIdleConnectionCount() {
+			return idleConnectionCount;
+		}
+
+		/**
+		 * @return 正在执行的请求数（包括同步和异步请求）
+		 */
+		public int getRunningCalls() {
+			return runningCalls;
+		}
+
+		/**
+		 * @return 因超过并发限制而排队等待的异步请求数
+		 */
+		public int getQueuedCalls() {
+			return queuedCalls;
+		}
+
+		public int getMaxRequests() {
+			return maxRequests;
+		}
+
+		public int getMaxRequestsPerHost() {
+			return maxRequestsPerHost;
+		}
+
+		@Override
+		public String toString() {
+			return "PoolStats{connections=" + connectionCount
+					+ ", idle=" + idleConnectionCount
+					+ ", running=" + runningCalls
+					+ ", queued=" + queuedCalls
+					+ ", maxRequests=" + maxRequests
+					+ ", maxRequestsPerHost=" + maxRequestsPerHost + "}";
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.lgt.qa.okhttp;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+/**
+ * 记录单次调用各阶段耗时的OkHttp事件监听器，每个Call对应一个实例，结果写入{@link PhaseTimings}
+ *
+ */
+public class PhaseTimingListener extends EventListener {
+	private final PhaseTimings timings;
+	private final Request request;
+
+	private long callStart;
+	private long dnsStart;
+	private long connectStart;
+	private long secureConnectStart;
+	private long requestStart;
+	private long requestEnd;
+	private long responseBodyStart;
+
+	PhaseTimingListener(PhaseTimings timings, Request request) {
+		this.timings = timings;
+		this.request = request;
+	}
+
+	/**
+	 * 创建监听器工厂
+	 * @param timings 耗时写入的统计集合
+	 * @return 监听器工厂
+	 */
+	public static EventListener.Factory factory(PhaseTimings timings) {
+		return call -> new PhaseTimingListener(timings, call.request());
+	}
+
+	@Override
+	public void callStart(Call call) {
+		callStart = System.nanoTime();
+	}
+
+	@Override
+	public void dnsStart(Call call, String domainName) {
+		dnsStart = System.nanoTime();
+	}
+
+	@Override
+	public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+		timings.record(request, PhaseTimings.Phase.DNS, System.nanoTime() - dnsStart);
+	}
+
+	@Override
+	public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+		connectStart = System.nanoTime();
+		secureConnectStart = 0;
+	}
+
+	@Override
+	public void secureConnectStart(Call call) {
+		secureConnectStart = System.nanoTime();
+		timings.record(request, PhaseTimings.Phase.CONNECT, secureConnectStart - connectStart);
+	}
+
+	@Override
+	public void secureConnectEnd(Call call, Handshake handshake) {
+		timings.record(request, PhaseTimings.Phase.TLS, System.nanoTime() - secureConnectStart);
+	}
+
+	@Override
+	public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+		if(secureConnectStart == 0) { // 非TLS连接在这里结束建连阶段
+			timings.record(request, PhaseTimings.Phase.CONNECT, System.nanoTime() - connectStart);
+		}
+	}
+
+	@Override
+	public void requestHeadersStart(Call call) {
+		requestStart = System.nanoTime();
+	}
+
+	@Override
+	public void requestHeadersEnd(Call call, Request request) {
+		requestEnd = System.nanoTime();
+	}
+
+	@Override
+	public void requestBodyEnd(Call call, long byteCount) {
+		requestEnd = System.nanoTime();
+	}
+
+	@Override
+	public void responseHeadersStart(Call call) {
+		long now = System.nanoTime();
+		timings.record(request, PhaseTimings.Phase.REQUEST_WRITE, requestEnd - requestStart);
+		timings.record(request, PhaseTimings.Phase.TTFB, now - requestEnd);
+	}
+
+	@Override
+	public void responseBodyStart(Call call) {
+		responseBodyStart = System.nanoTime();
+	}
+
+	@Override
+	public void responseBodyEnd(Call call, long byteCount) {
+		timings.record(request, PhaseTimings.Phase.BODY_READ, System.nanoTime() - responseBodyStart);
+	}
+
+	@Override
+	public void callEnd(Call call) {
+		timings.record(request, PhaseTimings.Phase.TOTAL, System.nanoTime() - callStart);
+	}
+}
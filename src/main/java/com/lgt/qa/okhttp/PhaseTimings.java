@@ -0,0 +1,189 @@
+package com.lgt.qa.okhttp;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 按接口统计请求各阶段耗时的HdrHistogram集合。
+ * 数据由{@link PhaseTimingListener}在每次调用结束时写入，通过{@link #snapshot()}读取各阶段的百分位值，
+ * 用于判断耗时变化来自服务端（TTFB）、网络（DNS、CONNECT、TLS）还是客户端自身（REQUEST_WRITE、BODY_READ）。
+ * 复用连接的请求不会产生DNS、CONNECT和TLS阶段的数据。
+ *
+ */
+public class PhaseTimings {
+	private static final PhaseTimings DEFAULT = new PhaseTimings();
+
+	/**
+	 * 请求的耗时阶段
+	 */
+	public enum Phase {
+		/** 域名解析 */
+		DNS,
+		/** TCP建连，不含TLS握手 */
+		CONNECT,
+		/** TLS握手 */
+		TLS,
+		/** 写出请求头和请求体 */
+		REQUEST_WRITE,
+		/** 请求写完到收到应答头，即服务端处理时间加网络往返 */
+		TTFB,
+		/** 读取应答体 */
+		BODY_READ,
+		/** 整个调用 */
+		TOTAL
+	}
+
+	private final ConcurrentHashMap<String, EnumMap<Phase, Histogram>> endpoints = new ConcurrentHashMap<>();
+	private volatile Function<Request, String> endpointNamer = PhaseTimings::defaultEndpointName;
+
+	/**
+	 * @return 全局默认的统计集合
+	 */
+	public static PhaseTimings getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * 设置接口名称的生成规则，默认为"方法 scheme://host:port/path"。路径中带有id等变量时，
+	 * 应该把它们归并为同一个名字，避免每个请求产生一组独立的直方图
+	 * @param endpointNamer 根据请求生成接口名称的函数
+	 */
+	public void setEndpointNamer(Function<Request, String> endpointNamer) {
+		this.endpointNamer = endpointNamer;
+	}
+
+	private static String defaultEndpointName(Request request) {
+		HttpUrl url = request.url();
+		return request.method() + " " + url.scheme() + "://" + url.host() + ":" + url.port() + url.encodedPath();
+	}
+
+	/**
+	 * 记录一个阶段的耗时
+	 * @param request 请求
+	 * @param phase 阶段
+	 * @param nanos 耗时，单位纳秒
+	 */
+	void record(Request request, Phase phase, long nanos) {
+		if(nanos < 0) {
+			return;
+		}
+		histograms(endpointNamer.apply(request)).get(phase).recordValue(nanos);
+	}
+
+	private EnumMap<Phase, Histogram> histograms(String endpoint) {
+		EnumMap<Phase, Histogram> map = endpoints.get(endpoint);
+		if(map == null) {
+			EnumMap<Phase, Histogram> created = new EnumMap<>(Phase.class);
+			for(Phase phase : Phase.values()) {
+				created.put(phase, new ConcurrentHistogram(3));
+			}
+			map = endpoints.putIfAbsent(endpoint, created);
+			if(map == null) {
+				map = created;
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * 清空所有统计数据
+	 */
+	public void reset() {
+		endpoints.clear();
+	}
+
+	/**
+	 * 读取所有接口各阶段的统计快照
+	 * @return 接口名称到各阶段统计的映射
+	 */
+	public Map<String, Map<Phase, PhaseStats>> snapshot() {
+		Map<String, Map<Phase, PhaseStats>> result = new LinkedHashMap<>();
+		for(Map.Entry<String, EnumMap<Phase, Histogram>> entry : endpoints.entrySet()) {
+			Map<Phase, PhaseStats> phases = new EnumMap<>(Phase.class);
+			for(Map.Entry<Phase, Histogram> phase : entry.getValue().entrySet()) {
+				Histogram copy = phase.getValue().copy();
+				if(copy.getTotalCount() > 0) {
+					phases.put(phase.getKey(), new PhaseStats(copy));
+				}
+			}
+			result.put(entry.getKey(), Collections.unmodifiableMap(phases));
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * 读取指定接口各阶段的统计快照
+	 * @param endpoint 接口名称
+	 * @return 各阶段统计，没有数据时为空
+	 */
+	public Map<Phase, PhaseStats> snapshot(String endpoint) {
+		Map<Phase, PhaseStats> stats = snapshot().get(endpoint);
+		return stats != null ? stats : Collections.<Phase, PhaseStats>emptyMap();
+	}
+
+	/**
+	 * 单个阶段的统计值，耗时单位为毫秒
+	 */
+	public static final class PhaseStats {
+		private final long count;
+		private final double mean;
+		private final double p50;
+		private final double p90;
+		private final double p99;
+		private final double p999;
+		private final double max;
+
+		PhaseStats(Histogram histogram) {
+			this.count = histogram.getTotalCount();
+			this.mean = histogram.getMean() / 1e6;
+			this.p50 = histogram.getValueAtPercentile(50) / 1e6;
+			this.p90 = histogram.getValueAtPercentile(90) / 1e6;
+			this.p99 = histogram.getValueAtPercentile(99) / 1e6;
+			this.p999 = histogram.getValueAtPercentile(99.9) / 1e6;
+			this.max = histogram.getMaxValue() / 1e6;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getMean() {
+			return mean;
+		}
+
+		public double getP50() {
+			return p50;
+		}
+
+		public double getP90() {
+			return p90;
+		}
+
+		public double getP99() {
+			return p99;
+		}
+
+		public double getP999() {
+			return p999;
+		}
+
+		public double getMax() {
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p999=%.3fms max=%.3fms",
+					count, mean, p50, p90, p99, p999, max);
+		}
+	}
+}
@@ -0,0 +1,314 @@
+package com.lgt.qa.okhttp;
+
+import com.lgt.qa.cmdparsers.StepContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 批量执行一组请求，同时进行的请求数不超过指定的并发上限，整批的耗时约等于最慢的几个请求而不是所有请求之和。
+ * 请求通过{@link EasyRequest#executeAsync()}异步发出，不占用调用线程；所有EasyRequest共享{@link HttpClientPool}的连接池，
+ * 服务端支持HTTP/2时同一主机的请求在一条连接上多路复用，否则按HTTP/1.1使用多条keep-alive连接。
+ * 结果按输入顺序返回，每一项单独记录成功或失败以及耗时，单个请求失败不影响其他请求。
+ * <pre>
+ * RequestBatch.Result result = RequestBatch.of(ids, id -&gt; {
+ *         EasyRequest req = new EasyRequest(base + "/orders/" + id);
+ *         req.setMethod("get");
+ *         return req;
+ *     }).concurrency(16).execute();
+ * </pre>
+ *
+ */
+public final class RequestBatch {
+	private final int size;
+	private final Function<Integer, EasyRequest> factory;
+	private int concurrency = 8;
+
+	private RequestBatch(int size, Function<Integer, EasyRequest> factory) {
+		this.size = size;
+		this.factory = factory;
+	}
+
+	/**
+	 * 由已经构造好的请求组成批次
+	 * @param requests 请求
+	 * @return 批次
+	 */
+	public static RequestBatch of(Collection<EasyRequest> requests) {
+		final List<EasyRequest> list = new ArrayList<>(requests);
+		return new RequestBatch(list.size(), list::get);
+	}
+
+	/**
+	 * 由已经构造好的请求组成批次
+	 * @param requests 请求
+	 * @return 批次
+	 */
+	public static RequestBatch of(EasyRequest... requests) {
+		return of(Arrays.asList(requests));
+	}
+
+	/**
+	 * 按模板为每一项数据构造请求，请求在即将发出时才构造，构造时绑定调用线程的{@link StepContext}，
+	 * 因此模板中可以使用CommandParser解析变量。模板不会被并发调用
+	 * @param items 数据，如列表接口返回的id
+	 * @param template 根据一项数据构造请求的函数
+	 * @param <T> 数据类型
+	 * @return 批次
+	 */
+	public static <T> RequestBatch of(List<T> items, Function<? super T, EasyRequest> template) {
+		final List<T> list = new ArrayList<>(items);
+		return new RequestBatch(list.size(), i -> template.apply(list.get(i)));
+	}
+
+	/**
+	 * @param concurrency 同时进行的最大请求数，默认为8
+	 * @return 当前对象
+	 */
+	public RequestBatch concurrency(int concurrency) {
+		if(concurrency < 1) {
+			throw new IllegalArgumentException("concurrency must be positive");
+		}
+		this.concurrency = concurrency;
+		return this;
+	}
+
+	/**
+	 * 执行并等待整批请求完成
+	 * @return 批次结果
+	 */
+	public Result execute() {
+		return executeAsync().join();
+	}
+
+	/**
+	 * 异步执行整批请求
+	 * @return 所有请求都完成（成功或失败）时完成的future，不会异常完成
+	 */
+	public CompletableFuture<Result> executeAsync() {
+		return new Execution(StepContext.capture()).start();
+	}
+
+	/**
+	 * 一次批量执行的状态
+	 */
+	private final class Execution {
+		private final StepContext.Snapshot context;
+		private final Item[] items = new Item[size];
+		private final AtomicInteger remaining = new AtomicInteger(size);
+		private final CompletableFuture<Result> future = new CompletableFuture<>();
+		private final long startNanos = System.nanoTime();
+		private int next; // 下一个要发出的请求，只在launch中读写
+
+		Execution(StepContext.Snapshot context) {
+			this.context = context;
+		}
+
+		CompletableFuture<Result> start() {
+			if(size == 0) {
+				future.complete(new Result(items, 0));
+				return future;
+			}
+			for(int i = 0; i < Math.min(concurrency, size); i++) {
+				launch();
+			}
+			return future;
+		}
+
+		/**
+		 * 发出下一个请求。构造请求和发出请求在同一把锁内完成，模板函数不会被并发调用；
+		 * 构造失败的项直接记为失败并继续构造下一项
+		 */
+		private void launch() {
+			while(true) {
+				int index;
+				EasyRequest request;
+				long begin;
+				CompletableFuture<EasyRequest> call;
+				synchronized (this) {
+					if(next >= size) {
+						return;
+					}
+					index = next++;
+					begin = System.nanoTime();
+					try (StepContext.Scope scope = context.attach()) {
+						request = factory.apply(index);
+						call = request.executeAsync(context);
+					} catch (RuntimeException e) {
+						items[index] = new Item(index, null, e, 0);
+						if(finished()) {
+							return;
+						}
+						continue;
+					}
+				}
+				final EasyRequest req = request;
+				call.whenComplete((r, e) -> {
+					Throwable error = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+					items[index] = new Item(index, req, error, System.nanoTime() - begin);
+					if(!finished()) {
+						launch();
+					}
+				});
+				return;
+			}
+		}
+
+		/**
+		 * 一个请求结束，全部结束时完成future
+		 * @return 是否全部结束
+		 */
+		private boolean finished() {
+			if(remaining.decrementAndGet() == 0) {
+				future.complete(new Result(items, System.nanoTime() - startNanos));
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * 批次中单个请求的结果
+	 */
+	public static final class Item {
+		private final int index;
+		private final EasyRequest request;
+		private final Throwable error;
+		private final long elapsedNanos;
+
+		Item(int index, EasyRequest request, Throwable error, long elapsedNanos) {
+			this.index = index;
+			this.request = request;
+			this.error = error;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * @return 在批次中的位置
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return 执行完毕的请求，可以继续读取应答、提取数据；模板构造请求失败时为null
+		 */
+		public EasyRequest getRequest() {
+			return request;
+		}
+
+		/**
+		 * @return 是否拿到了应答，不判断状态码
+		 */
+		public boolean isSuccess() {
+			return error == null;
+		}
+
+		/**
+		 * @return 失败原因，成功时为null
+		 */
+		public Throwable getError() {
+			return error;
+		}
+
+		/**
+		 * @return 应答状态码，没有拿到应答时为-1
+		 */
+		public int getCode() {
+			return error == null && request != null && request.getResponse() != null ? request.getResponse().code() : -1;
+		}
+
+		/**
+		 * @return 从发出请求到读完应答body的耗时，毫秒
+		 */
+		public double getElapsedMillis() {
+			return elapsedNanos / 1e6;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return "#" + index + " " + (error == null ? String.valueOf(getCode()) : error.toString())
+					+ String.format(" %.3fms", getElapsedMillis());
+		}
+	}
+
+	/**
+	 * 整批请求的结果
+	 */
+	public static final class Result {
+		private final List<Item> items;
+		private final long elapsedNanos;
+
+		Result(Item[] items, long elapsedNanos) {
+			this.items = Collections.unmodifiableList(Arrays.asList(items));
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * @return 按输入顺序排列的结果
+		 */
+		public List<Item> getItems() {
+			return items;
+		}
+
+		/**
+		 * @param index 在批次中的位置
+		 * @return 该请求的结果
+		 */
+		public Item get(int index) {
+			return items.get(index);
+		}
+
+		public int size() {
+			return items.size();
+		}
+
+		/**
+		 * @return 失败的请求
+		 */
+		public List<Item> getFailures() {
+			List<Item> failures = new ArrayList<>();
+			for(Item item : items) {
+				if(!item.isSuccess()) {
+					failures.add(item);
+				}
+			}
+			return failures;
+		}
+
+		/**
+		 * @return 是否所有请求都拿到了应答
+		 */
+		public boolean isAllSuccess() {
+			for(Item item : items) {
+				if(!item.isSuccess()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @return 整批的耗时，毫秒
+		 */
+		public double getElapsedMillis() {
+			return elapsedNanos / 1e6;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d requests, %d failed, %.3fms", items.size(), getFailures().size(), getElapsedMillis());
+		}
+	}
+}
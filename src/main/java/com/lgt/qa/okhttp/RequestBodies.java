@@ -0,0 +1,307 @@
+package com.lgt.qa.okhttp;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Source;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 流式请求body的工厂方法。body在发送时才通过okio从文件、FileChannel或输入流分段读取并写入连接，
+ * 不会在堆内保留完整副本，上传大文件时每个请求占用的内存与文件大小无关。
+ * <ul>
+ * 	<li>file - 文件，每次发送重新打开，可以重试</li>
+ * 	<li>channel - FileChannel中的一段，按绝对位置读取，不改变channel的position，可以重试</li>
+ * 	<li>stream - 输入流，传入Supplier时每次发送获取新的流，可以重试；直接传入InputStream时只能发送一次</li>
+ * 	<li>multipart - multipart/form-data，各部分可以是上述任意流式body</li>
+ * 	<li>gzip - 对任意body边发送边压缩，EasyRequest发送时自动加上Content-Encoding: gzip</li>
+ * </ul>
+ * mimeType可以是json、xml、soap12、plain，也可以是完整的媒体类型，为null时使用application/octet-stream。
+ * <pre>
+ * EasyRequest req = new EasyRequest(base + "/upload");
+ * req.setMethod("post", RequestBodies.gzip(RequestBodies.file(new File("big.jsonl"), "application/x-ndjson")));
+ * </pre>
+ *
+ */
+public final class RequestBodies {
+	private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+	private RequestBodies() {
+	}
+
+	/**
+	 * @param file 要上传的文件
+	 * @param mimeType 媒体类型
+	 * @return 从文件流式读取的body，长度为文件大小
+	 */
+	public static RequestBody file(final File file, String mimeType) {
+		final MediaType contentType = contentType(mimeType);
+		return new StreamingBody() {
+			@Override
+			public MediaType contentType() {
+				return contentType;
+			}
+
+			@Override
+			public long contentLength() {
+				return file.length();
+			}
+
+			@Override
+			public void writeTo(BufferedSink sink) throws IOException {
+				try (Source source = Okio.source(file)) {
+					sink.writeAll(source);
+				}
+			}
+		};
+	}
+
+	/**
+	 * @param channel 文件channel，发送期间不能关闭，由调用者负责关闭
+	 * @param position 起始位置
+	 * @param count 字节数
+	 * @param mimeType 媒体类型
+	 * @return 从channel的指定区间流式读取的body
+	 */
+	public static RequestBody channel(final FileChannel channel, final long position, final long count, String mimeType) {
+		if(position < 0 || count < 0) {
+			throw new IllegalArgumentException("position < 0 or count < 0");
+		}
+		final MediaType contentType = contentType(mimeType);
+		return new StreamingBody() {
+			@Override
+			public MediaType contentType() {
+				return contentType;
+			}
+
+			@Override
+			public long contentLength() {
+				return count;
+			}
+
+			@Override
+			public void writeTo(BufferedSink sink) throws IOException {
+				long pos = position;
+				long end = position + count;
+				while(pos < end) {
+					long written = channel.transferTo(pos, end - pos, sink);
+					if(written <= 0) {
+						throw new IOException("unexpected end of channel at " + pos + ", expected " + end);
+					}
+					pos += written;
+				}
+			}
+		};
+	}
+
+	/**
+	 * @param channel 文件channel，发送期间不能关闭，由调用者负责关闭
+	 * @param mimeType 媒体类型
+	 * @return 从channel的起始位置读取到创建body时的文件结尾
+	 * @throws IOException 无法获取channel的大小
+	 */
+	public static RequestBody channel(FileChannel channel, String mimeType) throws IOException {
+		return channel(channel, 0, channel.size(), mimeType);
+	}
+
+	/**
+	 * @param streams 输入流的提供者，每次发送调用一次，流在发送完毕后关闭
+	 * @param contentLength 流的长度，未知时为-1，此时以chunked方式发送
+	 * @param mimeType 媒体类型
+	 * @return 从输入流读取的body，可以重试
+	 */
+	public static RequestBody stream(final Supplier<? extends InputStream> streams, final long contentLength, String mimeType) {
+		final MediaType contentType = contentType(mimeType);
+		return new StreamingBody() {
+			@Override
+			public MediaType contentType() {
+				return contentType;
+			}
+
+			@Override
+			public long contentLength() {
+				return contentLength;
+			}
+
+			@Override
+			public void writeTo(BufferedSink sink) throws IOException {
+				try (Source source = Okio.source(streams.get())) {
+					sink.writeAll(source);
+				}
+			}
+		};
+	}
+
+	/**
+	 * @param in 输入流，发送完毕后关闭
+	 * @param contentLength 流的长度，未知时为-1
+	 * @param mimeType 媒体类型
+	 * @return 从输入流读取的body，只能发送一次，重试时抛出IllegalStateException
+	 */
+	public static RequestBody stream(final InputStream in, long contentLength, String mimeType) {
+		final AtomicBoolean used = new AtomicBoolean();
+		return stream(() -> {
+			if(used.getAndSet(true)) {
+				throw new IllegalStateException("input stream body can only be sent once");
+			}
+			return in;
+		}, contentLength, mimeType);
+	}
+
+	/**
+	 * 发送时对body做gzip压缩，长度未知，以chunked方式发送。
+	 * 通过{@link EasyRequest#setMethod(String, RequestBody)}或{@link EasyRequest#setRequestBody(RequestBody)}使用时自动加上Content-Encoding: gzip，
+	 * 直接用于okhttp的Request时需要自行添加该头
+	 * @param body 原始body
+	 * @return 压缩后的body，媒体类型与原始body相同
+	 */
+	public static RequestBody gzip(RequestBody body) {
+		return new GzipBody(body);
+	}
+
+	/**
+	 * @return multipart/form-data构建器
+	 */
+	public static Multipart multipart() {
+		return new Multipart();
+	}
+
+	/**
+	 * @param mimeType json、xml、soap12、plain或完整的媒体类型
+	 * @return 对应的媒体类型，为null时返回application/octet-stream
+	 * @throws IllegalArgumentException 无法识别的媒体类型
+	 */
+	static MediaType contentType(String mimeType) {
+		if(mimeType == null) {
+			return OCTET_STREAM;
+		}
+		MediaType mt = EasyRequest.mediaType(mimeType);
+		if(mt == null) {
+			throw new IllegalArgumentException("unsupported mime type: " + mimeType);
+		}
+		return mt;
+	}
+
+	/**
+	 * @param body 请求body
+	 * @return 是否是{@link #gzip(RequestBody)}压缩的body
+	 */
+	static boolean isGzip(RequestBody body) {
+		return body instanceof GzipBody;
+	}
+
+	/**
+	 * @param body 请求body
+	 * @return body是否需要在发送时从文件、channel或输入流读取（包括压缩后长度未知的body和含有这类部分的multipart），
+	 * 	这类body不能为了计算摘要而提前读取：输入流只能读一次，文件会被整个复制到内存
+	 * @throws IOException 无法获取body的长度
+	 */
+	static boolean isStreaming(RequestBody body) throws IOException {
+		if(body instanceof StreamingBody || body.contentLength() == -1) {
+			return true;
+		}
+		if(body instanceof MultipartBody) {
+			for(MultipartBody.Part part : ((MultipartBody) body).parts()) {
+				if(isStreaming(part.body())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 发送时才从数据源读取的body
+	 */
+	private abstract static class StreamingBody extends RequestBody {
+	}
+
+	/**
+	 * 边发送边压缩的body
+	 */
+	private static final class GzipBody extends StreamingBody {
+		private final RequestBody body;
+
+		GzipBody(RequestBody body) {
+			this.body = body;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return body.contentType();
+		}
+
+		@Override
+		public long contentLength() {
+			return -1;
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink) throws IOException {
+			BufferedSink gzipSink = Okio.buffer(new GzipSink(new ForwardingSink(sink) {
+				@Override
+				public void close() {
+					// 只结束压缩，不关闭外层的sink：作为multipart的一部分时之后还要继续写入
+				}
+			}));
+			body.writeTo(gzipSink);
+			gzipSink.close(); // 写入gzip尾部
+		}
+	}
+
+	/**
+	 * multipart/form-data构建器，文件部分流式读取
+	 */
+	public static final class Multipart {
+		private final MultipartBody.Builder builder = new MultipartBody.Builder().setType(MultipartBody.FORM);
+
+		private Multipart() {
+		}
+
+		/**
+		 * @param name 字段名
+		 * @param value 字段值
+		 * @return 当前对象
+		 */
+		public Multipart field(String name, String value) {
+			builder.addFormDataPart(name, value);
+			return this;
+		}
+
+		/**
+		 * @param name 字段名
+		 * @param file 文件，文件名作为上传的文件名
+		 * @param mimeType 媒体类型
+		 * @return 当前对象
+		 */
+		public Multipart file(String name, File file, String mimeType) {
+			builder.addFormDataPart(name, file.getName(), RequestBodies.file(file, mimeType));
+			return this;
+		}
+
+		/**
+		 * @param name 字段名
+		 * @param filename 上传的文件名
+		 * @param body 任意body，如{@link RequestBodies#stream(Supplier, long, String)}
+		 * @return 当前对象
+		 */
+		public Multipart part(String name, String filename, RequestBody body) {
+			builder.addFormDataPart(name, filename, body);
+			return this;
+		}
+
+		public MultipartBody build() {
+			return builder.build();
+		}
+	}
+}
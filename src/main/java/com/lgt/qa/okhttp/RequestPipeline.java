@@ -0,0 +1,97 @@
+package com.lgt.qa.okhttp;
+
+import com.lgt.qa.cmdparsers.StepContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 非阻塞的请求流水线，把多个EasyRequest步骤串联为一个异步场景。
+ * 流水线在创建时捕获调用线程的{@link StepContext}，之后每个步骤执行前都会把该上下文绑定到执行线程，
+ * 并把上一步的EasyRequest设置为当前请求，因此步骤中可以照常使用CommandParser解析${response...}等命令。
+ * <pre>
+ * RequestPipeline.start(login)
+ *     .then(req -&gt; StepContext.setVar("token", ...))
+ *     .thenRequest(prev -&gt; buildOrderRequest())
+ *     .toFuture();
+ * </pre>
+ *
+ */
+public final class RequestPipeline {
+	private final StepContext.Snapshot context;
+	private final CompletableFuture<EasyRequest> future;
+
+	private RequestPipeline(StepContext.Snapshot context, CompletableFuture<EasyRequest> future) {
+		this.context = context;
+		this.future = future;
+	}
+
+	/**
+	 * 异步执行第一个请求，开始一条流水线
+	 * @param easyRequest 第一个请求
+	 * @return 流水线
+	 */
+	public static RequestPipeline start(EasyRequest easyRequest) {
+		StepContext.Snapshot context = StepContext.capture();
+		return new RequestPipeline(context, easyRequest.executeAsync(context));
+	}
+
+	/**
+	 * 在上一个请求完成后执行一个同步步骤，如提取变量、校验结果，步骤不应有阻塞操作
+	 * @param step 步骤，参数为上一个完成的请求
+	 * @return 新的流水线
+	 */
+	public RequestPipeline then(Consumer<EasyRequest> step) {
+		return new RequestPipeline(context, future.thenApply(req -> {
+			try (StepContext.Scope scope = context.withEasyRequest(req).attach()) {
+				step.accept(req);
+			}
+			return req;
+		}));
+	}
+
+	/**
+	 * 在上一个请求完成后构造并异步执行下一个请求
+	 * @param next 根据上一个请求构造下一个请求的函数
+	 * @return 新的流水线，以下一个请求完成
+	 */
+	public RequestPipeline thenRequest(Function<EasyRequest, EasyRequest> next) {
+		return new RequestPipeline(context, future.thenCompose(req -> {
+			EasyRequest nextRequest;
+			try (StepContext.Scope scope = context.withEasyRequest(req).attach()) {
+				nextRequest = next.apply(req);
+			}
+			return nextRequest.executeAsync(context);
+		}));
+	}
+
+	/**
+	 * 在最后一个请求完成后计算结果，结束流水线
+	 * @param fn 结果计算函数
+	 * @param <T> 结果类型
+	 * @return 结果的future
+	 */
+	public <T> CompletableFuture<T> thenReturn(Function<EasyRequest, T> fn) {
+		return future.thenApply(req -> {
+			try (StepContext.Scope scope = context.withEasyRequest(req).attach()) {
+				return fn.apply(req);
+			}
+		});
+	}
+
+	/**
+	 * @return 以最后一个完成的请求完成的future
+	 */
+	public CompletableFuture<EasyRequest> toFuture() {
+		return future;
+	}
+
+	/**
+	 * 阻塞等待流水线执行完毕
+	 * @return 最后一个完成的请求
+	 */
+	public EasyRequest join() {
+		return future.join();
+	}
+}
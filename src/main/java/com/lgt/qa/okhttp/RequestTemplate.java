@@ -0,0 +1,265 @@
+package com.lgt.qa.okhttp;
+
+import com.lgt.qa.cmdparsers.CommandParser;
+import com.lgt.qa.cmdparsers.CommandTemplate;
+import okhttp3.FormBody;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.internal.http.HttpMethod;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预编译的不可变请求模板，可以被任意多个虚拟用户同时使用。
+ * 构建时把url解析为HttpUrl、把头信息组装为Headers、解析好MediaType，并把其中的${}引用编译为{@link CommandTemplate}；
+ * 不含${}的部分（包括整个body）只构造一次，每次渲染直接复用，含${}的部分每次只执行其中的命令。
+ * <pre>
+ * static final RequestTemplate ORDER = RequestTemplate.builder("post", "${base}/orders")
+ *         .header("Authorization", "Bearer ${token}")
+ *         .body("json", "{\"sku\":\"${sku}\",\"count\":1}")
+ *         .build();
+ * ...
+ * EasyRequest req = new EasyRequest(ORDER, parser);
+ * req.executeRequest();
+ * </pre>
+ *
+ */
+public final class RequestTemplate {
+	private final String method;
+	private final HttpUrl url; // 不含${}时预先解析的url
+	private final CommandTemplate urlTemplate;
+	private final Headers headers; // 不含${}的头信息
+	private final String[] dynamicHeaderNames;
+	private final CommandTemplate[] dynamicHeaderValues;
+	private final MediaType mediaType;
+	private final RequestBody body; // 不含${}时预先构造的body，可以重复发送
+	private final CommandTemplate bodyTemplate;
+	private final String[] formNames;
+	private final CommandTemplate[] formValues;
+
+	private RequestTemplate(Builder builder) {
+		this.method = builder.method;
+		String fullUrl = builder.url + (builder.query.length() == 0 ? "" : (builder.url.indexOf('?') == -1 ? "?" : "&") + builder.query);
+		CommandTemplate compiled = CommandTemplate.compile(fullUrl);
+		if(compiled.hasCommands()) {
+			this.url = null;
+			this.urlTemplate = compiled;
+		}else {
+			this.url = parseUrl(fullUrl);
+			this.urlTemplate = null;
+		}
+		Headers.Builder staticHeaders = new Headers.Builder();
+		List<String> names = new ArrayList<>();
+		List<CommandTemplate> values = new ArrayList<>();
+		for(String[] header : builder.headers) {
+			CommandTemplate value = CommandTemplate.compile(header[1]);
+			if(value.hasCommands()) {
+				names.add(header[0]);
+				values.add(value);
+			}else {
+				staticHeaders.add(header[0], header[1]);
+			}
+		}
+		this.headers = staticHeaders.build();
+		this.dynamicHeaderNames = names.toArray(new String[0]);
+		this.dynamicHeaderValues = values.toArray(new CommandTemplate[0]);
+		this.mediaType = builder.mediaType;
+		if(builder.form != null) {
+			this.bodyTemplate = null;
+			this.formNames = builder.form.keySet().toArray(new String[0]);
+			this.formValues = new CommandTemplate[formNames.length];
+			boolean dynamic = false;
+			for(int i = 0; i < formNames.length; i++) {
+				formValues[i] = CommandTemplate.compile(builder.form.get(formNames[i]));
+				dynamic |= formValues[i].hasCommands();
+			}
+			this.body = dynamic ? null : form(null);
+		}else if(builder.body != null) {
+			this.formNames = null;
+			this.formValues = null;
+			CommandTemplate bodyCompiled = CommandTemplate.compile(builder.body);
+			if(bodyCompiled.hasCommands()) {
+				this.bodyTemplate = bodyCompiled;
+				this.body = null;
+			}else {
+				this.bodyTemplate = null;
+				this.body = RequestBody.create(mediaType, builder.body.getBytes(charset(mediaType)));
+			}
+		}else {
+			this.formNames = null;
+			this.formValues = null;
+			this.bodyTemplate = null;
+			this.body = null;
+		}
+	}
+
+	/**
+	 * @param method 请求方法，对大小写不敏感
+	 * @param url url，可以包含${}引用和query字符串
+	 * @return 模板构建器
+	 */
+	public static Builder builder(String method, String url) {
+		return new Builder(method, url);
+	}
+
+	/**
+	 * 渲染出一个请求，只执行模板中的${}命令，其余部分直接复用
+	 * @param parser 当前虚拟用户的命令解释器
+	 * @return 请求
+	 */
+	public Request render(CommandParser parser) {
+		Request.Builder builder = new Request.Builder()
+				.url(url != null ? url : parseUrl(String.valueOf(urlTemplate.render(parser))))
+				.headers(headers);
+		for(int i = 0; i < dynamicHeaderNames.length; i++) {
+			builder.addHeader(dynamicHeaderNames[i], String.valueOf(dynamicHeaderValues[i].render(parser)));
+		}
+		return builder.method(method, renderBody(parser)).build();
+	}
+
+	private RequestBody renderBody(CommandParser parser) {
+		if(body != null) {
+			return body;
+		}
+		if(bodyTemplate != null) {
+			return RequestBody.create(mediaType, String.valueOf(bodyTemplate.render(parser)).getBytes(charset(mediaType)));
+		}
+		if(formNames != null) {
+			return form(parser);
+		}
+		return null;
+	}
+
+	private FormBody form(CommandParser parser) {
+		FormBody.Builder form = new FormBody.Builder();
+		for(int i = 0; i < formNames.length; i++) {
+			form.add(formNames[i], parser == null ? formValues[i].getSource() : String.valueOf(formValues[i].render(parser)));
+		}
+		return form.build();
+	}
+
+	private static HttpUrl parseUrl(String url) {
+		HttpUrl parsed = HttpUrl.parse(url);
+		if(parsed == null) {
+			throw new IllegalArgumentException("unexpected url: " + url);
+		}
+		return parsed;
+	}
+
+	private static Charset charset(MediaType mediaType) {
+		return mediaType != null ? mediaType.charset(StandardCharsets.UTF_8) : StandardCharsets.UTF_8;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * @return 模板中是否没有任何${}引用，此时每次渲染的结果都相同
+	 */
+	public boolean isStatic() {
+		return url != null && dynamicHeaderNames.length == 0 && bodyTemplate == null && (formNames == null || body != null);
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + (url != null ? url.toString() : urlTemplate.getSource());
+	}
+
+	/**
+	 * 请求模板构建器，不是线程安全的，构建出的模板是不可变的
+	 */
+	public static final class Builder {
+		private final String method;
+		private final String url;
+		private final StringBuilder query = new StringBuilder();
+		private final List<String[]> headers = new ArrayList<>();
+		private MediaType mediaType;
+		private String body;
+		private Map<String, String> form;
+
+		private Builder(String method, String url) {
+			this.method = method.toUpperCase();
+			this.url = url;
+		}
+
+		/**
+		 * @param queryString query字符串，格式为key1=value1&amp;key2=value2，可以包含${}引用，多次调用时用&amp;连接
+		 * @return 当前对象
+		 */
+		public Builder query(String queryString) {
+			if(query.length() != 0) {
+				query.append('&');
+			}
+			query.append(queryString);
+			return this;
+		}
+
+		/**
+		 * @param name 头名称
+		 * @param value 头的值，可以包含${}引用
+		 * @return 当前对象
+		 */
+		public Builder header(String name, String value) {
+			headers.add(new String[]{name, value});
+			return this;
+		}
+
+		/**
+		 * @param headers 头信息，值可以包含${}引用
+		 * @return 当前对象
+		 */
+		public Builder headers(Map<String, String> headers) {
+			for(Map.Entry<String, String> header : headers.entrySet()) {
+				header(header.getKey(), header.getValue());
+			}
+			return this;
+		}
+
+		/**
+		 * @param mimeType json、xml、soap12、plain，或完整的媒体类型如"application/x-ndjson; charset=utf-8"
+		 * @param body body内容，可以包含${}引用
+		 * @return 当前对象
+		 */
+		public Builder body(String mimeType, String body) {
+			this.mediaType = RequestBodies.contentType(mimeType);
+			this.body = body;
+			this.form = null;
+			return this;
+		}
+
+		/**
+		 * @param form 表单参数，值可以包含${}引用
+		 * @return 当前对象
+		 */
+		public Builder form(Map<String, String> form) {
+			this.form = new LinkedHashMap<>(form);
+			this.body = null;
+			this.mediaType = null;
+			return this;
+		}
+
+		/**
+		 * @return 不可变的请求模板
+		 * @throws IllegalArgumentException 不含${}的url不合法，或请求方法与body不匹配（POST、PUT、PATCH等没有body，GET、HEAD有body）
+		 */
+		public RequestTemplate build() {
+			boolean hasBody = body != null || form != null;
+			if(!hasBody && HttpMethod.requiresRequestBody(method)) { // 与Request.Builder.method的检查一致，在构建时报错而不是每次渲染时
+				throw new IllegalArgumentException("method " + method + " must have a request body");
+			}
+			if(hasBody && !HttpMethod.permitsRequestBody(method)) {
+				throw new IllegalArgumentException("method " + method + " must not have a request body");
+			}
+			return new RequestTemplate(this);
+		}
+	}
+}
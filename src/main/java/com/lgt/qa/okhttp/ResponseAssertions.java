@@ -0,0 +1,643 @@
+package com.lgt.qa.okhttp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.lgt.qa.functions.JSONUtil;
+import com.lgt.qa.functions.JsonArrayIterator;
+import com.lgt.qa.functions.JsonDocument;
+import com.lgt.qa.functions.JsonPath;
+import com.lgt.qa.functions.JsonPathSet;
+import com.lgt.qa.functions.PatternCache;
+import com.lgt.qa.functions.RegexSet;
+import okhttp3.Response;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 预编译的应答断言集合，覆盖状态码、头信息、json路径、正则、body大小和响应时间SLA。
+ * 断言集合构建一次后不可变，可以被所有虚拟用户共享；校验时按开销从小到大依次进行：
+ * 状态码、头信息、响应时间、大小只读取已有的应答信息，所有json路径断言在body上一次流式遍历中取值（参见{@link JsonPathSet}，
+ * 与同一应答上的${response.body.json()}共享同一个{@link JsonDocument}），所有正则断言在一次扫描中完成（参见{@link RegexSet}），
+ * 数组元素断言逐个读取元素，不把整个数组转换为对象，开启并行时在ForkJoin公共池上分批校验。
+ * 写入文件的body在校验时直接从文件流式读取，不会被加载到内存中。
+ * <pre>
+ * static final ResponseAssertions ORDER_OK = ResponseAssertions.builder()
+ *         .status(200)
+ *         .header("Content-Type", "json")
+ *         .json("data.status", "PAID")
+ *         .maxTime(500)
+ *         .each("data.items", "price &gt; 0", item -&gt; item.path("price").asDouble() &gt; 0)
+ *         .build();
+ * ...
+ * req.executeRequest();
+ * ORDER_OK.check(req);
+ * </pre>
+ *
+ */
+public final class ResponseAssertions {
+	private final boolean failFast;
+	private final boolean parallel;
+	private final int[] statuses;
+	private final int minStatus;
+	private final int maxStatus;
+	private final String[] headerNames;
+	private final Pattern[] headerPatterns; // 为null时只要求头存在
+	private final long maxMillis;
+	private final long minSize;
+	private final long maxSize;
+	private final JsonCheck[] jsonChecks;
+	private final JsonPathSet jsonPaths;
+	private final String[] bodyRegexes;
+	private final RegexSet bodyRegexSet;
+	private final ElementCheck[] elementChecks;
+
+	private ResponseAssertions(Builder builder) {
+		this.failFast = builder.failFast;
+		this.parallel = builder.parallel;
+		this.statuses = toArray(builder.statuses);
+		this.minStatus = builder.minStatus;
+		this.maxStatus = builder.maxStatus;
+		this.headerNames = builder.headerNames.toArray(new String[0]);
+		this.headerPatterns = builder.headerPatterns.toArray(new Pattern[0]);
+		this.maxMillis = builder.maxMillis;
+		this.minSize = builder.minSize;
+		this.maxSize = builder.maxSize;
+		this.jsonChecks = builder.jsonChecks.toArray(new JsonCheck[0]);
+		String[] paths = new String[jsonChecks.length];
+		for(int i = 0; i < paths.length; i++) {
+			paths[i] = jsonChecks[i].path;
+		}
+		this.jsonPaths = paths.length == 0 ? null : JsonPathSet.compile(paths);
+		this.bodyRegexes = builder.bodyRegexes.toArray(new String[0]);
+		this.bodyRegexSet = bodyRegexes.length == 0 ? null : RegexSet.compile(bodyRegexes);
+		this.elementChecks = builder.elementChecks.toArray(new ElementCheck[0]);
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * 校验已经执行完毕的请求
+	 * @param request 已执行的请求
+	 * @return 校验结果，快速失败模式下最多包含一项失败
+	 */
+	public Result verify(EasyRequest request) {
+		List<Failure> failures = new ArrayList<>();
+		Response response = request.getResponse();
+		if(response == null) {
+			failures.add(new Failure("response", "executed request", "no response"));
+			return new Result(failures);
+		}
+		if(!verifyStatus(response.code(), failures)
+				|| !verifyHeaders(response, failures)
+				|| !verifyTime(request.getElapsedMillis(), failures)) {
+			return new Result(failures);
+		}
+		CapturedBody body = request.getCapturedBody();
+		if(!verifySize(body, failures)
+				|| !verifyJson(body, failures)
+				|| !verifyRegex(body, failures)) {
+			return new Result(failures);
+		}
+		for(ElementCheck check : elementChecks) {
+			if(!verifyElements(check, body, failures)) {
+				break;
+			}
+		}
+		return new Result(failures);
+	}
+
+	/**
+	 * 校验已经执行完毕的请求，有断言失败时抛出异常
+	 * @param request 已执行的请求
+	 * @throws AssertionError 有断言失败，消息中列出所有失败项
+	 */
+	public void check(EasyRequest request) {
+		verify(request).assertPassed();
+	}
+
+	/**
+	 * 记录一项失败
+	 * @return 是否应该继续校验
+	 */
+	private boolean fail(List<Failure> failures, String check, String expected, String actual) {
+		failures.add(new Failure(check, expected, actual));
+		return !failFast;
+	}
+
+	private boolean verifyStatus(int code, List<Failure> failures) {
+		if(statuses.length == 0 && minStatus < 0) {
+			return true;
+		}
+		for(int status : statuses) {
+			if(status == code) {
+				return true;
+			}
+		}
+		if(minStatus >= 0 && code >= minStatus && code <= maxStatus) {
+			return true;
+		}
+		StringBuilder expected = new StringBuilder();
+		for(int status : statuses) {
+			expected.append(expected.length() == 0 ? "" : " or ").append(status);
+		}
+		if(minStatus >= 0) {
+			expected.append(expected.length() == 0 ? "" : " or ").append(minStatus).append("..").append(maxStatus);
+		}
+		return fail(failures, "status", expected.toString(), String.valueOf(code));
+	}
+
+	private boolean verifyHeaders(Response response, List<Failure> failures) {
+		for(int i = 0; i < headerNames.length; i++) {
+			String value = response.header(headerNames[i]);
+			if(value == null) {
+				if(!fail(failures, "header " + headerNames[i], headerPatterns[i] == null ? "present" : headerPatterns[i].pattern(), null)) {
+					return false;
+				}
+			}else if(headerPatterns[i] != null && !headerPatterns[i].matcher(value).find()) {
+				if(!fail(failures, "header " + headerNames[i], headerPatterns[i].pattern(), value)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private boolean verifyTime(double elapsedMillis, List<Failure> failures) {
+		if(maxMillis >= 0 && elapsedMillis > maxMillis) {
+			return fail(failures, "time", "<= " + maxMillis + "ms", String.format("%.3fms", elapsedMillis));
+		}
+		return true;
+	}
+
+	private boolean verifySize(CapturedBody body, List<Failure> failures) {
+		if(minSize <= 0 && maxSize < 0) {
+			return true;
+		}
+		long size = body != null ? body.getSize() : 0;
+		if(size < minSize || (maxSize >= 0 && size > maxSize)) {
+			return fail(failures, "size", minSize + ".." + (maxSize >= 0 ? String.valueOf(maxSize) : ""), String.valueOf(size));
+		}
+		return true;
+	}
+
+	private boolean verifyJson(CapturedBody body, List<Failure> failures) {
+		if(jsonPaths == null) {
+			return true;
+		}
+		String[] values;
+		if(body != null && body.bytes() == null && body.getFile() != null) { // 写入文件的body直接从文件流式提取，不加载到内存
+			try {
+				InputStream in = new FileInputStream(body.getFile());
+				values = StandardCharsets.UTF_8.equals(body.getCharset()) ? jsonPaths.extract(in)
+						: jsonPaths.extract(new InputStreamReader(in, body.getCharset()));
+			} catch (IOException e) {
+				return fail(failures, "json", "response body readable", e.toString());
+			} catch (UncheckedIOException e) {
+				if(!(e.getCause() instanceof JsonProcessingException)) { // 读取文件失败与正则断言一样报告，不当作所有值都不存在
+					return fail(failures, "json", "response body readable", e.getCause().toString());
+				}
+				values = new String[jsonChecks.length]; // body不是合法的json，与内存中的body一样所有值为null
+			}
+		}else {
+			JsonDocument doc = body != null ? body.document() : null;
+			if(doc == null) {
+				return fail(failures, "json", "response body retained", "body not retained by " + (body != null ? body.getMode() : "policy"));
+			}
+			values = doc.extract(jsonPaths);
+		}
+		for(int i = 0; i < jsonChecks.length; i++) {
+			JsonCheck check = jsonChecks[i];
+			if(!check.test(values[i]) && !fail(failures, "json " + check.path, check.describe(), values[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean verifyRegex(CapturedBody body, List<Failure> failures) {
+		if(bodyRegexSet == null) {
+			return true;
+		}
+		boolean[] found;
+		if(body != null && body.bytes() == null && body.getFile() != null && FileCharSequence.supports(body.getCharset())) {
+			try (FileCharSequence text = FileCharSequence.open(body.getFile(), body.getCharset())) { // 按块解码文件，不加载到内存
+				found = bodyRegexSet.find(text);
+			} catch (IOException e) {
+				return fail(failures, "regex", "response body readable", e.toString());
+			}
+		}else {
+			String text = body != null ? body.string() : null;
+			if(text == null) {
+				return fail(failures, "regex", "response body retained", "body not retained by " + (body != null ? body.getMode() : "policy"));
+			}
+			found = bodyRegexSet.find(text);
+		}
+		for(int i = 0; i < found.length; i++) {
+			if(!found[i] && !fail(failures, "regex", bodyRegexes[i], "no match")) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean verifyElements(ElementCheck check, CapturedBody body, List<Failure> failures) {
+		try (JsonArrayIterator<JsonNode> it = iterate(body, check.path)) {
+			if(it == null) {
+				return fail(failures, "each " + check.path, "response body retained", "body not retained by " + (body != null ? body.getMode() : "policy"));
+			}
+			Stream<JsonNode> stream = parallel ? it.stream().parallel() : it.stream();
+			Predicate<JsonNode> failed = node -> !check.test(node);
+			if(failFast) {
+				Optional<JsonNode> bad = stream.filter(failed).findAny();
+				return !bad.isPresent() || fail(failures, "each " + check.path, check.description, bad.get().toString());
+			}
+			LongAdder count = new LongAdder();
+			AtomicReference<JsonNode> sample = new AtomicReference<>();
+			stream.forEach(node -> {
+				if(failed.test(node)) {
+					count.increment();
+					sample.compareAndSet(null, node);
+				}
+			});
+			if(count.sum() > 0) {
+				return fail(failures, "each " + check.path, check.description,
+						count.sum() + " of " + it.getCount() + " elements failed, e.g. " + sample.get());
+			}
+			return true;
+		} catch (UncheckedIOException | IllegalArgumentException e) {
+			return fail(failures, "each " + check.path, check.description, e.toString());
+		}
+	}
+
+	/**
+	 * 在保留的body上打开数组元素迭代器，body保留在内存中时直接读取其中的字节（不复制），写入文件时从文件流式读取。
+	 * 元素中的浮点数保留原文的精度，与json路径断言的取值规则一致
+	 * @return 迭代器，body没有保留时为null
+	 */
+	private static JsonArrayIterator<JsonNode> iterate(CapturedBody body, String path) {
+		if(body == null) {
+			return null;
+		}
+		if(body.bytes() != null) {
+			return JSONUtil.iterateTree(new ByteBufferBackedInputStream(body.bytes().asByteBuffer()), path);
+		}
+		if(body.getFile() != null) {
+			try {
+				return JSONUtil.iterateTree(new FileInputStream(body.getFile()), path);
+			} catch (IOException e) {
+				throw new UncheckedIOException("无法读取应答文件" + body.getFile(), e);
+			}
+		}
+		return null;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for(int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * 单个json路径断言
+	 */
+	private static final class JsonCheck {
+		private final String path;
+		private final String expected; // 期望的值，为null时只检查模式或存在
+		private final Pattern pattern;
+
+		JsonCheck(String path, String expected, Pattern pattern) {
+			this.path = path;
+			this.expected = expected;
+			this.pattern = pattern;
+		}
+
+		boolean test(String value) {
+			if(value == null) {
+				return false;
+			}
+			if(expected != null) {
+				return expected.equals(value);
+			}
+			return pattern == null || pattern.matcher(value).find();
+		}
+
+		String describe() {
+			return expected != null ? expected : pattern != null ? pattern.pattern() : "present";
+		}
+	}
+
+	/**
+	 * 数组元素断言
+	 */
+	private static final class ElementCheck {
+		private final String path;
+		private final String description;
+		private final Predicate<JsonNode> predicate;
+
+		ElementCheck(String path, String description, Predicate<JsonNode> predicate) {
+			this.path = path;
+			this.description = description;
+			this.predicate = predicate;
+		}
+
+		/**
+		 * 校验单个元素，predicate抛出的异常视为校验失败
+		 */
+		boolean test(JsonNode node) {
+			try {
+				return predicate.test(node);
+			} catch (RuntimeException e) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * 断言集合构建器，不是线程安全的
+	 */
+	public static final class Builder {
+		private boolean failFast;
+		private boolean parallel;
+		private final List<Integer> statuses = new ArrayList<>();
+		private int minStatus = -1;
+		private int maxStatus = -1;
+		private final List<String> headerNames = new ArrayList<>();
+		private final List<Pattern> headerPatterns = new ArrayList<>();
+		private long maxMillis = -1;
+		private long minSize;
+		private long maxSize = -1;
+		private final List<JsonCheck> jsonChecks = new ArrayList<>();
+		private final List<String> bodyRegexes = new ArrayList<>();
+		private final List<ElementCheck> elementChecks = new ArrayList<>();
+
+		private Builder() {
+		}
+
+		/**
+		 * @param failFast 为true时遇到第一项失败即停止校验，默认为false，收集所有失败项
+		 * @return 当前对象
+		 */
+		public Builder failFast(boolean failFast) {
+			this.failFast = failFast;
+			return this;
+		}
+
+		/**
+		 * @param parallel 为true时数组元素断言在ForkJoin公共池上分批并行校验，默认为false。
+		 * 元素的解析仍然是顺序的，只有元素很多且单个元素的条件开销明显大于解析时才有收益
+		 * @return 当前对象
+		 */
+		public Builder parallel(boolean parallel) {
+			this.parallel = parallel;
+			return this;
+		}
+
+		/**
+		 * @param codes 允许的状态码，多次调用时取并集
+		 * @return 当前对象
+		 */
+		public Builder status(int... codes) {
+			for(int code : codes) {
+				statuses.add(code);
+			}
+			return this;
+		}
+
+		/**
+		 * @param min 允许的最小状态码
+		 * @param max 允许的最大状态码
+		 * @return 当前对象
+		 */
+		public Builder statusBetween(int min, int max) {
+			if(min < 0 || max < min) {
+				throw new IllegalArgumentException("invalid status range " + min + ".." + max);
+			}
+			this.minStatus = min;
+			this.maxStatus = max;
+			return this;
+		}
+
+		/**
+		 * @param name 头名称
+		 * @param regex 头的值中需要能找到匹配的正则表达式，可以用^和$限定整个值
+		 * @return 当前对象
+		 */
+		public Builder header(String name, String regex) {
+			headerNames.add(name);
+			headerPatterns.add(PatternCache.compile(regex));
+			return this;
+		}
+
+		/**
+		 * @param name 必须存在的头名称
+		 * @return 当前对象
+		 */
+		public Builder headerExists(String name) {
+			headerNames.add(name);
+			headerPatterns.add(null);
+			return this;
+		}
+
+		/**
+		 * @param millis 从发出请求到读完应答body的最大耗时，毫秒
+		 * @return 当前对象
+		 */
+		public Builder maxTime(long millis) {
+			this.maxMillis = millis;
+			return this;
+		}
+
+		/**
+		 * @param min body的最小字节数
+		 * @param max body的最大字节数
+		 * @return 当前对象
+		 */
+		public Builder size(long min, long max) {
+			if(min < 0 || max < min) {
+				throw new IllegalArgumentException("invalid size range " + min + ".." + max);
+			}
+			this.minSize = min;
+			this.maxSize = max;
+			return this;
+		}
+
+		/**
+		 * @param bytes body的最大字节数，在DISCARD、DIGEST等不保留body的策略下同样有效
+		 * @return 当前对象
+		 */
+		public Builder maxSize(long bytes) {
+			this.maxSize = bytes;
+			return this;
+		}
+
+		/**
+		 * @param path json路径，参见{@link JsonPath}
+		 * @param expected 期望的值，与提取结果的文本比较，参见{@link JsonPath#extract(String)}
+		 * @return 当前对象
+		 */
+		public Builder json(String path, String expected) {
+			jsonChecks.add(new JsonCheck(path, expected, null));
+			return this;
+		}
+
+		/**
+		 * @param path json路径
+		 * @param regex 提取结果中需要能找到匹配的正则表达式
+		 * @return 当前对象
+		 */
+		public Builder jsonMatches(String path, String regex) {
+			jsonChecks.add(new JsonCheck(path, null, PatternCache.compile(regex)));
+			return this;
+		}
+
+		/**
+		 * @param path 必须存在且不为null的json路径
+		 * @return 当前对象
+		 */
+		public Builder jsonExists(String path) {
+			jsonChecks.add(new JsonCheck(path, null, null));
+			return this;
+		}
+
+		/**
+		 * @param regex body中需要能找到匹配的正则表达式
+		 * @return 当前对象
+		 */
+		public Builder bodyMatches(String regex) {
+			bodyRegexes.add(regex);
+			return this;
+		}
+
+		/**
+		 * 数组中的每个元素都需要满足条件，路径不存在或为null时视为空数组
+		 * @param arrayPath 数组所在的json路径，根节点是数组时为null
+		 * @param description 条件的描述，用于失败信息
+		 * @param predicate 条件，可能被多个线程同时调用，抛出异常视为不满足
+		 * @return 当前对象
+		 */
+		public Builder each(String arrayPath, String description, Predicate<JsonNode> predicate) {
+			elementChecks.add(new ElementCheck(arrayPath, description, predicate));
+			return this;
+		}
+
+		/**
+		 * 数组中每个元素的指定字段都需要匹配正则表达式
+		 * @param arrayPath 数组所在的json路径，根节点是数组时为null
+		 * @param fieldPath 元素内的json路径，如sku或price
+		 * @param regex 字段值中需要能找到匹配的正则表达式
+		 * @return 当前对象
+		 */
+		public Builder eachMatches(String arrayPath, String fieldPath, String regex) {
+			final JsonPath field = JsonPath.compile(fieldPath);
+			final Pattern pattern = PatternCache.compile(regex);
+			return each(arrayPath, fieldPath + " ~ " + regex, node -> {
+				String value = field.extract(node);
+				return value != null && pattern.matcher(value).find();
+			});
+		}
+
+		/**
+		 * @return 不可变的断言集合
+		 */
+		public ResponseAssertions build() {
+			return new ResponseAssertions(this);
+		}
+	}
+
+	/**
+	 * 单项断言失败
+	 */
+	public static final class Failure {
+		private final String check;
+		private final String expected;
+		private final String actual;
+
+		Failure(String check, String expected, String actual) {
+			this.check = check;
+			this.expected = expected;
+			this.actual = actual;
+		}
+
+		/**
+		 * @return 失败的断言，如status、header Content-Type、json data.id
+		 */
+		public String getCheck() {
+			return check;
+		}
+
+		public String getExpected() {
+			return expected;
+		}
+
+		public String getActual() {
+			return actual;
+		}
+
+		@Override
+		public String toString() {
+			return check + ": expected " + expected + " but was " + actual;
+		}
+	}
+
+	/**
+	 * 一次校验的结果
+	 */
+	public static final class Result {
+		private final List<Failure> failures;
+
+		Result(List<Failure> failures) {
+			this.failures = Collections.unmodifiableList(failures);
+		}
+
+		/**
+		 * @return 是否所有断言都通过
+		 */
+		public boolean isPassed() {
+			return failures.isEmpty();
+		}
+
+		public List<Failure> getFailures() {
+			return failures;
+		}
+
+		/**
+		 * @throws AssertionError 有断言失败
+		 */
+		public void assertPassed() {
+			if(!failures.isEmpty()) {
+				throw new AssertionError(toString());
+			}
+		}
+
+		@Override
+		public String toString() {
+			if(failures.isEmpty()) {
+				return "all assertions passed";
+			}
+			StringBuilder sb = new StringBuilder().append(failures.size()).append(" assertion(s) failed");
+			for(Failure failure : failures) {
+				sb.append("\n  ").append(failure);
+			}
+			return sb.toString();
+		}
+	}
+}
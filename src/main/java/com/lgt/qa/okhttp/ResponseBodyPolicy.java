@@ -0,0 +1,202 @@
+package com.lgt.qa.okhttp;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.HashingSink;
+import okio.Okio;
+import okio.Sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.function.Supplier;
+
+/**
+ * 应答body的处理策略，决定executeRequest读取应答后在内存中保留什么。
+ * <ul>
+ * 	<li>MATERIALIZE - 完整保留body（默认），字符串在第一次读取时才解码</li>
+ * 	<li>DISCARD - 读完并丢弃，只记录大小，适合只校验状态码的场景</li>
+ * 	<li>DIGEST - 只保留大小和摘要</li>
+ * 	<li>PREFIX - 只保留前N个字节，其余部分读完丢弃</li>
+ * 	<li>SINK - 通过okio直接写入文件或自定义Sink，不经过堆内的完整副本</li>
+ * </ul>
+ * 除MATERIALIZE外，每个虚拟用户占用的堆内存由策略决定，与服务端返回的数据大小无关。
+ *
+ */
+public final class ResponseBodyPolicy {
+	public enum Mode {
+		MATERIALIZE, DISCARD, DIGEST, PREFIX, SINK
+	}
+
+	private static final ResponseBodyPolicy MATERIALIZE = new ResponseBodyPolicy(Mode.MATERIALIZE, 0, null, null, null);
+	private static final ResponseBodyPolicy DISCARD = new ResponseBodyPolicy(Mode.DISCARD, 0, null, null, null);
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final long SEGMENT_SIZE = 8192;
+
+	private final Mode mode;
+	private final long limit;
+	private final String algorithm;
+	private final File file;
+	private final Supplier<? extends Sink> sinkSupplier;
+
+	private ResponseBodyPolicy(Mode mode, long limit, String algorithm, File file, Supplier<? extends Sink> sinkSupplier) {
+		this.mode = mode;
+		this.limit = limit;
+		this.algorithm = algorithm;
+		this.file = file;
+		this.sinkSupplier = sinkSupplier;
+	}
+
+	/**
+	 * @return 完整保留body的策略
+	 */
+	public static ResponseBodyPolicy materialize() {
+		return MATERIALIZE;
+	}
+
+	/**
+	 * @return 丢弃body，只记录大小的策略
+	 */
+	public static ResponseBodyPolicy discard() {
+		return DISCARD;
+	}
+
+	/**
+	 * 只保留大小和摘要的策略
+	 * @param algorithm 摘要算法，支持md5、sha1、sha256、sha512
+	 * @return 策略对象
+	 */
+	public static ResponseBodyPolicy digest(String algorithm) {
+		String alg = algorithm.toLowerCase().replace("-", "");
+		switch(alg) {
+			case "md5":
+			case "sha1":
+			case "sha256":
+			case "sha512":
+				return new ResponseBodyPolicy(Mode.DIGEST, 0, alg, null, null);
+			default:
+				throw new IllegalArgumentException("unsupported digest algorithm "+algorithm);
+		}
+	}
+
+	/**
+	 * 只保留前N个字节的策略
+	 * @param bytes 保留的字节数
+	 * @return 策略对象
+	 */
+	public static ResponseBodyPolicy prefix(long bytes) {
+		if(bytes < 0) {
+			throw new IllegalArgumentException("bytes < 0: "+bytes);
+		}
+		return new ResponseBodyPolicy(Mode.PREFIX, bytes, null, null, null);
+	}
+
+	/**
+	 * 将body直接写入文件的策略，文件会被覆盖，读取body字符串时才从文件加载
+	 * @param file 目标文件
+	 * @return 策略对象
+	 */
+	public static ResponseBodyPolicy toFile(File file) {
+		return new ResponseBodyPolicy(Mode.SINK, 0, null, file, null);
+	}
+
+	/**
+	 * 将body直接写入自定义Sink的策略，每个应答调用一次supplier获取Sink，写完后Sink会被关闭
+	 * @param sinkSupplier Sink的提供者
+	 * @return 策略对象
+	 */
+	public static ResponseBodyPolicy toSink(Supplier<? extends Sink> sinkSupplier) {
+		return new ResponseBodyPolicy(Mode.SINK, 0, null, null, sinkSupplier);
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * 按策略读取并关闭body
+	 * @param body 应答body
+	 * @return 读取结果
+	 * @throws IOException 读取或写入失败
+	 */
+	CapturedBody capture(ResponseBody body) throws IOException {
+		try (ResponseBody b = body) {
+			MediaType contentType = b.contentType();
+			Charset charset = contentType != null ? contentType.charset(UTF_8) : UTF_8;
+			BufferedSource source = b.source();
+			switch(mode) {
+				case DISCARD:
+					return new CapturedBody(mode, skipAll(source), null, null, null, false, charset);
+				case DIGEST: {
+					HashingSink hashing = hashingSink(Okio.blackhole());
+					long size = source.readAll(hashing);
+					return new CapturedBody(mode, size, hashing.hash().hex(), null, null, false, charset);
+				}
+				case PREFIX: {
+					Buffer buffer = new Buffer();
+					while(buffer.size() < limit && source.read(buffer, limit - buffer.size()) != -1) {
+						// 读满limit个字节或读到结尾
+					}
+					long rest = skipAll(source);
+					return new CapturedBody(mode, buffer.size() + rest, null, buffer.readByteString(), null, rest > 0, charset);
+				}
+				case SINK: {
+					long size;
+					try (BufferedSink sink = Okio.buffer(file != null ? Okio.sink(file) : sinkSupplier.get())) {
+						size = sink.writeAll(source);
+					}
+					return new CapturedBody(mode, size, null, null, file, false, charset);
+				}
+				default: {
+					ByteString bytes = source.readByteString();
+					return new CapturedBody(mode, bytes.size(), null, bytes, null, false, charset);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 读完剩余数据并丢弃，使连接可以被复用
+	 */
+	private static long skipAll(BufferedSource source) throws IOException {
+		Buffer buffer = new Buffer();
+		long total = 0;
+		long read;
+		while((read = source.read(buffer, SEGMENT_SIZE)) != -1) {
+			total += read;
+			buffer.clear();
+		}
+		return total;
+	}
+
+	private HashingSink hashingSink(Sink sink) {
+		switch(algorithm) {
+			case "md5":
+				return HashingSink.md5(sink);
+			case "sha1":
+				return HashingSink.sha1(sink);
+			case "sha512":
+				return HashingSink.sha512(sink);
+			default:
+				return HashingSink.sha256(sink);
+		}
+	}
+
+	@Override
+	public String toString() {
+		switch(mode) {
+			case DIGEST:
+				return "ResponseBodyPolicy{DIGEST, "+algorithm+"}";
+			case PREFIX:
+				return "ResponseBodyPolicy{PREFIX, "+limit+"}";
+			case SINK:
+				return "ResponseBodyPolicy{SINK, "+(file != null ? file.getPath() : "custom sink")+"}";
+			default:
+				return "ResponseBodyPolicy{"+mode+"}";
+		}
+	}
+}
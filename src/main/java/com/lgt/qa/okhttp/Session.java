@@ -0,0 +1,92 @@
+package com.lgt.qa.okhttp;
+
+import okhttp3.Cookie;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 登录后得到的认证会话，包含需要带到后续请求上的cookie和请求头（如Authorization），不可变。
+ * 通过{@link #apply(EasyRequest)}应用到请求上，由{@link SessionPool}统一创建、刷新和分配。
+ *
+ */
+public final class Session {
+	private final List<Cookie> cookies;
+	private final Map<String, String> headers;
+	private final long expiresAt;
+
+	/**
+	 * @param cookies 会话cookie
+	 * @param headers 会话请求头
+	 * @param expiresAt 会话过期时间，毫秒时间戳，{@link Long#MAX_VALUE}表示不过期
+	 */
+	public Session(List<Cookie> cookies, Map<String, String> headers, long expiresAt) {
+		this.cookies = cookies != null ? Collections.unmodifiableList(cookies) : Collections.emptyList();
+		this.headers = headers != null ? Collections.unmodifiableMap(new LinkedHashMap<>(headers)) : Collections.emptyMap();
+		this.expiresAt = expiresAt;
+	}
+
+	/**
+	 * 根据登录请求使用的cookie容器创建会话，过期时间取其中最早过期的持久化cookie
+	 * @param cookieStore 登录时使用的cookie容器
+	 * @param headers 会话请求头，没有时传null
+	 * @return 会话
+	 */
+	public static Session from(CookieStore cookieStore, Map<String, String> headers) {
+		List<Cookie> cookies = cookieStore.getAll();
+		long expiresAt = Long.MAX_VALUE;
+		for(Cookie cookie : cookies) {
+			if(cookie.persistent()) {
+				expiresAt = Math.min(expiresAt, cookie.expiresAt());
+			}
+		}
+		return new Session(cookies, headers, expiresAt);
+	}
+
+	/**
+	 * 将会话的cookie和请求头应用到请求上
+	 * @param easyRequest 需要携带会话的请求
+	 */
+	public void apply(EasyRequest easyRequest) {
+		easyRequest.setCookies(cookies);
+		for(Map.Entry<String, String> header : headers.entrySet()) {
+			easyRequest.setHeaders(header.getKey(), header.getValue());
+		}
+	}
+
+	/**
+	 * 创建一个替换了过期时间的新会话
+	 * @param expiresAt 过期时间，毫秒时间戳
+	 * @return 新的会话
+	 */
+	public Session withExpiresAt(long expiresAt) {
+		return new Session(cookies, headers, expiresAt);
+	}
+
+	public List<Cookie> getCookies() {
+		return cookies;
+	}
+
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+	/**
+	 * @param now 当前时间，毫秒时间戳
+	 * @return 会话在指定时间是否已过期
+	 */
+	public boolean isExpired(long now) {
+		return expiresAt <= now;
+	}
+
+	@Override
+	public String toString() {
+		return "Session{cookies=" + cookies.size() + ", headers=" + headers.keySet() + ", expiresAt=" + expiresAt + "}";
+	}
+}
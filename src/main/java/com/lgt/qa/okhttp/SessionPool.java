@@ -0,0 +1,492 @@
+package com.lgt.qa.okhttp;
+
+import com.lgt.qa.cmdparsers.StepContext;
+import com.lgt.qa.functions.JSONUtil;
+import okhttp3.Cookie;
+import okhttp3.HttpUrl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 预热的认证会话池。
+ * 启动时一次性登录出固定数量的会话（或从快照文件恢复仍然有效的会话），之后以租约的方式分配给虚拟用户，
+ * 场景的每次迭代不再需要重新登录；后台线程在会话过期前提前刷新，刷新后的会话对正在使用该槽位的租约立即可见。
+ * 设置了快照文件时，启动、刷新和关闭后都会写入快照，重启压测可以跳过预热。
+ * <pre>
+ * SessionPool pool = new SessionPool(50, cookies -&gt; {
+ *     EasyRequest login = new EasyRequest(url);
+ *     ...
+ *     login.executeRequest();
+ *     return Session.from(cookies, null);
+ * }).refreshAhead(2, TimeUnit.MINUTES).snapshotFile(new File("sessions.json")).start();
+ * try (SessionPool.Lease lease = pool.acquire()) {
+ *     lease.apply(easyRequest);
+ *     easyRequest.executeRequest();
+ * }
+ * </pre>
+ *
+ */
+public class SessionPool implements AutoCloseable {
+	private static final Logger logger = LoggerFactory.getLogger(SessionPool.class);
+
+	private final int size;
+	private final Authenticator authenticator;
+	private final AtomicReferenceArray<Session> slots;
+	private final ArrayBlockingQueue<Integer> idle;
+	private final AtomicBoolean started = new AtomicBoolean();
+	private final AtomicLong logins = new AtomicLong();
+	private final AtomicLong refreshes = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private long refreshAheadMillis = TimeUnit.MINUTES.toMillis(1);
+	private long ttlMillis = 0;
+	private long checkIntervalMillis = TimeUnit.SECONDS.toMillis(1);
+	private int warmupThreads;
+	private File snapshotFile;
+	private volatile ScheduledExecutorService refresher;
+
+	/**
+	 * @param size 会话个数
+	 * @param authenticator 登录逻辑
+	 */
+	public SessionPool(int size, Authenticator authenticator) {
+		if(size <= 0) {
+			throw new IllegalArgumentException("size must be positive");
+		}
+		this.size = size;
+		this.authenticator = authenticator;
+		this.slots = new AtomicReferenceArray<>(size);
+		this.idle = new ArrayBlockingQueue<>(size);
+		this.warmupThreads = Math.min(size, 8);
+	}
+
+	/**
+	 * 设置提前刷新的时间，会话在过期前这段时间内会被后台刷新
+	 * @param time 时间
+	 * @param unit 时间单位
+	 * @return 当前对象
+	 */
+	public SessionPool refreshAhead(long time, TimeUnit unit) {
+		this.refreshAheadMillis = unit.toMillis(time);
+		return this;
+	}
+
+	/**
+	 * 设置会话的有效期，用于登录结果中没有过期时间的会话（如只返回token的接口）
+	 * @param time 时间，为0时这类会话不过期
+	 * @param unit 时间单位
+	 * @return 当前对象
+	 */
+	public SessionPool ttl(long time, TimeUnit unit) {
+		this.ttlMillis = unit.toMillis(time);
+		return this;
+	}
+
+	/**
+	 * 设置后台检查会话是否需要刷新的间隔
+	 * @param time 时间
+	 * @param unit 时间单位
+	 * @return 当前对象
+	 */
+	public SessionPool checkInterval(long time, TimeUnit unit) {
+		this.checkIntervalMillis = Math.max(1, unit.toMillis(time));
+		return this;
+	}
+
+	/**
+	 * 设置预热时并发登录的线程数
+	 * @param threads 线程数
+	 * @return 当前对象
+	 */
+	public SessionPool warmupThreads(int threads) {
+		this.warmupThreads = Math.max(1, threads);
+		return this;
+	}
+
+	/**
+	 * 设置会话快照文件
+	 * @param file 快照文件，为null时不保存快照
+	 * @return 当前对象
+	 */
+	public SessionPool snapshotFile(File file) {
+		this.snapshotFile = file;
+		return this;
+	}
+
+	/**
+	 * 预热会话并启动后台刷新，只能调用一次。快照中仍然有效且不需要立即刷新的会话直接复用，其余槽位并发登录
+	 * @return 当前对象
+	 * @throws IllegalStateException 重复启动或有会话登录失败
+	 */
+	public SessionPool start() {
+		if(!started.compareAndSet(false, true)) {
+			throw new IllegalStateException("session pool already started");
+		}
+		long now = System.currentTimeMillis();
+		List<Session> restored = loadSnapshot();
+		int reused = 0;
+		for(Session session : restored) {
+			if(reused < size && !needsRefresh(session, now)) {
+				slots.set(reused++, session);
+			}
+		}
+		ExecutorService warmup = Executors.newFixedThreadPool(warmupThreads, daemonFactory("session-warmup"));
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for(int i = reused; i < size; i++) {
+				final int slot = i;
+				futures.add(warmup.submit(() -> {
+					slots.set(slot, login(null));
+					return null;
+				}));
+			}
+			for(Future<?> future : futures) {
+				future.get();
+			}
+		} catch (Exception e) {
+			warmup.shutdownNow();
+			throw new IllegalStateException("会话预热失败", e instanceof ExecutionException ? e.getCause() : e);
+		}
+		warmup.shutdown();
+		for(int i = 0; i < size; i++) {
+			idle.add(i);
+		}
+		logger.info("会话池预热完成，共{}个会话，其中{}个从快照恢复", size, reused);
+		saveSnapshot();
+		refresher = Executors.newSingleThreadScheduledExecutor(daemonFactory("session-refresh"));
+		refresher.scheduleWithFixedDelay(this::refreshDue, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+		return this;
+	}
+
+	/**
+	 * 租用一个会话，没有空闲会话时阻塞等待
+	 * @return 租约，使用完后必须关闭
+	 * @throws InterruptedException 等待时被中断
+	 */
+	public Lease acquire() throws InterruptedException {
+		checkStarted();
+		return new Lease(idle.take());
+	}
+
+	/**
+	 * 租用一个会话，最多等待指定时间
+	 * @param timeout 等待时间
+	 * @param unit 时间单位
+	 * @return 租约，超时返回null
+	 * @throws InterruptedException 等待时被中断
+	 */
+	public Lease acquire(long timeout, TimeUnit unit) throws InterruptedException {
+		checkStarted();
+		Integer slot = idle.poll(timeout, unit);
+		return slot != null ? new Lease(slot) : null;
+	}
+
+	/**
+	 * 获取指定槽位当前的会话，不占用租约，适用于允许多个虚拟用户共享同一会话的场景
+	 * @param slot 槽位，超出范围时按会话个数取模
+	 * @return 会话
+	 */
+	public Session get(int slot) {
+		checkStarted();
+		return slots.get(Math.floorMod(slot, size));
+	}
+
+	/**
+	 * 立即刷新所有会话，不论是否临近过期
+	 */
+	public void refreshAll() {
+		checkStarted();
+		for(int i = 0; i < size; i++) {
+			refresh(i);
+		}
+		saveSnapshot();
+	}
+
+	/**
+	 * 后台任务：刷新即将过期的会话
+	 */
+	private void refreshDue() {
+		long now = System.currentTimeMillis();
+		boolean changed = false;
+		for(int i = 0; i < size; i++) {
+			if(needsRefresh(slots.get(i), now)) {
+				changed |= refresh(i);
+			}
+		}
+		if(changed) {
+			saveSnapshot();
+		}
+	}
+
+	private boolean refresh(int slot) {
+		try {
+			slots.set(slot, login(slots.get(slot)));
+			refreshes.incrementAndGet();
+			return true;
+		} catch (Exception e) { // 刷新失败时保留旧会话，下次检查时重试
+			failures.incrementAndGet();
+			logger.warn("会话"+slot+"刷新失败", e);
+			return false;
+		}
+	}
+
+	/**
+	 * 在新的cookie容器中执行登录（current为null时）或刷新，执行期间该容器绑定为当前线程的cookie容器，
+	 * 因此登录逻辑中新建的EasyRequest会自动使用它
+	 */
+	private Session login(Session current) throws Exception {
+		CookieStore cookies = new CookieStore();
+		CookieStore previous = StepContext.getCookieStore();
+		StepContext.setCookieStore(cookies);
+		Session session;
+		try {
+			session = current == null ? authenticator.login(cookies) : authenticator.refresh(current, cookies);
+		} finally {
+			StepContext.setCookieStore(previous);
+		}
+		if(session == null) {
+			throw new IllegalStateException("authenticator returned no session");
+		}
+		logins.incrementAndGet();
+		if(session.getExpiresAt() == Long.MAX_VALUE && ttlMillis > 0) {
+			session = session.withExpiresAt(System.currentTimeMillis() + ttlMillis);
+		}
+		return session;
+	}
+
+	private boolean needsRefresh(Session session, long now) {
+		return session.getExpiresAt() != Long.MAX_VALUE && session.getExpiresAt() - refreshAheadMillis <= now;
+	}
+
+	private void checkStarted() {
+		if(!started.get() || refresher == null) {
+			throw new IllegalStateException("session pool not started");
+		}
+	}
+
+	/**
+	 * 停止后台刷新并写入快照
+	 */
+	@Override
+	public void close() {
+		if(refresher != null) {
+			refresher.shutdownNow();
+			saveSnapshot();
+		}
+	}
+
+	/**
+	 * 将当前所有会话写入快照文件，先写临时文件再替换，避免中途失败留下不完整的快照
+	 */
+	public synchronized void saveSnapshot() {
+		if(snapshotFile == null) {
+			return;
+		}
+		SnapshotData data = new SnapshotData();
+		for(int i = 0; i < size; i++) {
+			Session session = slots.get(i);
+			if(session != null) {
+				data.sessions.add(SessionData.of(session));
+			}
+		}
+		try {
+			File dir = snapshotFile.getAbsoluteFile().getParentFile();
+			File tmp = File.createTempFile(snapshotFile.getName(), ".tmp", dir);
+			Files.write(tmp.toPath(), JSONUtil.serializeToBytes(data));
+			Files.move(tmp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			logger.warn("会话快照写入失败："+snapshotFile, e);
+		}
+	}
+
+	private List<Session> loadSnapshot() {
+		List<Session> sessions = new ArrayList<>();
+		if(snapshotFile == null || !snapshotFile.isFile()) {
+			return sessions;
+		}
+		try {
+			String json = new String(Files.readAllBytes(snapshotFile.toPath()), StandardCharsets.UTF_8);
+			SnapshotData data = JSONUtil.unSerialize(json, SnapshotData.class);
+			if(data != null) {
+				for(SessionData session : data.sessions) {
+					sessions.add(session.toSession());
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			logger.warn("会话快照读取失败，重新登录："+snapshotFile, e);
+			sessions.clear();
+		}
+		return sessions;
+	}
+
+	private static ThreadFactory daemonFactory(String name) {
+		AtomicLong seq = new AtomicLong();
+		return r -> {
+			Thread t = new Thread(r, name + "-" + seq.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	/**
+	 * @return 会话个数
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return 当前空闲的会话个数
+	 */
+	public int available() {
+		return idle.size();
+	}
+
+	/**
+	 * @return 累计成功登录（含刷新）的次数
+	 */
+	public long getLogins() {
+		return logins.get();
+	}
+
+	/**
+	 * @return 累计成功刷新的次数
+	 */
+	public long getRefreshes() {
+		return refreshes.get();
+	}
+
+	/**
+	 * @return 累计刷新失败的次数
+	 */
+	public long getRefreshFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * 登录逻辑
+	 */
+	@FunctionalInterface
+	public interface Authenticator {
+		/**
+		 * 登录并返回会话
+		 * @param cookies 本次登录专用的cookie容器，登录期间已绑定为当前线程的cookie容器
+		 * @return 会话，通常为{@link Session#from(CookieStore, Map)}
+		 * @throws Exception 登录失败
+		 */
+		Session login(CookieStore cookies) throws Exception;
+
+		/**
+		 * 刷新会话，默认重新登录
+		 * @param current 当前会话
+		 * @param cookies 本次刷新专用的cookie容器
+		 * @return 新的会话
+		 * @throws Exception 刷新失败
+		 */
+		default Session refresh(Session current, CookieStore cookies) throws Exception {
+			return login(cookies);
+		}
+	}
+
+	/**
+	 * 会话租约，关闭时归还会话。租约期间会话被刷新时，{@link #getSession()}返回刷新后的会话
+	 */
+	public final class Lease implements AutoCloseable {
+		private final int slot;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Lease(int slot) {
+			this.slot = slot;
+		}
+
+		public int getSlot() {
+			return slot;
+		}
+
+		/**
+		 * @return 该槽位当前的会话
+		 */
+		public Session getSession() {
+			return slots.get(slot);
+		}
+
+		/**
+		 * 将当前会话的cookie和请求头应用到请求上
+		 * @param easyRequest 需要携带会话的请求
+		 */
+		public void apply(EasyRequest easyRequest) {
+			getSession().apply(easyRequest);
+		}
+
+		@Override
+		public void close() {
+			if(released.compareAndSet(false, true)) {
+				idle.add(slot);
+			}
+		}
+	}
+
+	/**
+	 * 快照文件内容
+	 */
+	static final class SnapshotData {
+		public List<SessionData> sessions = new ArrayList<>();
+	}
+
+	/**
+	 * 快照中的单个会话，cookie按Set-Cookie格式保存
+	 */
+	static final class SessionData {
+		public long expiresAt;
+		public Map<String, String> headers;
+		public List<CookieData> cookies = new ArrayList<>();
+
+		static SessionData of(Session session) {
+			SessionData data = new SessionData();
+			data.expiresAt = session.getExpiresAt();
+			data.headers = session.getHeaders();
+			for(Cookie cookie : session.getCookies()) {
+				CookieData c = new CookieData();
+				c.url = (cookie.secure() ? "https://" : "http://") + cookie.domain() + cookie.path();
+				c.setCookie = cookie.toString();
+				data.cookies.add(c);
+			}
+			return data;
+		}
+
+		Session toSession() {
+			List<Cookie> list = new ArrayList<>();
+			for(CookieData c : cookies) {
+				Cookie cookie = Cookie.parse(HttpUrl.parse(c.url), c.setCookie);
+				if(cookie != null) {
+					list.add(cookie);
+				}
+			}
+			return new Session(list, headers, expiresAt);
+		}
+	}
+
+	static final class CookieData {
+		public String url;
+		public String setCookie;
+	}
+}
@@ -0,0 +1,94 @@
+package com.lgt.qa.cmdparsers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandTemplateTest {
+	private CommandParser parser;
+
+	@Before
+	public void setUp() {
+		StepContext.setVar("host", "h");
+		StepContext.setVar("port", "8080");
+		FunctionRegistry.getInstance().register("testNull", args -> null);
+		FunctionRegistry.getInstance().register("testOne", args -> 1);
+		parser = new CommandParser(new StepContext());
+	}
+
+	@After
+	public void tearDown() {
+		FunctionRegistry.getInstance().unregister("testNull");
+		FunctionRegistry.getInstance().unregister("testOne");
+	}
+
+	private Object render(String str) {
+		return CommandTemplate.compile(str).render(parser);
+	}
+
+	@Test
+	public void stringsWithoutCommandsAreReturnedAsIs() {
+		String plain = "plain $ {host} text";
+		CommandTemplate template = CommandTemplate.compile(plain);
+		assertFalse(template.hasCommands());
+		assertSame(plain, template.render(parser));
+		assertNotSame(template, CommandTemplate.compile(plain));
+		assertEquals("", render(""));
+	}
+
+	@Test
+	public void unterminatedReferencesStayLiteral() {
+		assertFalse(CommandTemplate.compile("a${host").hasCommands());
+		assertEquals("a${host", render("a${host"));
+		assertEquals("h-${port", render("${host}-${port"));
+		assertEquals("${po\nrt}h", render("${po\nrt}${host}"));
+		assertEquals("$h}", render("$${host}}"));
+	}
+
+	@Test
+	public void adjacentCommands() {
+		assertEquals("h8080", render("${host}${port}"));
+		assertEquals("http://h:8080/h", render("http://${host}:${port}/${host}"));
+	}
+
+	@Test
+	public void singleCommandReturnsRawResult() {
+		assertEquals(1, render("${testOne()}"));
+		assertEquals("1 ", render("${testOne()} "));
+	}
+
+	@Test
+	public void nullResultsRenderAsNull() {
+		assertNull(render("${testNull()}"));
+		assertEquals("id=null&port=8080", render("id=${testNull()}&port=${port}"));
+	}
+
+	@Test
+	public void compiledTemplatesAreCached() {
+		String str = "id=${port}";
+		assertSame(CommandTemplate.compile(str), CommandTemplate.compile(str));
+		CommandTemplate.clearCache();
+		assertEquals("id=8080", render(str));
+	}
+
+	@Test
+	public void oversizedStringsBypassTheCache() {
+		StringBuilder sb = new StringBuilder("${host}");
+		while(sb.length() <= 8 * 1024) {
+			sb.append("0123456789");
+		}
+		String big = sb.append("${port}").toString();
+		CommandTemplate template = CommandTemplate.compile(big);
+		assertTrue(template.hasCommands());
+		assertNotSame(template, CommandTemplate.compile(big));
+		String rendered = (String) template.render(parser);
+		assertEquals("h" + big.substring(7, big.length() - 7) + "8080", rendered);
+	}
+}
@@ -0,0 +1,138 @@
+package com.lgt.qa.cmdparsers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class FunctionRegistryTest {
+	private static final String CONTENT = "id=1;id=2;id=3";
+	private final FunctionRegistry registry = FunctionRegistry.getInstance();
+
+	@After
+	public void tearDown() {
+		registry.unregister("testTypes");
+		registry.unregister("testList");
+		registry.unregister("testVoid");
+		registry.unregister("testOverload");
+		registry.unregister("testLambda");
+		registry.unregister("testHandle");
+	}
+
+	public static String types(int i, long l, double d, boolean b, char c, Integer boxed) {
+		return i + "|" + l + "|" + d + "|" + b + "|" + c + "|" + boxed;
+	}
+
+	public static List<String> list(String a, String b) {
+		return Arrays.asList(a, b);
+	}
+
+	public static void nothing(String s) {
+	}
+
+	public static String byInt(int n) {
+		return "int:" + n;
+	}
+
+	public static String byString(String s) {
+		return "string:" + s;
+	}
+
+	@Test
+	public void choosesOverloadByArgumentCount() throws Throwable {
+		assertEquals("1", registry.invoke("regex", CONTENT, "id=(\\d)"));
+		assertEquals("2", registry.invoke("regex", CONTENT, "id=(\\d)", "2"));
+		assertEquals("3", registry.invoke("regex", CONTENT, "id=(\\d)", 3));
+	}
+
+	@Test
+	public void unconvertibleStringIsAnArgumentError() throws Throwable {
+		assertFalse(registry.accepts("regex", CONTENT, "id=(\\d)", "abc"));
+		try {
+			registry.invoke("regex", CONTENT, "id=(\\d)", "abc");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("regex does not accept 3 arguments"));
+		}
+	}
+
+	@Test
+	public void failedConversionFallsThroughToNextOverload() throws Throwable {
+		registry.register("testOverload", FunctionRegistryTest.class, "byInt", int.class);
+		registry.register("testOverload", FunctionRegistryTest.class, "byString", String.class);
+		assertEquals("int:7", registry.invoke("testOverload", " 7 "));
+		assertEquals("string:x7", registry.invoke("testOverload", "x7"));
+	}
+
+	@Test
+	public void convertsStringsToDeclaredTypes() throws Throwable {
+		registry.register("testTypes", FunctionRegistryTest.class, "types",
+				int.class, long.class, double.class, boolean.class, char.class, Integer.class);
+		assertEquals("1|2|0.5|true|x|9", registry.invoke("testTypes", "1", " 2", "0.5", "TRUE", "xy", "9"));
+		assertEquals("1|2|0.5|false|x|null", registry.invoke("testTypes", 1, 2L, 0.5, false, 'x', null));
+		assertFalse(registry.accepts("testTypes", "1", "2", "0.5", "yes", "x", "9"));
+		assertFalse(registry.accepts("testTypes", "1", "2", "0.5", "true", "", "9"));
+		assertFalse(registry.accepts("testTypes", null, "2", "0.5", "true", "x", "9"));
+		assertFalse(registry.accepts("testTypes", "1", "2", "0.5", "true", "x"));
+	}
+
+	@Test
+	public void conversionDoesNotModifyCallerArguments() throws Throwable {
+		registry.register("testOverload", FunctionRegistryTest.class, "byInt", int.class);
+		Object[] args = {"5"};
+		assertEquals("int:5", registry.invoke("testOverload", args));
+		assertArrayEquals(new Object[]{"5"}, args);
+	}
+
+	@Test
+	public void returnsAnyType() throws Throwable {
+		registry.register("testList", FunctionRegistryTest.class, "list", String.class, String.class);
+		registry.register("testVoid", FunctionRegistryTest.class, "nothing", String.class);
+		assertEquals(Arrays.asList("a", "b"), registry.invoke("testList", "a", "b"));
+		assertNull(registry.invoke("testVoid", "a"));
+		assertEquals(12, registry.invoke("int", "12"));
+	}
+
+	@Test
+	public void lambdaReceivesRawArguments() throws Throwable {
+		registry.register("testLambda", args -> args.length + ":" + args[args.length - 1]);
+		assertTrue(registry.accepts("testLambda", "a", 1, null));
+		assertEquals("3:x", registry.invoke("testLambda", 1, "abc", "x"));
+	}
+
+	@Test
+	public void boundHandleAndReplacement() throws Throwable {
+		StringBuilder prefix = new StringBuilder("p-");
+		registry.register("testHandle", MethodHandles.lookup().findVirtual(StringBuilder.class, "append",
+				MethodType.methodType(StringBuilder.class, String.class)).bindTo(prefix));
+		assertEquals("p-a", registry.invoke("testHandle", "a").toString());
+		registry.register("testHandle", FunctionRegistryTest.class, "byString", String.class);
+		assertEquals("string:b", registry.invoke("testHandle", "b"));
+	}
+
+	@Test
+	public void loadsProvidersFromServiceLoader() throws Throwable {
+		assertTrue(registry.contains("providedUpper"));
+		assertEquals("ABC", registry.invoke("providedUpper", "abc"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownFunction() throws Throwable {
+		registry.invoke("noSuchFunction");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInstanceMethods() {
+		registry.register("testHandle", String.class, "trim");
+	}
+}
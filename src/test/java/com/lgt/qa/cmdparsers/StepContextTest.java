@@ -0,0 +1,44 @@
+package com.lgt.qa.cmdparsers;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.lgt.qa.okhttp.CookieStore;
+
+public class StepContextTest {
+
+	@Test
+	public void scopeRestoresExistingCookieStore() {
+		CookieStore own = StepContext.getCookieStore();
+		assertSame(own, StepContext.getCookieStore());
+		StepContext.Snapshot snapshot = StepContext.newSnapshot();
+		try (StepContext.Scope scope = snapshot.attach()) {
+			assertSame(snapshot.getCookieStore(), StepContext.getCookieStore());
+		}
+		assertSame(own, StepContext.getCookieStore());
+	}
+
+	@Test
+	public void scopeClearsCookieStoreOnThreadWithoutOne() throws Exception {
+		StepContext.Snapshot snapshot = StepContext.newSnapshot();
+		CookieStore after = CompletableFuture.supplyAsync(() -> {
+			try (StepContext.Scope scope = snapshot.attach()) {
+				assertSame(snapshot.getCookieStore(), StepContext.getCookieStore());
+			}
+			return StepContext.getCookieStore();
+		}, r -> new Thread(r).start()).get(5, TimeUnit.SECONDS);
+		assertNotSame(snapshot.getCookieStore(), after);
+	}
+
+	@Test
+	public void resetCookiesDropsThreadStore() {
+		CookieStore before = StepContext.getCookieStore();
+		StepContext.resetCookies();
+		assertNotSame(before, StepContext.getCookieStore());
+	}
+}
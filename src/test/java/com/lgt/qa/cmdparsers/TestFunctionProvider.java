@@ -0,0 +1,16 @@
+package com.lgt.qa.cmdparsers;
+
+/**
+ * 通过META-INF/services注册的测试函数
+ */
+public class TestFunctionProvider implements FunctionProvider {
+
+	@Override
+	public void register(FunctionRegistry registry) {
+		registry.register("providedUpper", TestFunctionProvider.class, "upper", String.class);
+	}
+
+	public static String upper(String s) {
+		return s.toUpperCase();
+	}
+}
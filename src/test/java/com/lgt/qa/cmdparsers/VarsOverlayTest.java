@@ -0,0 +1,97 @@
+package com.lgt.qa.cmdparsers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class VarsOverlayTest {
+	private Map<String, String> base;
+	private VarsOverlay vars;
+
+	@Before
+	public void setUp() {
+		base = new LinkedHashMap<>();
+		base.put("host", "api.example.com");
+		base.put("port", "8080");
+		vars = new VarsOverlay(base);
+	}
+
+	@Test
+	public void readsBaseVariables() {
+		assertEquals("api.example.com", vars.get("host"));
+		assertTrue(vars.containsKey("port"));
+		assertFalse(vars.containsKey("user"));
+		assertEquals(2, vars.size());
+		assertEquals(base, vars);
+	}
+
+	@Test
+	public void putOverridesWithoutTouchingBase() {
+		assertEquals("8080", vars.put("port", "9090"));
+		assertNull(vars.put("user", "alice"));
+		assertEquals("9090", vars.get("port"));
+		assertEquals("alice", vars.get("user"));
+		assertEquals(3, vars.size());
+		assertEquals("8080", base.get("port"));
+		assertEquals(2, base.size());
+	}
+
+	@Test
+	public void removeHidesBaseKeyAndDropsAddedKey() {
+		vars.put("user", "alice");
+		assertEquals("api.example.com", vars.remove("host"));
+		assertEquals("alice", vars.remove("user"));
+		assertNull(vars.remove("missing"));
+		assertNull(vars.get("host"));
+		assertFalse(vars.containsKey("host"));
+		assertFalse(vars.containsKey("user"));
+		assertEquals(1, vars.size());
+		assertEquals("api.example.com", base.get("host"));
+		assertEquals("api.example.com", new VarsOverlay(base).get("host"));
+	}
+
+	@Test
+	public void putAfterRemoveRestoresKey() {
+		vars.remove("host");
+		assertNull(vars.put("host", "localhost"));
+		assertEquals("localhost", vars.get("host"));
+		assertEquals(2, vars.size());
+	}
+
+	@Test
+	public void clearHidesEverything() {
+		vars.put("user", "alice");
+		vars.clear();
+		assertTrue(vars.isEmpty());
+		assertNull(vars.get("port"));
+		assertFalse(vars.containsKey("user"));
+		vars.put("port", "1");
+		assertEquals(1, vars.size());
+		assertEquals(2, base.size());
+	}
+
+	@Test
+	public void entrySetMergesBaseAndWrites() {
+		vars.put("port", "9090");
+		vars.put("user", "alice");
+		vars.remove("host");
+		Map<String, String> expected = new HashMap<>();
+		expected.put("port", "9090");
+		expected.put("user", "alice");
+		assertEquals(expected, vars);
+		assertEquals(expected.size(), vars.entrySet().size());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void entrySetIsReadOnly() {
+		vars.entrySet().clear();
+	}
+}
@@ -0,0 +1,114 @@
+package com.lgt.qa.feeder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DataFeederTest {
+	private File file;
+
+	@After
+	public void deleteFile() {
+		if(file != null) {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void csvQuotedFieldsWithDelimitersNewlinesAndEscapedQuotes() throws IOException {
+		write(false, "name,comment\n"
+				+ "alice,\"hello, world\"\n"
+				+ "bob,\"line1\nline2\"\n"
+				+ "carol,\"say \"\"hi\"\"\"\n");
+		try (DataFeeder feeder = DataFeeder.csv(file).open()) {
+			assertEquals(3, feeder.getRowCount());
+			assertArrayEquals(new String[]{"name", "comment"}, feeder.getColumns());
+			assertEquals("hello, world", feeder.get(0).get("comment"));
+			assertEquals("line1\nline2", feeder.get(1).get("comment"));
+			assertEquals("say \"hi\"", feeder.get(2).get("comment"));
+		}
+	}
+
+	@Test
+	public void csvBomCrlfAndBlankLines() throws IOException {
+		write(true, "id,name\r\n1,alice\r\n\r\n2,bob\r\n3,carol");
+		try (DataFeeder feeder = DataFeeder.csv(file).open()) {
+			assertArrayEquals(new String[]{"id", "name"}, feeder.getColumns());
+			assertEquals(3, feeder.getRowCount());
+			assertEquals("1", feeder.get(0).get("id"));
+			assertEquals("bob", feeder.get(1).get("name"));
+			assertEquals("carol", feeder.get(2).get("name"));
+		}
+	}
+
+	@Test
+	public void sequentialStopsAndCircularWraps() throws IOException {
+		write(false, "a\n1\n2\n");
+		try (DataFeeder feeder = DataFeeder.csv(file).open()) {
+			assertEquals("1", feeder.next().get("a"));
+			assertEquals("2", feeder.next().get("a"));
+			assertNull(feeder.next());
+		}
+		try (DataFeeder feeder = DataFeeder.csv(file).strategy(DataFeeder.Strategy.CIRCULAR).open()) {
+			feeder.next();
+			feeder.next();
+			assertEquals("1", feeder.next().get("a"));
+		}
+	}
+
+	@Test
+	public void jsonlKeepsOriginalNumberText() throws IOException {
+		write(false, "{\"amount\":10.00,\"big\":1E+2,\"flag\":true,\"name\":\"x\",\"none\":null,\"obj\":{\"p\":1.50},\"arr\": [1, {\"q\":[]}]}\n");
+		try (DataFeeder feeder = DataFeeder.jsonl(file).open()) {
+			Row row = feeder.get(0);
+			assertEquals("10.00", row.get("amount"));
+			assertEquals("1E+2", row.get("big"));
+			assertEquals("true", row.get("flag"));
+			assertEquals("x", row.get("name"));
+			assertNull(row.get("none"));
+			assertEquals("{\"p\":1.50}", row.get("obj"));
+			assertEquals("[1, {\"q\":[]}]", row.get("arr"));
+		}
+	}
+
+	@Test
+	public void manyRowsGrowTheIndexAndCloseDeletesIt() throws IOException {
+		StringBuilder sb = new StringBuilder("n\n");
+		for(int i = 0; i < 5000; i++) {
+			sb.append(i).append('\n');
+		}
+		write(false, sb.toString());
+		int indexFiles = indexFiles();
+		DataFeeder feeder = DataFeeder.csv(file).open();
+		assertEquals(indexFiles + 1, indexFiles());
+		assertEquals(5000, feeder.getRowCount());
+		assertEquals("0", feeder.get(0).get("n"));
+		assertEquals("4999", feeder.get(4999).get("n"));
+		feeder.close();
+		assertEquals(indexFiles, indexFiles());
+	}
+
+	private static int indexFiles() {
+		File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles((dir, name) -> name.startsWith("feeder") && name.endsWith(".idx"));
+		return files == null ? 0 : files.length;
+	}
+
+	private void write(boolean bom, String content) throws IOException {
+		file = File.createTempFile("data-feeder", ".txt");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if(bom) {
+			out.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+		}
+		out.write(content.getBytes(StandardCharsets.UTF_8));
+		Files.write(file.toPath(), out.toByteArray());
+	}
+}
@@ -0,0 +1,40 @@
+package com.lgt.qa.functions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class BoundedCacheTest {
+
+	@Test
+	public void loadsOnceAndReturnsCachedValue() {
+		BoundedCache<String, StringBuilder> cache = new BoundedCache<>(4);
+		AtomicInteger loads = new AtomicInteger();
+		StringBuilder first = cache.get("a", k -> { loads.incrementAndGet(); return new StringBuilder(k); });
+		assertSame(first, cache.get("a", k -> new StringBuilder(k)));
+		assertSame(first, cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void staysWithinMaxSize() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(8);
+		for(int i = 0; i < 100; i++) {
+			assertEquals(Integer.valueOf(i * 2), cache.get(i, k -> k * 2));
+			assertTrue(cache.size() <= 8);
+		}
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNonPositiveSize() {
+		new BoundedCache<String, String>(0);
+	}
+}
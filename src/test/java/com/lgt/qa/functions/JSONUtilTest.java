@@ -0,0 +1,154 @@
+package com.lgt.qa.functions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import okio.Buffer;
+
+public class JSONUtilTest {
+	private static final String ITEMS = "{\"skip\":{\"items\":[9]},\"data\":{\"items\":[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"},{\"id\":3,\"name\":\"c\"}],\"none\":null,\"one\":{\"id\":1}}}";
+
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	private ByteArrayInputStream input(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)) {
+			@Override
+			public void close() throws IOException {
+				closed.set(true);
+				super.close();
+			}
+		};
+	}
+
+	@Test
+	public void iteratesRootAndNestedArrays() {
+		List<Integer> root = new ArrayList<>();
+		JSONUtil.iterate("[1,2,3]".getBytes(StandardCharsets.UTF_8), Integer.class).forEachRemaining(root::add);
+		assertEquals(3, root.size());
+		assertEquals(Integer.valueOf(3), root.get(2));
+
+		JsonArrayIterator<Item> items = JSONUtil.iterate(input(ITEMS), "data.items", Item.class);
+		List<String> names = new ArrayList<>();
+		while(items.hasNext()) {
+			names.add(items.next().name);
+		}
+		assertEquals("[a, b, c]", names.toString());
+		assertEquals(3, items.getCount());
+		assertTrue(closed.get()); // 读完时自动关闭输入
+	}
+
+	@Test
+	public void missingOrNullPathIsEmpty() {
+		assertFalse(JSONUtil.iterate(input(ITEMS), "data.missing", Item.class).hasNext());
+		assertTrue(closed.get());
+		assertFalse(JSONUtil.iterate(ITEMS.getBytes(StandardCharsets.UTF_8), "data.none", Item.class).hasNext());
+	}
+
+	@Test
+	public void nonArrayPathIsRejected() {
+		try {
+			JSONUtil.iterate(input(ITEMS), "data.one", Item.class);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(closed.get());
+		}
+	}
+
+	@Test
+	public void streamClosesInputWhenClosedEarly() {
+		try (Stream<JsonNode> stream = JSONUtil.stream(input(ITEMS), "data.items", JsonNode.class)) {
+			assertEquals(2, stream.limit(2).map(node -> node.get("id").asInt()).collect(Collectors.toList()).get(1).intValue());
+			assertFalse(closed.get());
+		}
+		assertTrue(closed.get());
+	}
+
+	@Test
+	public void streamReadsNestedArray() {
+		try (Stream<Item> stream = JSONUtil.stream(ITEMS.getBytes(StandardCharsets.UTF_8), "data.items", Item.class)) {
+			assertEquals(6, stream.mapToInt(item -> item.id).sum());
+		}
+	}
+
+	@Test
+	public void readersAndWritersAreCachedPerType() {
+		assertSame(JSONUtil.reader(Item.class), JSONUtil.reader(Item.class));
+		assertSame(JSONUtil.writer(new Item()), JSONUtil.writer(new Item()));
+		Type listType = new TypeReference<List<Item>>() {}.getType();
+		assertSame(JSONUtil.reader(listType), JSONUtil.reader(new TypeReference<List<Item>>() {}.getType()));
+		List<Item> items = JSONUtil.unSerialize("[{\"id\":1,\"name\":\"a\"},{\"id\":2}]", listType);
+		assertEquals(2, items.size());
+		assertEquals("a", items.get(0).name);
+		assertEquals(2, items.get(1).id);
+	}
+
+	@Test
+	public void streamRoundTripLeavesStreamOpen() throws IOException {
+		Item item = Item.of(5, "stream");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JSONUtil.serialize(item, out);
+		out.write('!'); // 序列化后流仍然可以写入
+		String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		assertEquals("{\"id\":5,\"name\":\"stream\"}!", json);
+		Item back = JSONUtil.unSerialize(input(json.substring(0, json.length() - 1)), Item.class);
+		assertEquals(5, back.id);
+		assertEquals("stream", back.name);
+	}
+
+	@Test
+	public void directByteBufferRoundTrip() throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+		buffer.put((byte) ' ');
+		int written = JSONUtil.serialize(Item.of(6, "direct"), buffer);
+		assertEquals(buffer.position() - 1, written);
+		buffer.flip();
+		buffer.get();
+		Item back = JSONUtil.unSerialize(buffer, Item.class);
+		assertEquals("direct", back.name);
+		assertEquals(0, buffer.remaining());
+
+		ByteBuffer heap = ByteBuffer.wrap(("xx" + JSONUtil.serialize(Item.of(7, "heap"))).getBytes(StandardCharsets.UTF_8));
+		heap.position(2);
+		assertEquals(7, JSONUtil.unSerialize(heap, Item.class).id);
+		assertEquals(heap.limit(), heap.position());
+	}
+
+	@Test
+	public void serializesIntoOkioSink() throws IOException {
+		Buffer sink = new Buffer();
+		JSONUtil.serialize(Item.of(8, "sink"), sink);
+		assertEquals("{\"id\":8,\"name\":\"sink\"}", sink.readUtf8());
+	}
+
+	public static class Item {
+		public int id;
+		public String name;
+
+		static Item of(int id, String name) {
+			Item item = new Item();
+			item.id = id;
+			item.name = name;
+			return item;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.lgt.qa.functions;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.junit.Test;
+
+/**
+ * JsonDocument只解析一次，提取结果保持数字原文
+ */
+public class JsonDocumentTest {
+	private static final String JSON = "{\"amount\":10.00,\"e\":1E+2,\"o\":{\"a\":10.00,\"s\":\"x\"},\"arr\":[1.50,{\"b\":2.0}]}";
+	private static final JsonPathSet PATHS = JsonPathSet.compile("amount", "e", "o", "o.a", "o.s.z", "arr[1].b");
+	private static final String[] EXPECTED = {"10.00", "1E+2", "{\"a\":10.00,\"s\":\"x\"}", "10.00", null, "2.0"};
+
+	@Test
+	public void keepsNumberTextBeforeAndAfterTreeIsBuilt() {
+		JsonDocument document = JsonDocument.of(JSON.getBytes(StandardCharsets.UTF_8));
+		assertEquals("10.00", document.extract("amount"));
+		assertArrayEquals(EXPECTED, document.extract(PATHS));
+		document.getRoot();
+		assertEquals("10.00", document.extract("amount"));
+		assertEquals("1E+2", document.extract("e"));
+		assertArrayEquals(EXPECTED, document.extract(PATHS));
+	}
+
+	@Test
+	public void agreesWithStringExtraction() {
+		assertEquals("[1.50,{\"b\":2.0}]", ExtractUtils.jsonExtract(JSON, "arr"));
+		assertEquals(ExtractUtils.jsonExtract(JSON, "arr"), JsonDocument.of(JSON).extract("arr"));
+	}
+
+	@Test
+	public void parsesOnceAndSharesTheTree() {
+		JsonDocument document = JsonDocument.of(JSON.getBytes(StandardCharsets.UTF_8));
+		assertFalse(document.isParsed());
+		assertEquals("1E+2", document.extract("e"));
+		assertTrue(document.isParsed());
+		JsonNode root = document.getRoot();
+		document.extract(PATHS);
+		assertSame(root, document.getRoot());
+		assertEquals(JSON, root.toString());
+		assertEquals(100, root.get("e").intValue());
+		assertEquals(10.0, root.get("amount").doubleValue(), 0);
+	}
+
+	@Test
+	public void readOnlyBufferIsNotCopied() {
+		ByteBuffer buffer = ByteBuffer.wrap(("  " + JSON).getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+		buffer.position(2);
+		JsonDocument document = JsonDocument.of(buffer, null);
+		assertArrayEquals(EXPECTED, document.extract(PATHS));
+		assertEquals(JSON, document.text());
+		assertEquals(2, buffer.position());
+	}
+
+	@Test
+	public void bindsObjectsFromTheSameTree() {
+		JsonDocument document = JsonDocument.of("{\"id\":7,\"big\":12345678901,\"price\":1e2,\"tags\":[\"a\"]}");
+		Map<String, Object> map = JSONUtil.unSerialize(document, new TypeReference<Map<String, Object>>() {}.getType());
+		assertEquals(7, map.get("id"));
+		assertEquals(12345678901L, map.get("big"));
+		assertEquals(100.0, map.get("price"));
+		assertEquals("1e2", document.extract("price"));
+		assertEquals("a", document.extract("tags[0]"));
+	}
+
+	@Test
+	public void invalidJsonExtractsNull() {
+		JsonDocument document = JsonDocument.of("{oops");
+		assertNull(document.extract("a"));
+		assertArrayEquals(new String[PATHS.size()], document.extract(PATHS));
+	}
+}
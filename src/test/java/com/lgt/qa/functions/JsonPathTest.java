@@ -0,0 +1,86 @@
+package com.lgt.qa.functions;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class JsonPathTest {
+	private static final String JSON = "{\"code\":0,\"skip\":{\"deep\":[1,2,{\"x\":[]}]},"
+			+ "\"data\":{\"items\":[{\"id\":7,\"name\":\"a\"},{\"id\":8,\"name\":\"b\",\"tags\":[\"t1\",\"t2\"]}],"
+			+ "\"ok\":true,\"none\":null,\"matrix\":[[1,2],[3,4]]}}";
+
+	@Test
+	public void extractsScalarsFieldsAndIndexes() {
+		assertEquals("0", JsonPath.compile("code").extract(JSON));
+		assertEquals("8", JsonPath.compile("data.items[1].id").extract(JSON));
+		assertEquals("t2", JsonPath.compile("data.items[1].tags[1]").extract(JSON));
+		assertEquals("true", JsonPath.compile("data.ok").extract(JSON));
+		assertEquals("4", JsonPath.compile("data.matrix[1][1]").extract(JSON));
+	}
+
+	@Test
+	public void extractsStructuresAsJsonText() {
+		assertEquals("{\"id\":7,\"name\":\"a\"}", JsonPath.compile("data.items[0]").extract(JSON));
+		assertEquals("[3,4]", JsonPath.compile("data.matrix[1]").extract(JSON));
+	}
+
+	@Test
+	public void missingAndNullValuesAreNull() {
+		assertNull(JsonPath.compile("data.none").extract(JSON));
+		assertNull(JsonPath.compile("data.missing").extract(JSON));
+		assertNull(JsonPath.compile("data.items[5].id").extract(JSON));
+		assertNull(JsonPath.compile("code.id").extract(JSON));
+		assertNull(JsonPath.compile("data.items.id").extract(JSON));
+	}
+
+	@Test
+	public void rootArray() {
+		assertEquals("b", JsonPath.compile("[1].name").extract("[{\"name\":\"a\"},{\"name\":\"b\"}]"));
+	}
+
+	@Test
+	public void streamingAndTreeExtractionAgree() {
+		String[] paths = {"code", "data.items[1].name", "data.items[0]", "data.none", "data.missing", "data.matrix"};
+		for(String path : paths) {
+			JsonPath compiled = JsonPath.compile(path);
+			assertEquals(path, compiled.extract(JSON), compiled.extract(JSONUtil.unSerialize(JSON)));
+			assertEquals(path, compiled.extract(JSON), compiled.extract(JSON.getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+
+	@Test
+	public void compiledPathsAreCached() {
+		assertSame(JsonPath.compile("data.items[0].id"), JsonPath.compile("data.items[0].id"));
+		assertEquals(4, JsonPath.compile("data.items[0].id").depth());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnclosedBracket() {
+		JsonPath.compile("data.items[0");
+	}
+
+	@Test
+	public void pathSetExtractsAllTargetsInOnePass() {
+		JsonPathSet set = JsonPathSet.compile("data.items[1].name", "code", "data.items[1]", "data.items[1].tags[0]", "data.missing", "code");
+		String[] expected = {"b", "0", "{\"id\":8,\"name\":\"b\",\"tags\":[\"t1\",\"t2\"]}", "t1", null, "0"};
+		assertArrayEquals(expected, set.extract(JSON));
+		assertArrayEquals(expected, set.extract(JSON.getBytes(StandardCharsets.UTF_8)));
+		assertArrayEquals(expected, set.extract(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8))));
+		assertArrayEquals(expected, set.extract(JSONUtil.unSerialize(JSON)));
+	}
+
+	@Test
+	public void pathSetAgreesWithSinglePaths() {
+		String[] paths = {"skip.deep[2].x", "skip", "skip.deep[2]", "data.matrix[0][1]", "data.ok"};
+		String[] values = JsonPathSet.compile(paths).extract(JSON);
+		for(int i = 0; i < paths.length; i++) {
+			assertEquals(paths[i], JsonPath.compile(paths[i]).extract(JSON), values[i]);
+		}
+	}
+}
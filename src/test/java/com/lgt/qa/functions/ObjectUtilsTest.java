@@ -0,0 +1,185 @@
+package com.lgt.qa.functions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+public class ObjectUtilsTest {
+
+	@Test
+	public void roundTripsLargeObjects() {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 5000; i++) {
+			sb.append((char) ('a' + i % 26));
+		}
+		Map<String, Object> map = new HashMap<>();
+		map.put("text", sb.toString());
+		map.put("numbers", new ArrayList<>(Arrays.asList(1, 2L, 3.5)));
+		byte[] bytes = ObjectUtils.ObjectToByte(map);
+		assertTrue(bytes.length > 5000);
+		assertEquals(map, ObjectUtils.ByteToObject(bytes));
+	}
+
+	@Test
+	public void readsFromArraySlice() {
+		byte[] bytes = ObjectUtils.ObjectToByte("slice");
+		byte[] padded = new byte[bytes.length + 7];
+		System.arraycopy(bytes, 0, padded, 3, bytes.length);
+		assertEquals("slice", ObjectUtils.ByteToObject(padded, 3, bytes.length));
+	}
+
+	@Test
+	public void pooledInstancesAreSafeAcrossThreads() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for(int t = 0; t < 8; t++) {
+				final int id = t;
+				futures.add(pool.submit(() -> {
+					for(int i = 0; i < 500; i++) {
+						List<String> value = new ArrayList<>();
+						for(int j = 0; j <= (i + id) % 20; j++) {
+							value.add(id + "-" + i + "-" + j);
+						}
+						if(!value.equals(ObjectUtils.ByteToObject(ObjectUtils.ObjectToByte(value)))) {
+							return false;
+						}
+					}
+					return true;
+				}));
+			}
+			for(Future<Boolean> future : futures) {
+				assertTrue(future.get(30, TimeUnit.SECONDS));
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void registeredClassesEncodeShorter() {
+		ObjectUtils.register(Point.class);
+		Point point = new Point(3, 4);
+		byte[] bytes = ObjectUtils.ObjectToByte(point);
+		assertTrue(bytes.length < ObjectUtils.ObjectToByte(new Unregistered(3, 4)).length);
+		for(int i = 0; i < 20; i++) { // 池中的每个实例都能读取
+			assertEquals(point, ObjectUtils.ByteToObject(bytes));
+		}
+	}
+
+	/**
+	 * 先以类名编码过的类在注册后，池中的新旧实例必须使用相同的编号。
+	 * 通过嵌套编码同时持有多个实例：旧实例都已按类名写过Late，最内层的实例是注册后新建的
+	 */
+	@Test
+	public void registrationAfterUseIsConsistentAcrossPool() {
+		int max = Integer.getInteger("objectutils.kryo.pool", Runtime.getRuntime().availableProcessors() * 2);
+		ObjectUtils.ObjectToByte(new Nest(max + 5, "x")); // 填满实例池
+		Late late = new Late();
+		late.value = "late";
+		for(int i = 0; i < max; i++) { // 池中所有实例都按类名写过Late
+			assertEquals(late, ObjectUtils.ByteToObject(ObjectUtils.ObjectToByte(late)));
+		}
+		ObjectUtils.register(Late.class);
+		ObjectUtils.ObjectToByte(new Nest(max - 1, late)); // 最内层是新建的实例
+		byte[] bytes = Nest.leafBytes;
+		for(int i = 0; i <= max; i++) { // 轮流在池中的每个实例上读取
+			assertEquals(late, ObjectUtils.ByteToObject(bytes));
+			assertEquals(late, ObjectUtils.ByteToObject(ObjectUtils.ObjectToByte(late)));
+		}
+	}
+
+	public static class Late {
+		String value;
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Late && ((Late) o).value.equals(value);
+		}
+
+		@Override
+		public int hashCode() {
+			return value.hashCode();
+		}
+	}
+
+	/**
+	 * 编码时在嵌套调用中借用下一个实例，depth为0时用第depth+2个实例编码leaf
+	 */
+	public static class Nest implements KryoSerializable {
+		static byte[] leafBytes;
+		int depth;
+		Object leaf;
+
+		public Nest() {
+		}
+
+		Nest(int depth, Object leaf) {
+			this.depth = depth;
+			this.leaf = leaf;
+		}
+
+		@Override
+		public void write(Kryo kryo, Output output) {
+			if(depth > 0) {
+				output.writeInt(ObjectUtils.ObjectToByte(new Nest(depth - 1, leaf)).length);
+			}else {
+				leafBytes = ObjectUtils.ObjectToByte(leaf);
+				output.writeInt(leafBytes.length);
+			}
+		}
+
+		@Override
+		public void read(Kryo kryo, Input input) {
+			depth = input.readInt();
+		}
+	}
+
+	public static class Point {
+		int x;
+		int y;
+
+		public Point() {
+		}
+
+		Point(int x, int y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Point && ((Point) o).x == x && ((Point) o).y == y;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * x + y;
+		}
+	}
+
+	public static class Unregistered extends Point {
+		public Unregistered() {
+		}
+
+		Unregistered(int x, int y) {
+			super(x, y);
+		}
+	}
+}
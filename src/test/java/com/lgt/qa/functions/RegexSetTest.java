@@ -0,0 +1,63 @@
+package com.lgt.qa.functions;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RegexSetTest {
+	private static final String CONTENT = "{\"token\":\"abc123\",\"userId\":42,\"name\":\"alice\",\"empty\":\"\"}";
+
+	@Test
+	public void extractsFirstGroupOrWholeMatch() {
+		RegexSet set = RegexSet.compile("\"token\":\"(\\w+)\"", "userId\":\\d+", "\"missing\":\"(.*?)\"");
+		assertEquals(3, set.size());
+		assertArrayEquals(new String[]{"abc123", "userId\":42", ""}, set.extract(CONTENT));
+	}
+
+	@Test
+	public void emptyMatchAndNoMatchExtractEmptyString() {
+		RegexSet set = RegexSet.compile("\"empty\":\"(.*?)\"", "\"missing\":\"(.*?)\"", "x*");
+		assertArrayEquals(new String[]{"", "", ""}, set.extract(CONTENT));
+	}
+
+	@Test
+	public void findDistinguishesEmptyMatchFromNoMatch() {
+		RegexSet set = RegexSet.compile("\"empty\":\"(.*?)\"", "\"missing\":\"(.*?)\"", "x*");
+		boolean[] found = set.find(CONTENT);
+		assertTrue(found[0]);
+		assertFalse(found[1]);
+		assertTrue(found[2]);
+	}
+
+	@Test
+	public void agreesWithSingleRegexExtract() {
+		String[] regexes = {"\"(\\w+)\":\\d", "a(l)ice", "\\d+", "\"name\":\"(\\w+)\"", "(?<=\")\\w{3}", "^\\{", "\\}$", "nomatch(.)"};
+		String[] values = RegexSet.compile(regexes).extract(CONTENT);
+		for(int i = 0; i < regexes.length; i++) {
+			assertEquals(regexes[i], ExtractUtils.regexExtract(CONTENT, regexes[i]), values[i]);
+		}
+	}
+
+	@Test
+	public void overlappingMatchesAtTheSamePosition() {
+		String[] regexes = {"ab", "abc(\\d)", "a", "b(c)"};
+		assertArrayEquals(new String[]{"ab", "1", "a", "c"}, RegexSet.compile(regexes).extract(CONTENT));
+	}
+
+	@Test
+	public void backReferencesFallBackToSinglePatterns() {
+		String content = "<b>bold</b><i>x</b>";
+		String[] regexes = {"<(\\w)>[^<]*</\\1>", "<(?<tag>\\w)>x</\\k<tag>>", "</(\\w)>"};
+		assertArrayEquals(new String[]{"b", "", "b"}, RegexSet.compile(regexes).extract(content));
+		assertArrayEquals(new String[]{"b", "", "b"}, ExtractUtils.regexExtractEach(content, regexes));
+	}
+
+	@Test
+	public void compiledSetsAreCached() {
+		assertSame(RegexSet.compile("a", "b"), RegexSet.compile("a", "b"));
+	}
+}
@@ -0,0 +1,118 @@
+package com.lgt.qa.functions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SerializableUtilTest {
+
+	@Test
+	public void byteArrayRoundTrip() {
+		Record record = Record.of(1, "a");
+		assertEquals(record, SerializableUtil.unSerialize(SerializableUtil.serialize(record), Record.class));
+	}
+
+	@Test
+	public void heapAndDirectBuffersHoldSequences() {
+		for(ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(4096), ByteBuffer.allocateDirect(4096)}) {
+			buffer.position(5); // 从当前位置开始写
+			int total = 0;
+			for(int i = 0; i < 10; i++) {
+				total += SerializableUtil.serialize(Record.of(i, "r" + i), buffer);
+			}
+			assertEquals(5 + total, buffer.position());
+			buffer.flip();
+			buffer.position(5);
+			for(int i = 0; i < 10; i++) {
+				assertEquals(Record.of(i, "r" + i), SerializableUtil.unSerialize(buffer, Record.class));
+			}
+			assertEquals(0, buffer.remaining());
+		}
+	}
+
+	@Test
+	public void readOnlyBufferIsReadInPlace() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+		SerializableUtil.serialize(Record.of(1, "x"), buffer);
+		SerializableUtil.serialize(Record.of(2, "y"), buffer);
+		buffer.flip();
+		ByteBuffer readOnly = buffer.asReadOnlyBuffer();
+		assertEquals(Record.of(1, "x"), SerializableUtil.unSerialize(readOnly, Record.class));
+		assertEquals(Record.of(2, "y"), SerializableUtil.unSerialize(readOnly, Record.class));
+		assertEquals(0, readOnly.remaining());
+	}
+
+	@Test
+	public void streamRoundTripOfLargeObject() {
+		Record big = Record.of(7, repeat('z', 200 * 1024));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long written = SerializableUtil.serialize(big, out);
+		assertEquals(out.size(), written);
+		assertTrue(written > 100 * 1024);
+		assertEquals(big, SerializableUtil.unSerialize(new ByteArrayInputStream(out.toByteArray()), Record.class));
+		assertEquals(big, SerializableUtil.unSerialize(SerializableUtil.serialize(big), Record.class));
+	}
+
+	@Test
+	public void fileChannelHoldsSequences() throws IOException {
+		File file = File.createTempFile("serializable", ".bin");
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			FileChannel channel = raf.getChannel();
+			List<Record> records = new ArrayList<>();
+			for(int i = 0; i < 50; i++) {
+				Record record = Record.of(i, repeat('f', i * 10));
+				records.add(record);
+				SerializableUtil.serialize(record, channel);
+			}
+			assertEquals(channel.size(), channel.position());
+			channel.position(0);
+			for(Record record : records) {
+				assertEquals(record, SerializableUtil.unSerialize(channel, Record.class));
+			}
+			assertEquals(channel.size(), channel.position());
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static String repeat(char c, int n) {
+		StringBuilder sb = new StringBuilder(n);
+		for(int i = 0; i < n; i++) {
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	public static class Record {
+		public int id;
+		public String name;
+
+		static Record of(int id, String name) {
+			Record record = new Record();
+			record.id = id;
+			record.name = name;
+			return record;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Record && ((Record) o).id == id && ((Record) o).name.equals(name);
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.lgt.qa.okhttp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSource;
+
+public class CassetteTest {
+	private TestServer server;
+	private File file;
+	private String big;
+
+	@Before
+	public void setUp() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; sb.length() < 300 * 1024; i++) {
+			sb.append("line ").append(i).append('\n');
+		}
+		big = sb.toString();
+		server = new TestServer()
+				.respond("/small", 200, "text/plain", "hello")
+				.respond("/big", 200, "text/plain", big);
+		file = File.createTempFile("cassette", ".bin");
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+		file.delete();
+		new File(file.getPath() + ".idx").delete();
+	}
+
+	private static OkHttpClient client(Cassette cassette) {
+		return new OkHttpClient.Builder().addInterceptor(cassette.interceptor(null)).build();
+	}
+
+	private static Response get(OkHttpClient client, String url) throws IOException {
+		return client.newCall(new Request.Builder().url(url).build()).execute();
+	}
+
+	@Test
+	public void recordsStreamedBodiesAndReplaysThem() throws IOException {
+		try (Cassette cassette = Cassette.record(file)) {
+			OkHttpClient client = client(cassette);
+			try (Response response = get(client, server.url("/small"))) {
+				assertEquals("hello", response.body().string());
+			}
+			try (Response response = get(client, server.url("/big"))) {
+				BufferedSource source = response.body().source();
+				Buffer read = new Buffer();
+				while(source.read(read, 1000) != -1) {
+					// 小块读取
+				}
+				assertEquals(big, read.readUtf8());
+			}
+			assertEquals(2, cassette.size());
+		}
+		try (Cassette cassette = Cassette.replay(file)) {
+			OkHttpClient client = client(cassette);
+			try (Response response = get(client, server.url("/big"))) {
+				assertEquals(big, response.body().string());
+			}
+			try (Response response = get(client, server.url("/small"))) {
+				assertEquals(200, response.code());
+				assertEquals("text/plain", response.header("Content-Type"));
+				assertEquals("hello", response.body().string());
+			}
+		}
+	}
+
+	@Test
+	public void earlyCloseRecordsWholeBody() throws IOException {
+		try (Cassette cassette = Cassette.record(file)) {
+			try (Response response = get(client(cassette), server.url("/big"))) {
+				assertEquals("line 0", response.body().source().readUtf8Line());
+			}
+			assertEquals(1, cassette.size());
+		}
+		try (Cassette cassette = Cassette.replay(file);
+				Response response = get(client(cassette), server.url("/big"))) {
+			assertEquals(big, response.body().string());
+		}
+	}
+
+	@Test
+	public void bodyPolicyStillApplies() throws IOException {
+		try (Cassette cassette = Cassette.record(file)) {
+			EasyRequest req = new EasyRequest(server.url("/big"));
+			req.setMethod("get");
+			req.setCassette(cassette);
+			req.setBodyPolicy(ResponseBodyPolicy.discard());
+			req.executeRequest();
+			assertNull(req.getCapturedBody().bytes());
+			assertEquals(big.length(), req.getCapturedBody().getSize());
+			assertEquals(1, cassette.size());
+		}
+		try (Cassette cassette = Cassette.replay(file);
+				Response response = get(client(cassette), server.url("/big"))) {
+			assertEquals(big, response.body().string());
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.lgt.qa.okhttp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.lgt.qa.cmdparsers.StepContext;
+
+import okhttp3.Cookie;
+import okhttp3.HttpUrl;
+
+public class CookieStoreTest {
+	private static final HttpUrl URL = HttpUrl.parse("http://api.example.com/orders/1");
+
+	@Test
+	public void matchesDomainAndPathLongestPathFirst() {
+		CookieStore store = new CookieStore();
+		store.saveFromResponse(URL, Arrays.asList(
+				Cookie.parse(URL, "root=1; Domain=example.com; Path=/"),
+				Cookie.parse(URL, "orders=2; Path=/orders"),
+				Cookie.parse(URL, "other=3; Path=/users")));
+		List<Cookie> cookies = store.loadForRequest(URL);
+		assertEquals(2, cookies.size());
+		assertEquals("orders", cookies.get(0).name());
+		assertEquals("root", cookies.get(1).name());
+		assertEquals(1, store.loadForRequest(HttpUrl.parse("http://www.example.com/")).size());
+		assertTrue(store.loadForRequest(HttpUrl.parse("http://example.org/orders")).isEmpty());
+	}
+
+	@Test
+	public void replacesCookieWithSameNameDomainAndPath() {
+		CookieStore store = new CookieStore();
+		store.add(Cookie.parse(URL, "token=a; Path=/"));
+		store.add(Cookie.parse(URL, "token=b; Path=/"));
+		store.add(Cookie.parse(URL, "token=c; Path=/orders"));
+		assertEquals(2, store.size());
+		assertEquals("c", store.getCookie("api.example.com", "token").value());
+	}
+
+	@Test
+	public void removesEmptyDomainWhenLastCookieIsDeleted() {
+		CookieStore store = new CookieStore();
+		store.saveFromResponse(URL, Collections.singletonList(Cookie.parse(URL, "token=a")));
+		assertEquals(1, store.domainCount());
+		store.saveFromResponse(URL, Collections.singletonList(Cookie.parse(URL, "token=; Max-Age=0")));
+		assertEquals(0, store.size());
+		assertEquals(0, store.domainCount());
+		assertNull(store.getCookie("api.example.com", "token"));
+	}
+
+	@Test
+	public void evictsExpiredCookiesAndTheirDomains() throws InterruptedException {
+		CookieStore store = new CookieStore();
+		store.add(new Cookie.Builder().name("short").value("1").domain("example.com")
+				.expiresAt(System.currentTimeMillis() + 1).build());
+		Thread.sleep(5);
+		store.evictExpired();
+		assertEquals(0, store.size());
+		assertEquals(0, store.domainCount());
+	}
+
+	@Test
+	public void resetCookiesGivesTheThreadAFreshStore() {
+		CookieStore before = StepContext.getCookieStore();
+		before.add(Cookie.parse(URL, "token=a"));
+		StepContext.resetCookies();
+		CookieStore after = StepContext.getCookieStore();
+		assertNotSame(before, after);
+		assertEquals(0, after.size());
+		assertEquals(1, before.size());
+		StepContext.resetCookies();
+		assertSame(StepContext.getCookieStore(), StepContext.getCookieStore());
+	}
+}
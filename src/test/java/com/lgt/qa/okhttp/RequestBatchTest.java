@@ -0,0 +1,114 @@
+package com.lgt.qa.okhttp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestBatchTest {
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private TestServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new TestServer().handle("/items", exchange -> {
+			int now = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(now, Math::max);
+			int id = Integer.parseInt(exchange.getRequestURI().getQuery().substring("id=".length()));
+			try {
+				Thread.sleep(Math.max(0, 10 - id) * 15L); // 靠前的请求更慢，完成顺序与输入顺序相反
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				inFlight.decrementAndGet();
+			}
+			TestServer.send(exchange, id == 4 ? 404 : 200, "text/plain", "item " + id);
+		});
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	private EasyRequest item(int id) {
+		EasyRequest req = new EasyRequest(server.url("/items"), "id=" + id);
+		req.setMethod("get");
+		return req;
+	}
+
+	@Test
+	public void resultsKeepInputOrder() {
+		List<Integer> ids = new ArrayList<>();
+		for(int i = 0; i < 10; i++) {
+			ids.add(i);
+		}
+		RequestBatch.Result result = RequestBatch.of(ids, this::item).concurrency(5).execute();
+		assertEquals(10, result.size());
+		for(int i = 0; i < 10; i++) {
+			RequestBatch.Item item = result.get(i);
+			assertEquals(i, item.getIndex());
+			assertTrue(item.isSuccess());
+			assertEquals("item " + i, item.getRequest().getRespnseBody());
+		}
+		assertEquals(404, result.get(4).getCode()); // 拿到应答即为成功，不判断状态码
+		assertTrue(result.isAllSuccess());
+	}
+
+	@Test
+	public void respectsConcurrencyLimit() {
+		EasyRequest[] requests = new EasyRequest[12];
+		for(int i = 0; i < requests.length; i++) {
+			requests[i] = item(i % 3);
+		}
+		RequestBatch.Result result = RequestBatch.of(requests).concurrency(3).execute();
+		assertTrue(result.isAllSuccess());
+		assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() <= 3);
+		assertTrue(maxInFlight.get() >= 2);
+	}
+
+	@Test
+	public void failuresAreRecordedPerItem() throws IOException {
+		int closedPort;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			closedPort = socket.getLocalPort();
+		}
+		final int port = closedPort;
+		RequestBatch.Result result = RequestBatch.of(Arrays.asList(1, 2, 3, 4), id -> {
+			if(id == 2) {
+				throw new IllegalStateException("no template for " + id);
+			}
+			if(id == 3) {
+				EasyRequest req = new EasyRequest("http://127.0.0.1:" + port + "/closed");
+				req.setMethod("get");
+				return req;
+			}
+			return item(id);
+		}).concurrency(2).execute();
+		assertFalse(result.isAllSuccess());
+		assertEquals(2, result.getFailures().size());
+		assertNull(result.get(1).getRequest());
+		assertTrue(result.get(1).getError() instanceof IllegalStateException);
+		assertTrue(result.get(2).getError() instanceof IOException);
+		assertEquals(-1, result.get(2).getCode());
+		assertEquals("item 1", result.get(0).getRequest().getRespnseBody());
+		assertEquals(404, result.get(3).getCode());
+	}
+
+	@Test
+	public void emptyBatchCompletes() {
+		assertEquals(0, RequestBatch.of(new ArrayList<EasyRequest>()).execute().size());
+	}
+}
@@ -0,0 +1,90 @@
+package com.lgt.qa.okhttp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSource;
+import okio.Okio;
+import okio.Sink;
+
+public class RequestBodiesTest {
+
+	@Test
+	public void gzipRoundTrip() throws IOException {
+		RequestBody body = RequestBodies.gzip(RequestBody.create(RequestBodies.contentType("json"), "{\"a\":1}"));
+		assertEquals(-1, body.contentLength());
+		assertTrue(RequestBodies.isGzip(body));
+		Buffer buffer = new Buffer();
+		BufferedSink sink = Okio.buffer((Sink) buffer);
+		body.writeTo(sink);
+		sink.flush();
+		assertEquals("{\"a\":1}", gunzip(buffer));
+		sink.writeUtf8("after").flush(); // 压缩完成后外层的sink仍然可以写入
+		assertEquals("after", buffer.readUtf8());
+	}
+
+	@Test
+	public void multipartWithGzipAndFileParts() throws IOException {
+		File file = File.createTempFile("request-bodies", ".txt");
+		try {
+			Files.write(file.toPath(), "file content".getBytes(StandardCharsets.UTF_8));
+			MultipartBody body = RequestBodies.multipart()
+					.field("name", "value")
+					.file("upload", file, "plain")
+					.part("zipped", "data.gz", RequestBodies.gzip(RequestBody.create(RequestBodies.contentType("plain"), "zipped content")))
+					.build();
+			Buffer buffer = new Buffer();
+			BufferedSink sink = Okio.buffer((Sink) buffer);
+			body.writeTo(sink);
+			sink.flush();
+			String written = buffer.readString(StandardCharsets.ISO_8859_1);
+			assertTrue(written.contains("value"));
+			assertTrue(written.contains("file content"));
+			assertTrue(written.endsWith("--" + body.boundary() + "--\r\n"));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void streamingBodiesAreDetected() throws IOException {
+		File file = File.createTempFile("request-bodies", ".txt");
+		try {
+			assertTrue(RequestBodies.isStreaming(RequestBodies.file(file, null)));
+			assertTrue(RequestBodies.isStreaming(RequestBodies.stream(new ByteArrayInputStream(new byte[3]), 3, null)));
+			assertTrue(RequestBodies.isStreaming(RequestBodies.multipart().field("a", "b").file("f", file, null).build()));
+			assertFalse(RequestBodies.isStreaming(RequestBodies.multipart().field("a", "b").build()));
+			assertFalse(RequestBodies.isStreaming(RequestBody.create(RequestBodies.contentType("json"), "{}")));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void inputStreamBodyIsOneShot() throws IOException {
+		RequestBody body = RequestBodies.stream(new ByteArrayInputStream(new byte[3]), 3, null);
+		body.writeTo(new Buffer());
+		body.writeTo(new Buffer());
+	}
+
+	private static String gunzip(Buffer compressed) throws IOException {
+		Buffer out = new Buffer();
+		GzipSource source = new GzipSource(compressed);
+		while(source.read(out, 8192) != -1) {
+		}
+		return out.readUtf8();
+	}
+}
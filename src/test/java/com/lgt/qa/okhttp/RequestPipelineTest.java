@@ -0,0 +1,95 @@
+package com.lgt.qa.okhttp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lgt.qa.cmdparsers.CommandParser;
+import com.lgt.qa.cmdparsers.StepContext;
+
+public class RequestPipelineTest {
+	private TestServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new TestServer()
+				.handle("/slow", exchange -> {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					TestServer.send(exchange, 200, "application/json", "{\"name\":\"slow\"}");
+				})
+				.respond("/login", 200, "application/json", "{\"token\":\"t-42\"}")
+				.handle("/orders", exchange -> TestServer.send(exchange, 200, "text/plain",
+						"auth=" + exchange.getRequestHeaders().getFirst("Authorization")));
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void executeAsyncRestoresCallerContext() throws Exception {
+		StepContext.setVar("caller", "main");
+		EasyRequest req = new EasyRequest(server.url("/slow"));
+		req.setMethod("get");
+		Thread caller = Thread.currentThread();
+		CompletableFuture<String> seen = req.executeAsync().thenApply(done -> {
+			assertNotSame(caller, Thread.currentThread());
+			assertSame(req, done);
+			assertSame(req, new StepContext().getEasyRequest());
+			return StepContext.getVar("env") + "/" + StepContext.getVar("caller") + "/" + new CommandParser(new StepContext()).parserArg("${response.body.json(name)}");
+		});
+		assertEquals("test/main/slow", seen.get(5, TimeUnit.SECONDS));
+		assertEquals(200, req.getResponse().code());
+	}
+
+	@Test
+	public void executeAsyncFailsWithIOException() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		EasyRequest req = new EasyRequest("http://127.0.0.1:" + port + "/closed");
+		req.setMethod("get");
+		try {
+			req.executeAsync().get(5, TimeUnit.SECONDS);
+			fail("expected failure");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+	}
+
+	@Test
+	public void pipelineCarriesVariablesBetweenSteps() throws Exception {
+		EasyRequest login = new EasyRequest(server.url("/login"));
+		login.setMethod("get");
+		String body = RequestPipeline.start(login)
+				.then(req -> StepContext.setVar("token",
+						String.valueOf(new CommandParser(new StepContext()).parserArg("${response.body.json(token)}"))))
+				.thenRequest(prev -> {
+					EasyRequest orders = new EasyRequest(server.url("/orders"));
+					orders.setMethod("get");
+					orders.setHeaders("Authorization", "Bearer " + StepContext.getVar("token"));
+					return orders;
+				})
+				.thenReturn(EasyRequest::getRespnseBody)
+				.get(5, TimeUnit.SECONDS);
+		assertEquals("auth=Bearer t-42", body);
+	}
+}
@@ -0,0 +1,111 @@
+package com.lgt.qa.okhttp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lgt.qa.cmdparsers.CommandParser;
+import com.lgt.qa.cmdparsers.StepContext;
+
+import okhttp3.Request;
+import okio.Buffer;
+
+public class RequestTemplateTest {
+	private CommandParser parser;
+
+	@Before
+	public void setUp() {
+		StepContext.setVar("base", "http://127.0.0.1:8080");
+		StepContext.setVar("token", "t-1");
+		StepContext.setVar("sku", "A-1");
+		parser = new CommandParser(new StepContext());
+	}
+
+	private static String body(Request request) throws IOException {
+		Buffer buffer = new Buffer();
+		request.body().writeTo(buffer);
+		return buffer.readUtf8();
+	}
+
+	@Test
+	public void staticPartsAreBuiltOnceAndReused() throws IOException {
+		RequestTemplate template = RequestTemplate.builder("post", "http://127.0.0.1:8080/orders")
+				.query("page=1")
+				.header("X-Static", "s")
+				.body("json", "{\"sku\":\"B-2\"}")
+				.build();
+		assertTrue(template.isStatic());
+		Request first = template.render(parser);
+		Request second = template.render(parser);
+		assertSame(first.url(), second.url());
+		assertSame(first.body(), second.body());
+		assertEquals("POST", first.method());
+		assertEquals("http://127.0.0.1:8080/orders?page=1", first.url().toString());
+		assertEquals("s", second.header("X-Static"));
+		assertEquals("{\"sku\":\"B-2\"}", body(second));
+	}
+
+	@Test
+	public void dynamicHeadersAndBodyAreRendered() throws IOException {
+		RequestTemplate template = RequestTemplate.builder("put", "${base}/orders")
+				.header("X-Static", "s")
+				.header("Authorization", "Bearer ${token}")
+				.body("json", "{\"sku\":\"${sku}\",\"count\":1}")
+				.build();
+		assertFalse(template.isStatic());
+		Request request = template.render(parser);
+		assertEquals("http://127.0.0.1:8080/orders", request.url().toString());
+		assertEquals("s", request.header("X-Static"));
+		assertEquals("Bearer t-1", request.header("Authorization"));
+		assertEquals("{\"sku\":\"A-1\",\"count\":1}", body(request));
+		assertTrue(request.body().contentType().toString().startsWith("application/json"));
+		StepContext.setVar("sku", "C-3");
+		assertEquals("{\"sku\":\"C-3\",\"count\":1}", body(template.render(parser)));
+	}
+
+	@Test
+	public void formValuesAreRendered() throws IOException {
+		Map<String, String> form = new LinkedHashMap<>();
+		form.put("sku", "${sku}");
+		form.put("count", "1");
+		Request request = RequestTemplate.builder("post", "${base}/form").form(form).build().render(parser);
+		assertEquals("sku=A-1&count=1", body(request));
+	}
+
+	@Test
+	public void requestsWithoutBody() {
+		Request get = RequestTemplate.builder("get", "${base}/orders").build().render(parser);
+		assertEquals("GET", get.method());
+		assertNull(get.body());
+		assertNull(RequestTemplate.builder("delete", "${base}/orders/1").build().render(parser).body());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void postRequiresBody() {
+		RequestTemplate.builder("post", "${base}/orders").build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void patchRequiresBody() {
+		RequestTemplate.builder("patch", "${base}/orders").header("X-Static", "s").build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void getRejectsBody() {
+		RequestTemplate.builder("get", "${base}/orders").body("json", "{}").build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidStaticUrl() {
+		RequestTemplate.builder("get", "not a url").build();
+	}
+}
@@ -0,0 +1,207 @@
+package com.lgt.qa.okhttp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResponseAssertionsTest {
+	private static final String ORDER = "{\"data\":{\"id\":7,\"status\":\"PAID\",\"amount\":10.00,"
+			+ "\"items\":[{\"sku\":\"A-1\",\"price\":2.5},{\"sku\":\"B-2\",\"price\":0},{\"sku\":\"x\",\"price\":-1}]}}";
+	private TestServer server;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		StringBuilder big = new StringBuilder("[");
+		for(int i = 0; i < 5000; i++) {
+			big.append(i == 0 ? "" : ",").append("{\"n\":").append(i).append('}');
+		}
+		server = new TestServer()
+				.respond("/order", 200, "application/json; charset=utf-8", ORDER)
+				.respond("/created", 201, "application/json", "{}")
+				.respond("/missing", 404, "text/plain", "not found")
+				.respond("/broken", 200, "application/json", "{oops")
+				.respond("/big", 200, "application/json", big.append(']').toString());
+		file = File.createTempFile("assertions", ".json");
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+		file.delete();
+	}
+
+	private EasyRequest execute(String path, ResponseBodyPolicy policy) throws IOException {
+		EasyRequest req = new EasyRequest(server.url(path));
+		req.setMethod("get");
+		if(policy != null) {
+			req.setBodyPolicy(policy);
+		}
+		req.executeRequest();
+		return req;
+	}
+
+	@Test
+	public void passingAssertions() throws IOException {
+		ResponseAssertions assertions = ResponseAssertions.builder()
+				.status(200)
+				.header("Content-Type", "^application/json")
+				.maxTime(10000)
+				.size(10, 10000)
+				.json("data.status", "PAID")
+				.json("data.amount", "10.00")
+				.jsonMatches("data.id", "^\\d+$")
+				.bodyMatches("\"sku\":\"A-\\d\"")
+				.eachMatches("data.items", "sku", ".")
+				.build();
+		ResponseAssertions.Result result = assertions.verify(execute("/order", null));
+		assertTrue(result.toString(), result.isPassed());
+	}
+
+	@Test
+	public void collectsAllFailures() throws IOException {
+		ResponseAssertions assertions = ResponseAssertions.builder()
+				.status(201)
+				.headerExists("X-Missing")
+				.json("data.status", "NEW")
+				.jsonExists("data.none")
+				.bodyMatches("nomatch")
+				.each("data.items", "price > 0", item -> item.path("price").asDouble() > 0)
+				.build();
+		List<ResponseAssertions.Failure> failures = assertions.verify(execute("/order", null)).getFailures();
+		assertEquals(failures.toString(), 6, failures.size());
+		assertEquals("status", failures.get(0).getCheck());
+		assertEquals("201", failures.get(0).getExpected());
+		assertEquals("200", failures.get(0).getActual());
+		assertEquals("header X-Missing", failures.get(1).getCheck());
+		assertEquals("PAID", failures.get(2).getActual());
+		assertNull(failures.get(3).getActual());
+		assertEquals("nomatch", failures.get(4).getExpected());
+		assertTrue(failures.get(5).getActual(), failures.get(5).getActual().startsWith("2 of 3 elements failed"));
+	}
+
+	@Test
+	public void failFastStopsAtFirstFailure() throws IOException {
+		ResponseAssertions assertions = ResponseAssertions.builder()
+				.failFast(true)
+				.status(200)
+				.json("data.status", "NEW")
+				.json("data.id", "8")
+				.bodyMatches("nomatch")
+				.build();
+		List<ResponseAssertions.Failure> failures = assertions.verify(execute("/order", null)).getFailures();
+		assertEquals(1, failures.size());
+		assertEquals("json data.status", failures.get(0).getCheck());
+	}
+
+	@Test
+	public void statusCodesAndRanges() throws IOException {
+		ResponseAssertions success = ResponseAssertions.builder().statusBetween(200, 299).build();
+		ResponseAssertions either = ResponseAssertions.builder().status(404).statusBetween(200, 200).build();
+		assertTrue(success.verify(execute("/created", null)).isPassed());
+		assertTrue(either.verify(execute("/missing", null)).isPassed());
+		assertTrue(either.verify(execute("/order", null)).isPassed());
+		ResponseAssertions.Result result = success.verify(execute("/missing", null));
+		assertEquals("200..299", result.getFailures().get(0).getExpected());
+		assertEquals("404", result.getFailures().get(0).getActual());
+		try {
+			result.assertPassed();
+			fail();
+		} catch (AssertionError e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("status: expected 200..299 but was 404"));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidStatusRange() {
+		ResponseAssertions.builder().statusBetween(300, 200);
+	}
+
+	@Test
+	public void readsBodyCapturedToFile() throws IOException {
+		ResponseAssertions assertions = ResponseAssertions.builder()
+				.json("data.amount", "10.00")
+				.bodyMatches("B-2")
+				.eachMatches("data.items", "sku", "-")
+				.build();
+		EasyRequest req = execute("/order", ResponseBodyPolicy.toFile(file));
+		assertNull(req.getCapturedBody().bytes());
+		List<ResponseAssertions.Failure> failures = assertions.verify(req).getFailures();
+		assertEquals(failures.toString(), 1, failures.size());
+		assertEquals("each data.items", failures.get(0).getCheck());
+		assertTrue(failures.get(0).getActual(), failures.get(0).getActual().startsWith("1 of 3 elements failed"));
+	}
+
+	@Test
+	public void unreadableFileIsReportedNotTreatedAsMissingValues() throws IOException {
+		ResponseAssertions assertions = ResponseAssertions.builder()
+				.json("data.status", "PAID")
+				.jsonExists("data.id")
+				.bodyMatches("PAID")
+				.build();
+		EasyRequest req = execute("/order", ResponseBodyPolicy.toFile(file));
+		assertTrue(file.delete());
+		List<ResponseAssertions.Failure> failures = assertions.verify(req).getFailures();
+		assertEquals(failures.toString(), 2, failures.size());
+		assertEquals("json", failures.get(0).getCheck());
+		assertEquals("response body readable", failures.get(0).getExpected());
+		assertTrue(failures.get(0).getActual(), failures.get(0).getActual().contains("FileNotFoundException"));
+		assertEquals("regex", failures.get(1).getCheck());
+		assertEquals("response body readable", failures.get(1).getExpected());
+	}
+
+	@Test
+	public void invalidJsonInFileExtractsNull() throws IOException {
+		ResponseAssertions assertions = ResponseAssertions.builder().jsonExists("a").build();
+		List<ResponseAssertions.Failure> failures = assertions.verify(execute("/broken", ResponseBodyPolicy.toFile(file))).getFailures();
+		assertEquals(1, failures.size());
+		assertEquals("json a", failures.get(0).getCheck());
+		assertNull(failures.get(0).getActual());
+	}
+
+	@Test
+	public void discardedBodyCannotBeChecked() throws IOException {
+		ResponseAssertions assertions = ResponseAssertions.builder().maxSize(5).json("data.id", "7").build();
+		List<ResponseAssertions.Failure> failures = assertions.verify(execute("/order", ResponseBodyPolicy.discard())).getFailures();
+		assertEquals(failures.toString(), 2, failures.size());
+		assertEquals("size", failures.get(0).getCheck());
+		assertEquals("response body retained", failures.get(1).getExpected());
+	}
+
+	@Test
+	public void parallelEachChecksEveryElement() throws IOException {
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		ResponseAssertions assertions = ResponseAssertions.builder()
+				.parallel(true)
+				.each(null, "n % 1000 != 999", node -> {
+					threads.add(Thread.currentThread());
+					return node.path("n").asInt() % 1000 != 999;
+				})
+				.build();
+		ResponseAssertions.Result result = assertions.verify(execute("/big", null));
+		assertEquals(1, result.getFailures().size());
+		assertTrue(result.toString(), result.getFailures().get(0).getActual().startsWith("5 of 5000 elements failed"));
+		assertFalse(threads.isEmpty());
+
+		ResponseAssertions failFast = ResponseAssertions.builder()
+				.parallel(true)
+				.failFast(true)
+				.each(null, "n < 4000", node -> node.path("n").asInt() < 4000)
+				.build();
+		result = failFast.verify(execute("/big", null));
+		assertEquals(1, result.getFailures().size());
+		assertTrue(result.toString(), result.getFailures().get(0).getActual().matches("\\{\"n\":4\\d{3}\\}"));
+	}
+}
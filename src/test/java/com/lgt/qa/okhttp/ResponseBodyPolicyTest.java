@@ -0,0 +1,123 @@
+package com.lgt.qa.okhttp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSink;
+import okio.ForwardingSource;
+import okio.Okio;
+
+public class ResponseBodyPolicyTest {
+	private static final MediaType TEXT = MediaType.parse("text/plain; charset=utf-8");
+
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	/**
+	 * 关闭时做标记的应答body
+	 */
+	private ResponseBody body(String content) {
+		Buffer buffer = new Buffer().writeUtf8(content);
+		return ResponseBody.create(TEXT, buffer.size(), Okio.buffer(new ForwardingSource(buffer) {
+			@Override
+			public void close() throws IOException {
+				closed.set(true);
+				super.close();
+			}
+		}));
+	}
+
+	@Test
+	public void materializeKeepsWholeBody() throws IOException {
+		CapturedBody captured = ResponseBodyPolicy.materialize().capture(body("hello"));
+		assertTrue(closed.get());
+		assertEquals(ResponseBodyPolicy.Mode.MATERIALIZE, captured.getMode());
+		assertEquals(5, captured.getSize());
+		assertEquals("hello", captured.string());
+		assertEquals("hello", captured.bytes().utf8());
+		assertFalse(captured.isTruncated());
+	}
+
+	@Test
+	public void discardOnlyCountsBytes() throws IOException {
+		CapturedBody captured = ResponseBodyPolicy.discard().capture(body("hello"));
+		assertTrue(closed.get());
+		assertEquals(5, captured.getSize());
+		assertNull(captured.string());
+		assertNull(captured.bytes());
+	}
+
+	@Test
+	public void digestKeepsSizeAndHash() throws IOException {
+		CapturedBody captured = ResponseBodyPolicy.digest("MD5").capture(body("hello"));
+		assertTrue(closed.get());
+		assertEquals(5, captured.getSize());
+		assertEquals("5d41402abc4b2a76b9719d911017c592", captured.getDigest());
+		assertNull(captured.string());
+		assertEquals("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824",
+				ResponseBodyPolicy.digest("sha-256").capture(body("hello")).getDigest());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownDigest() {
+		ResponseBodyPolicy.digest("crc32");
+	}
+
+	@Test
+	public void prefixTruncatesAndDrainsRest() throws IOException {
+		CapturedBody captured = ResponseBodyPolicy.prefix(3).capture(body("hello"));
+		assertTrue(closed.get());
+		assertEquals(5, captured.getSize());
+		assertEquals("hel", captured.string());
+		assertTrue(captured.isTruncated());
+		CapturedBody whole = ResponseBodyPolicy.prefix(10).capture(body("hello"));
+		assertEquals("hello", whole.string());
+		assertFalse(whole.isTruncated());
+	}
+
+	@Test
+	public void toFileWritesBodyAndReadsItLazily() throws IOException {
+		File file = File.createTempFile("body-policy", ".txt");
+		try {
+			CapturedBody captured = ResponseBodyPolicy.toFile(file).capture(body("{\"a\":1}"));
+			assertTrue(closed.get());
+			assertEquals(7, captured.getSize());
+			assertEquals(file, captured.getFile());
+			assertNull(captured.bytes());
+			assertEquals("{\"a\":1}", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+			assertEquals("{\"a\":1}", captured.string());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void toSinkClosesTheSink() throws IOException {
+		Buffer target = new Buffer();
+		AtomicBoolean sinkClosed = new AtomicBoolean();
+		CapturedBody captured = ResponseBodyPolicy.toSink(() -> new ForwardingSink(target) {
+			@Override
+			public void close() throws IOException {
+				sinkClosed.set(true);
+				super.close();
+			}
+		}).capture(body("hello"));
+		assertTrue(closed.get());
+		assertTrue(sinkClosed.get());
+		assertEquals(5, captured.getSize());
+		assertEquals("hello", target.readUtf8());
+		assertNull(captured.string());
+	}
+}
@@ -0,0 +1,105 @@
+package com.lgt.qa.okhttp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import okhttp3.Cookie;
+
+public class SessionPoolTest {
+
+	/**
+	 * 每次登录返回一个带递增token的会话
+	 */
+	private static SessionPool.Authenticator counting(AtomicInteger seq, long lifetimeMillis) {
+		return cookies -> {
+			int n = seq.incrementAndGet();
+			cookies.add(new Cookie.Builder().name("sid").value("s" + n).domain("example.com").build());
+			Session session = Session.from(cookies, Collections.singletonMap("Authorization", "Bearer " + n));
+			return lifetimeMillis > 0 ? session.withExpiresAt(System.currentTimeMillis() + lifetimeMillis) : session;
+		};
+	}
+
+	@Test
+	public void warmsUpAndLeasesSessions() throws Exception {
+		AtomicInteger seq = new AtomicInteger();
+		try (SessionPool pool = new SessionPool(3, counting(seq, 0)).start()) {
+			assertEquals(3, pool.getLogins());
+			assertEquals(3, pool.available());
+			SessionPool.Lease a = pool.acquire();
+			SessionPool.Lease b = pool.acquire();
+			SessionPool.Lease c = pool.acquire();
+			assertEquals(0, pool.available());
+			assertNull(pool.acquire(10, TimeUnit.MILLISECONDS));
+			assertEquals("sid", a.getSession().getCookies().get(0).name());
+			assertNotEquals(a.getSlot(), b.getSlot());
+			b.close();
+			b.close(); // 重复关闭不会重复归还
+			assertEquals(1, pool.available());
+			a.close();
+			c.close();
+			assertEquals(3, pool.available());
+			assertEquals(3, seq.get());
+		}
+	}
+
+	@Test
+	public void refreshesAheadOfExpiry() throws Exception {
+		AtomicInteger seq = new AtomicInteger();
+		try (SessionPool pool = new SessionPool(1, counting(seq, 300))
+				.refreshAhead(250, TimeUnit.MILLISECONDS)
+				.checkInterval(10, TimeUnit.MILLISECONDS)
+				.start();
+				SessionPool.Lease lease = pool.acquire()) {
+			String first = lease.getSession().getHeaders().get("Authorization");
+			long deadline = System.currentTimeMillis() + 5000;
+			while(first.equals(lease.getSession().getHeaders().get("Authorization")) && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertNotEquals(first, lease.getSession().getHeaders().get("Authorization")); // 租约期间看到刷新后的会话
+			assertTrue(pool.getRefreshes() > 0);
+			assertEquals(0, pool.getRefreshFailures());
+			assertTrue(lease.getSession().getExpiresAt() > System.currentTimeMillis());
+		}
+	}
+
+	@Test
+	public void restoresValidSessionsFromSnapshot() throws IOException {
+		File snapshot = File.createTempFile("sessions", ".json");
+		snapshot.delete();
+		try {
+			AtomicInteger seq = new AtomicInteger();
+			try (SessionPool pool = new SessionPool(2, counting(seq, TimeUnit.HOURS.toMillis(1))).snapshotFile(snapshot).start()) {
+				assertEquals(2, pool.getLogins());
+			}
+			assertTrue(snapshot.isFile());
+			try (SessionPool pool = new SessionPool(2, counting(seq, TimeUnit.HOURS.toMillis(1))).snapshotFile(snapshot).start()) {
+				assertEquals(0, pool.getLogins());
+				assertEquals(2, seq.get());
+				Session restored = pool.get(0);
+				assertNotNull(restored);
+				assertTrue(restored.getHeaders().get("Authorization").startsWith("Bearer "));
+				assertEquals("sid", restored.getCookies().get(0).name());
+			}
+		} finally {
+			snapshot.delete();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void failedWarmupFailsStart() {
+		new SessionPool(2, cookies -> {
+			throw new IOException("login failed");
+		}).start();
+	}
+}
@@ -0,0 +1,73 @@
+package com.lgt.qa.okhttp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 测试用的本地HTTP服务，监听127.0.0.1上的随机端口
+ */
+final class TestServer implements AutoCloseable {
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	TestServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		executor = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "test-server");
+			t.setDaemon(true);
+			return t;
+		});
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	TestServer handle(String path, HttpHandler handler) {
+		server.createContext(path, handler);
+		return this;
+	}
+
+	TestServer respond(String path, int status, String contentType, String body) {
+		return handle(path, exchange -> send(exchange, status, contentType, body));
+	}
+
+	String url(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	/**
+	 * 读完请求body后发送应答
+	 */
+	static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			while(in.read() != -1) {
+				// 丢弃
+			}
+		}
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		if(contentType != null) {
+			exchange.getResponseHeaders().add("Content-Type", contentType);
+		}
+		exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+		if(bytes.length > 0) {
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		}
+		exchange.close();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}